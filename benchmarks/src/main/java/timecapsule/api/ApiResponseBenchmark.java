@@ -0,0 +1,120 @@
+package timecapsule.api;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import timecapsule.model.ApiResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a capsule list response of {@code capsules} rows, from bytes to an
+ * {@link ApiResponse}: once through {@link ApiResponseReader} as ApiClient does,
+ * and once through plain Gson binding for comparison. Rows carry timestamps
+ * both as numbers and as strings, the way Sheets hands them back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiResponseBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int capsules;
+
+    private Gson gson;
+    private ApiResponseReader reader;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        gson = new GsonBuilder()
+                .registerTypeAdapter(Long.class, new LenientLongAdapter())
+                .registerTypeAdapter(long.class, new LenientLongAdapter())
+                .create();
+        reader = new ApiResponseReader(gson);
+        body = gson.toJson(listResponse(capsules, new Random(capsules))).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ApiResponse streamingReader() throws IOException {
+        try (JsonReader in = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            return reader.read(in, null);
+        }
+    }
+
+    @Benchmark
+    public ApiResponse gsonBinding() throws IOException {
+        try (InputStreamReader in = new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8)) {
+            return gson.fromJson(in, ApiResponse.class);
+        }
+    }
+
+    static JsonObject listResponse(int count, Random random) {
+        long now = 1_760_000_000_000L;
+        JsonArray rows = new JsonArray();
+        for (int i = 0; i < count; i++) {
+            String capsuleId = "CAP" + (now - i * 60_000L) + "_" + Integer.toString(random.nextInt(1 << 30), 36);
+            JsonObject capsule = new JsonObject();
+            capsule.addProperty("capsuleId", capsuleId);
+            capsule.addProperty("ownerUserId", "USR" + now);
+            capsule.addProperty("ownerEmail", "owner@example.org");
+            capsule.addProperty("ownerDisplayName", "Capsule Owner");
+            capsule.addProperty("headline", "Open this on the day number " + i);
+            capsule.addProperty("unlockAtUtc", now + random.nextInt(1_000_000_000));
+            capsule.addProperty("state", i % 5 == 0 ? "OPENED" : "SEALED");
+            capsule.addProperty("createdAtUtc", String.valueOf(now - i * 60_000L));
+            capsule.addProperty("updatedAtUtc", now - i * 30_000L);
+
+            JsonArray recipients = new JsonArray();
+            for (int r = 0; r < 2; r++) {
+                JsonObject recipient = new JsonObject();
+                recipient.addProperty("capsuleId", capsuleId);
+                recipient.addProperty("recipientEmail", "friend" + r + "@example.org");
+                recipient.addProperty("recipientUserId", "USR" + (now + r + 1));
+                recipient.addProperty("notifyOnCreate", true);
+                recipient.addProperty("notifyOnUnlock", true);
+                recipient.addProperty("deliveryStatus", "PENDING");
+                if (r == 0 && i % 5 == 0) {
+                    recipient.addProperty("openedAtUtc", String.valueOf(now));
+                } else {
+                    recipient.add("openedAtUtc", JsonNull.INSTANCE);
+                }
+                recipient.addProperty("createdAtUtc", now - i * 60_000L);
+                recipients.add(recipient);
+            }
+            capsule.add("recipients", recipients);
+            rows.add(capsule);
+        }
+
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "ok");
+        response.add("capsules", rows);
+        response.addProperty("serverTimeEpoch", now);
+        response.addProperty("serverReceivedEpoch", String.valueOf(now - 40));
+        response.addProperty("serverSentEpoch", now);
+        return response;
+    }
+}
@@ -0,0 +1,73 @@
+package timecapsule.api;
+
+import com.google.gson.stream.JsonReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LenientLongAdapter} over an array of {@value #VALUES} timestamps in
+ * each of the shapes the backend sends. The array framing is included, so
+ * compare the token kinds with each other rather than reading absolute cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LenientLongAdapterBenchmark {
+
+    private static final int VALUES = 1024;
+
+    @Param({"number", "string", "null", "invalid"})
+    public String token;
+
+    private final LenientLongAdapter adapter = new LenientLongAdapter();
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < VALUES; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            long value = 1_760_000_000_000L + i * 997L;
+            switch (token) {
+                case "number": sb.append(value); break;
+                case "string": sb.append('"').append(value).append('"'); break;
+                case "null": sb.append("null"); break;
+                default: sb.append("\"n/a\""); break;
+            }
+        }
+        json = sb.append(']').toString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void read(Blackhole bh) throws IOException {
+        try (JsonReader in = new JsonReader(new StringReader(json))) {
+            in.beginArray();
+            while (in.hasNext()) {
+                bh.consume(adapter.read(in));
+            }
+            in.endArray();
+        }
+    }
+}
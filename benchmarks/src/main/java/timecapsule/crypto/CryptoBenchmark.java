@@ -0,0 +1,73 @@
+package timecapsule.crypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capsule body encryption. Every new capsule gets a fresh salt, so
+ * {@link #encrypt} always pays for key derivation; {@link #decrypt} reuses
+ * one capsule and hits the key cache after the first call, which isolates the
+ * AES-GCM and inflate cost. {@link KdfBenchmark} covers key derivation alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoBenchmark {
+
+    private static final String PASSPHRASE = "correct horse battery staple";
+    private static final String AAD = "CAP1700000000000_bench|USR1700000000000";
+    private static final String[] WORDS = {
+        "remember", "summer", "the", "lake", "we", "promised", "to", "open", "this", "when",
+        "kids", "graduate", "and", "house", "finally", "has", "a", "garden", "letter", "future"
+    };
+
+    @Param({"256", "4096", "65536", "1048576"})
+    public int size;
+
+    private String plaintext;
+    private CryptoUtils.EncryptionResult sealed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        plaintext = text(size, new Random(size));
+        sealed = CryptoUtils.encrypt(plaintext, PASSPHRASE, AAD);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CryptoUtils.EncryptionResult encrypt() throws Exception {
+        return CryptoUtils.encrypt(plaintext, PASSPHRASE, AAD);
+    }
+
+    @Benchmark
+    public String decrypt() throws Exception {
+        return CryptoUtils.decrypt(sealed.ciphertextBase64, sealed.ivBase64, sealed.saltBase64, PASSPHRASE, AAD);
+    }
+
+    /** Message-like text: compresses about as well as a real capsule body. */
+    static String text(int chars, Random random) {
+        StringBuilder sb = new StringBuilder(chars + 16);
+        while (sb.length() < chars) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+            sb.append(random.nextInt(12) == 0 ? ".\n" : " ");
+        }
+        sb.setLength(chars);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package timecapsule.crypto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key derivation cost across the range {@link CryptoUtils#calibrate} picks
+ * from, to see what each setting costs on a given machine. Keys are derived
+ * directly, bypassing the key cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KdfBenchmark {
+
+    private static final String PASSPHRASE = "correct horse battery staple";
+    private static final byte[] SALT = new byte[KdfParams.SALT_LENGTH];
+
+    @State(Scope.Thread)
+    public static class Pbkdf2Cost {
+        @Param({"100000", "310000", "600000", "1000000", "2000000"})
+        public int iterations;
+    }
+
+    @State(Scope.Thread)
+    public static class ScryptCost {
+        @Param({"14", "15", "16", "17"})
+        public int logN;
+    }
+
+    @Benchmark
+    public byte[] pbkdf2(Pbkdf2Cost cost) throws Exception {
+        return KdfParams.pbkdf2(cost.iterations, SALT).derive(PASSPHRASE, 256);
+    }
+
+    @Benchmark
+    public byte[] scrypt(ScryptCost cost) throws Exception {
+        return KdfParams.scrypt(cost.logN, 8, 1, SALT).derive(PASSPHRASE, 256);
+    }
+}
@@ -0,0 +1,76 @@
+package timecapsule.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Model methods the capsule and friend lists call for every visible row on
+ * every refresh: the countdown text and resolving which side of a friendship
+ * is the other user. Each invocation walks {@value #ROWS} rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+    private static final int ROWS = 1024;
+    private static final long NOW = 1_760_000_000_000L;
+    private static final long MINUTE = 60_000L;
+
+    private final Capsule[] capsules = new Capsule[ROWS];
+    private final Friend[] friends = new Friend[ROWS];
+    private String currentUserId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        // Same mix as a real list: some ready, some minutes, hours or days away.
+        long[] spans = {-MINUTE * 60 * 24, MINUTE * 45, MINUTE * 60 * 7, MINUTE * 60 * 24 * 90};
+        for (int i = 0; i < ROWS; i++) {
+            long unlock = NOW + (long) (random.nextDouble() * spans[i % spans.length]);
+            capsules[i] = new Capsule("CAP" + (NOW + i) + "_bench", "USR" + NOW, "Capsule " + i, unlock, NOW - MINUTE);
+        }
+
+        currentUserId = "USR" + NOW + "_" + 1000;
+        for (int i = 0; i < ROWS; i++) {
+            // Ids share a long prefix, as generated ones do, so equals compares most of the string.
+            String other = "USR" + NOW + "_" + (2000 + i);
+            friends[i] = random.nextBoolean()
+                ? new Friend(currentUserId, other, FriendStatus.ACCEPTED, NOW, NOW)
+                : new Friend(other, currentUserId, FriendStatus.ACCEPTED, NOW, NOW);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void timeRemaining(Blackhole bh) {
+        for (Capsule capsule : capsules) {
+            bh.consume(capsule.getTimeRemaining(NOW));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void friendUserId(Blackhole bh) {
+        for (Friend friend : friends) {
+            bh.consume(friend.getFriendUserId(currentUserId));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package timecapsule.ui;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.Scene;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.stage.Stage;
+import timecapsule.model.CapsuleHeader;
+import timecapsule.model.CapsuleRecipient;
+import timecapsule.model.CapsuleState;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Scrolls a capsule list of synthetic rows and reports frame intervals, time
+ * spent in the layout pass (where cells are updated) and bytes allocated on
+ * the FX thread per frame.
+ *
+ * Sits in the benchmark module's copy of the {@code timecapsule.ui} package
+ * so it can use the package-private cells. Run it from the benchmark jar with
+ * {@code java -cp target/benchmarks.jar timecapsule.ui.CellScrollBenchmark},
+ * optionally passing {@code --list=received --rows=5000 --frames=600 --step=2 --warmup=120}.
+ */
+public class CellScrollBenchmark {
+
+    // The java launcher requires JavaFX as modules when the main class is an Application; this jar is a plain classpath.
+    public static void main(String[] args) {
+        Application.launch(Scroller.class, args);
+    }
+
+    public static class Scroller extends Application {
+
+        private int rows;
+        private int frames;
+        private int warmup;
+        private int step;
+        private boolean received;
+
+        private long[] intervals;
+        private long[] layouts;
+        private long[] allocated;
+        private int cellsCreated;
+
+        @Override
+        public void start(Stage stage) {
+            Map<String, String> args = getParameters().getNamed();
+            rows = Integer.parseInt(args.getOrDefault("rows", "5000"));
+            frames = Integer.parseInt(args.getOrDefault("frames", "600"));
+            warmup = Integer.parseInt(args.getOrDefault("warmup", "120"));
+            step = Integer.parseInt(args.getOrDefault("step", "2"));
+            received = "received".equals(args.getOrDefault("list", "sent"));
+
+            intervals = new long[frames];
+            layouts = new long[frames];
+            allocated = new long[frames];
+
+            ListView<CapsuleHeader> listView = new ListView<>(syntheticCapsules(rows));
+            listView.setStyle("-fx-background-color: #2C2C2E;");
+            listView.setCellFactory(lv -> {
+                cellsCreated++;
+                ListCell<CapsuleHeader> cell = received
+                    ? new ReceivedCapsuleCell(capsule -> { })
+                    : new SentCapsuleCell(capsule -> { });
+                return cell;
+            });
+
+            Scene scene = new Scene(listView, 700, 800);
+            long[] layoutStart = new long[1];
+            int[] layoutFrame = {-1};
+            scene.addPreLayoutPulseListener(() -> layoutStart[0] = System.nanoTime());
+            scene.addPostLayoutPulseListener(() -> {
+                if (layoutFrame[0] >= 0 && layoutFrame[0] < frames) {
+                    layouts[layoutFrame[0]] += System.nanoTime() - layoutStart[0];
+                }
+            });
+
+            stage.setTitle("Cell scroll benchmark");
+            stage.setScene(scene);
+            stage.show();
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+            long fxThread = Thread.currentThread().getId();
+
+            new AnimationTimer() {
+                private int frame = -warmup;
+                private int index;
+                private long lastFrame;
+                private long lastBytes;
+
+                @Override
+                public void handle(long now) {
+                    if (frame >= 0 && frame < frames) {
+                        intervals[frame] = now - lastFrame;
+                        if (allocations != null) {
+                            allocated[frame] = allocations.getThreadAllocatedBytes(fxThread) - lastBytes;
+                        }
+                    }
+                    lastFrame = now;
+                    if (allocations != null) {
+                        lastBytes = allocations.getThreadAllocatedBytes(fxThread);
+                    }
+
+                    if (++frame >= frames) {
+                        stop();
+                        report();
+                        Platform.exit();
+                        return;
+                    }
+                    layoutFrame[0] = frame;
+                    index = (index + step) % rows;
+                    listView.scrollTo(index);
+                }
+            }.start();
+        }
+
+        private void report() {
+            System.out.println("list=" + (received ? "received" : "sent") + " rows=" + rows
+                + " frames=" + frames + " step=" + step + " cellsCreated=" + cellsCreated);
+            System.out.println(summary("frame interval (ms)", intervals, 1e6));
+            System.out.println(summary("layout pass (ms)    ", layouts, 1e6));
+            System.out.println(summary("FX alloc (KB)       ", allocated, 1024));
+        }
+
+        private static String summary(String label, long[] samples, double scale) {
+            long[] sorted = samples.clone();
+            Arrays.sort(sorted);
+            double mean = Arrays.stream(sorted).average().orElse(0);
+            return String.format("%s mean=%.2f p50=%.2f p95=%.2f p99=%.2f max=%.2f", label,
+                mean / scale,
+                sorted[sorted.length / 2] / scale,
+                sorted[(int) (sorted.length * 0.95)] / scale,
+                sorted[(int) (sorted.length * 0.99)] / scale,
+                sorted[sorted.length - 1] / scale);
+        }
+
+        private static ObservableList<CapsuleHeader> syntheticCapsules(int count) {
+            Random random = new Random(42);
+            long now = System.currentTimeMillis();
+            ObservableList<CapsuleHeader> capsules = FXCollections.observableArrayList();
+            for (int i = 0; i < count; i++) {
+                long unlockAt = now + (random.nextInt(2 * 365) - 365) * 24L * 60 * 60 * 1000;
+                CapsuleHeader capsule = new CapsuleHeader("capsule-" + i, "user-" + (i % 50),
+                    "Capsule number " + i, unlockAt, now - 400L * 24 * 60 * 60 * 1000);
+                capsule.setOwnerDisplayName("Sender " + (i % 50));
+                if (unlockAt <= now && random.nextBoolean()) {
+                    capsule.setState(CapsuleState.OPENED);
+                }
+                for (int r = random.nextInt(4); r > 0; r--) {
+                    CapsuleRecipient recipient = new CapsuleRecipient(capsule.getCapsuleId(),
+                        "friend" + r + "@example.com", null, true, true, capsule.getCreatedAtUtc());
+                    if (capsule.getState() == CapsuleState.OPENED) {
+                        recipient.setOpenedAtUtc(unlockAt);
+                    }
+                    capsule.addRecipient(recipient);
+                }
+                capsules.add(capsule);
+            }
+            return capsules;
+        }
+    }
+}
@@ -2,45 +2,151 @@ package timecapsule.api;
 
 import com.google.gson.*;
 import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonToken;
-import com.google.gson.stream.JsonWriter;
 import timecapsule.model.*;
+import timecapsule.store.LocalStore;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class ApiClient {
     
     private static final String BACKEND_URL = "https://script.google.com/macros/s/AKfycbwcwtuPmCSls1nHClxsLEkNMU3noKebQ-xshBFnQ5jAJGEPIXglYTOiOCGx2gcjFMpDyg/exec";
+    private static final String BACKEND_PROPERTY = "timecapsule.backend";
+    private static final URI SCRIPT_CONTENT_ORIGIN = URI.create("https://script.googleusercontent.com/");
+    private static final Duration DEFAULT_BATCH_WINDOW = Duration.ofMillis(25);
+    private static final int MAX_BATCH_SIZE = 20;
+    private static final Duration LIST_TTL = Duration.ofSeconds(30);
+    private static final Duration LOOKUP_TTL = Duration.ofMinutes(2);
+    private static final int BODY_CACHE_SIZE = 64;
     
-    private final HttpClient httpClient;
+    private final BackendRouter router;
+    private final HttpTransport transport = new HttpTransport();
+    private final RetryPolicy retryPolicy = new RetryPolicy();
     private final Gson gson;
+    private final ApiLogger logger = new ApiLogger();
+    private final ServerClock serverClock = new ServerClock();
+    private final ApiResponseReader responseReader;
+    private final RequestBatcher batcher;
+    private final ResponseCache cache;
+    private final DeltaSync<CapsuleHeader> sentSync =
+        new DeltaSync<>(CapsuleHeader::getCapsuleId, CapsuleHeader::getUpdatedAtUtc);
+    private final DeltaSync<CapsuleHeader> receivedSync =
+        new DeltaSync<>(CapsuleHeader::getCapsuleId, CapsuleHeader::getUpdatedAtUtc);
+    private final CapsuleBodyCache bodies = new CapsuleBodyCache(BODY_CACHE_SIZE);
+    private final DeltaSync<Friend> friendsSync = new DeltaSync<>(Friend::getRelationshipKey, Friend::getUpdatedAtUtc);
+    private final DeltaSync<Invite> invitesSync = new DeltaSync<>(Invite::getInviteId, ApiClient::inviteVersion);
     private String currentUserId;
     private String currentUserEmail;
     
     public ApiClient() {
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(30))
-                .followRedirects(HttpClient.Redirect.ALWAYS)
-                .build();
+        this(DEFAULT_BATCH_WINDOW);
+    }
+    
+    public ApiClient(Duration batchWindow) {
+        this(batchWindow, BackendRouter.parse(System.getProperty(BACKEND_PROPERTY, BACKEND_URL)));
+    }
+    
+    /** Talks to {@code backend} instead of the deployed script, e.g. a local MockBackendServer. */
+    public ApiClient(Duration batchWindow, URI backend) {
+        this(batchWindow, BackendRouter.single(backend));
+    }
+    
+    /** Spreads calls over the replicas of {@code router}. */
+    public ApiClient(Duration batchWindow, BackendRouter router) {
+        this.router = router;
         this.gson = new GsonBuilder()
-                .setPrettyPrinting()
                 .registerTypeAdapter(Long.class, new LenientLongAdapter())
                 .registerTypeAdapter(long.class, new LenientLongAdapter())
                 .create();
+        this.responseReader = new ApiResponseReader(gson);
+        this.batcher = new RequestBatcher(this::post, batchWindow, MAX_BATCH_SIZE);
+        this.cache = new ResponseCache(gson::toJson);
+        for (String action : new String[]{"list", "listSent", "listReceived", "friendsList", "friendRequests", "invitesList"}) {
+            cache.setTtl(action, LIST_TTL);
+        }
+        cache.setTtl("searchUsers", LOOKUP_TTL);
+        cache.setTtl("getUserByEmail", LOOKUP_TTL);
+        cache.addInvalidationListener(actions -> {
+            if (actions.contains("listSent")) sentSync.markStale();
+            if (actions.contains("listReceived")) receivedSync.markStale();
+            if (actions.contains("friendsList")) friendsSync.markStale();
+            if (actions.contains("invitesList")) invitesSync.markStale();
+        });
     }
     
     public void setCurrentUser(String userId, String email) {
         this.currentUserId = userId;
         this.currentUserEmail = email;
+        cache.clear();
+        sentSync.reset();
+        receivedSync.reset();
+        friendsSync.reset();
+        invitesSync.reset();
+        bodies.clear();
+    }
+    
+    public void attachStore(LocalStore store) {
+        sentSync.bind(store, "sent", CapsuleHeader.class);
+        receivedSync.bind(store, "received", CapsuleHeader.class);
+        friendsSync.bind(store, "friends", Friend.class);
+        invitesSync.bind(store, "invites", Invite.class);
+        bodies.bind(store);
+    }
+    
+    public List<CapsuleHeader> getCachedSentCapsules() { return sentSync.snapshot(); }
+    public List<CapsuleHeader> getCachedReceivedCapsules() { return receivedSync.snapshot(); }
+    public List<Friend> getCachedFriends() { return friendsSync.snapshot(); }
+    public List<Invite> getCachedInvites() { return invitesSync.snapshot(); }
+    
+    public void setCacheTtl(String action, Duration ttl) {
+        cache.setTtl(action, ttl);
+    }
+    
+    public void invalidateCache(String... actions) {
+        cache.invalidate(actions);
+    }
+    
+    public ApiLogger getLogger() { return logger; }
+    
+    public ServerClock getServerClock() { return serverClock; }
+    
+    public BackendRouter getRouter() { return router; }
+    
+    public HttpTransport getTransport() { return transport; }
+    
+    /**
+     * Opens connections to the backends and to the host Apps Script redirects
+     * to, so the first call after startup does not pay for two handshakes.
+     */
+    public CompletableFuture<Void> warmUp() {
+        Map<String, Long> times = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> probes = new ArrayList<>();
+        for (BackendRouter.Backend backend : router.getBackends()) {
+            URI uri = backend.getUri();
+            boolean appsScript = uri.getHost() != null && uri.getHost().endsWith("script.google.com");
+            probes.add(transport.preconnect(uri, appsScript ? List.of(SCRIPT_CONTENT_ORIGIN) : List.of())
+                    .thenAccept(times::putAll));
+        }
+        return CompletableFuture.allOf(probes.toArray(new CompletableFuture<?>[0]))
+                .thenRun(() -> logger.info("Preconnected " + times + " (ms)"));
     }
     
     public String getCurrentUserId() { return currentUserId; }
@@ -109,6 +215,14 @@ public class ApiClient {
         return sendRequest(request);
     }
     
+    public CompletableFuture<ChangeSet<Friend>> syncFriends() {
+        Map<String, Object> request = new HashMap<>();
+        request.put("action", "friendsList");
+        request.put("userId", currentUserId);
+        request.put("since", friendsSync.getWatermark());
+        return sync(request, friendsSync, ApiResponse::getFriends, null);
+    }
+    
     public CompletableFuture<ApiResponse> listFriendRequests() {
         Map<String, Object> request = new HashMap<>();
         request.put("action", "friendRequests");
@@ -150,9 +264,24 @@ public class ApiClient {
         return sendRequest(request);
     }
     
+    /** The backend keeps no change time for invites, so this is always a full refresh of the stored list. */
+    public CompletableFuture<ChangeSet<Invite>> syncInvites() {
+        Map<String, Object> request = new HashMap<>();
+        request.put("action", "invitesList");
+        request.put("userId", currentUserId);
+        return sync(request, invitesSync, ApiResponse::getInvites, null);
+    }
+    
     public CompletableFuture<ApiResponse> createCapsule(String headline, long unlockTimeEpoch,
             String ciphertextBase64, String ivBase64, String saltBase64,
             List<CapsuleRecipient> recipients, boolean surpriseMode) {
+        return createCapsule(headline, unlockTimeEpoch, ciphertextBase64, ivBase64, saltBase64,
+            recipients, surpriseMode, null);
+    }
+    
+    public CompletableFuture<ApiResponse> createCapsule(String headline, long unlockTimeEpoch,
+            String ciphertextBase64, String ivBase64, String saltBase64,
+            List<CapsuleRecipient> recipients, boolean surpriseMode, String attachmentManifest) {
         
         Map<String, Object> request = new HashMap<>();
         request.put("action", "create");
@@ -163,6 +292,9 @@ public class ApiClient {
         request.put("ciphertextBase64", ciphertextBase64);
         request.put("ivBase64", ivBase64);
         request.put("saltBase64", saltBase64);
+        if (attachmentManifest != null) {
+            request.put("attachmentManifest", attachmentManifest);
+        }
         
         if (recipients != null && !recipients.isEmpty()) {
             for (CapsuleRecipient r : recipients) {
@@ -183,6 +315,19 @@ public class ApiClient {
         return sendRequest(request);
     }
     
+    public CompletableFuture<ChangeSet<CapsuleHeader>> syncSentCapsules() {
+        return syncSentCapsules(null);
+    }
+    
+    public CompletableFuture<ChangeSet<CapsuleHeader>> syncSentCapsules(Consumer<CapsuleHeader> onCapsule) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("action", "listSent");
+        request.put("owner", currentUserEmail);
+        request.put("userId", currentUserId);
+        request.put("since", sentSync.getWatermark());
+        return sync(request, sentSync, ApiClient::headers, onCapsule);
+    }
+    
     public CompletableFuture<ApiResponse> listReceivedCapsules() {
         Map<String, Object> request = new HashMap<>();
         request.put("action", "listReceived");
@@ -191,6 +336,19 @@ public class ApiClient {
         return sendRequest(request);
     }
     
+    public CompletableFuture<ChangeSet<CapsuleHeader>> syncReceivedCapsules() {
+        return syncReceivedCapsules(null);
+    }
+    
+    public CompletableFuture<ChangeSet<CapsuleHeader>> syncReceivedCapsules(Consumer<CapsuleHeader> onCapsule) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("action", "listReceived");
+        request.put("userId", currentUserId);
+        request.put("email", currentUserEmail);
+        request.put("since", receivedSync.getWatermark());
+        return sync(request, receivedSync, ApiClient::headers, onCapsule);
+    }
+    
     public CompletableFuture<ApiResponse> listAllCapsules() {
         Map<String, Object> request = new HashMap<>();
         request.put("action", "list");
@@ -200,12 +358,46 @@ public class ApiClient {
     }
     
     public CompletableFuture<ApiResponse> openCapsule(String capsuleId) {
+        Capsule cached = bodies.get(capsuleId);
+        if (cached != null) {
+            ApiResponse response = new ApiResponse();
+            response.setStatus("ok");
+            response.setCapsule(cached);
+            return CompletableFuture.completedFuture(response);
+        }
+        
         Map<String, Object> request = new HashMap<>();
         request.put("action", "open");
         request.put("id", capsuleId);
         request.put("owner", currentUserEmail);
         request.put("userId", currentUserId);
         request.put("requestId", generateRequestId());
+        return sendRequest(request).thenApply(response -> {
+            if (response.isOk()) {
+                bodies.put(response.getCapsule());
+            }
+            return response;
+        });
+    }
+    
+    public CompletableFuture<ApiResponse> openReadyCapsules(Consumer<Capsule> onCapsule) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("action", "openReady");
+        request.put("userId", currentUserId);
+        request.put("email", currentUserEmail);
+        request.put("requestId", generateRequestId());
+        return cache.fetch(request, r -> post(r, capsule -> {
+            bodies.put(capsule);
+            onCapsule.accept(capsule);
+        }));
+    }
+    
+    public CompletableFuture<ApiResponse> markRecipientsOpened(List<String> capsuleIds) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("action", "markRecipientOpened");
+        request.put("capsuleIds", capsuleIds);
+        request.put("userId", currentUserId);
+        request.put("email", currentUserEmail);
         return sendRequest(request);
     }
     
@@ -218,36 +410,171 @@ public class ApiClient {
         return sendRequest(request);
     }
     
+    public CompletableFuture<ApiResponse> findMissingChunks(List<String> chunkIds) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("action", "chunkHas");
+        request.put("ids", chunkIds);
+        return sendRequest(request);
+    }
+    
+    // Chunk bodies are large, so they skip the batcher and go out one per request.
+    public CompletableFuture<ApiResponse> putChunk(String chunkId, byte[] sealed) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("action", "chunkPut");
+        request.put("id", chunkId);
+        request.put("userId", currentUserId);
+        request.put("dataBase64", Base64.getEncoder().encodeToString(sealed));
+        return post(request);
+    }
+    
+    public CompletableFuture<ApiResponse> getChunk(String chunkId) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("action", "chunkGet");
+        request.put("id", chunkId);
+        return post(request);
+    }
+    
+    private <T> CompletableFuture<ChangeSet<T>> sync(Map<String, Object> request, DeltaSync<T> store,
+                                                     Function<ApiResponse, List<T>> records,
+                                                     Consumer<? super Capsule> onCapsule) {
+        if (store.isFresh(cache.getTtl((String) request.get("action")))) {
+            return CompletableFuture.completedFuture(store.unchanged());
+        }
+        
+        // Row-by-row streaming only pays off for the first full download; deltas go through the batcher.
+        Function<Map<String, Object>, CompletableFuture<ApiResponse>> loader =
+            onCapsule != null && store.getWatermark() == 0 ? r -> post(r, onCapsule) : batcher::submit;
+        
+        return cache.fetch(request, loader).thenApply(response -> {
+            List<T> changed = records.apply(response);
+            if (!response.isOk() || changed == null) {
+                return ChangeSet.failed(response.getError());
+            }
+            return store.apply(changed, response.getDeletedIds(), response.getServerTimeEpoch(), response.isDelta());
+        });
+    }
+    
+    /** Stands in for a change time: differs whenever a resend, acceptance or expiry changes the invite. */
+    private static long inviteVersion(Invite invite) {
+        return Objects.hash(invite.getStatus(), invite.getExpiresAtUtc(), invite.getAcceptedAtUtc());
+    }
+    
+    private static List<CapsuleHeader> headers(ApiResponse response) {
+        return response.getCapsules() != null ? new ArrayList<>(response.getCapsules()) : null;
+    }
+    
     private CompletableFuture<ApiResponse> sendRequest(Map<String, Object> requestData) {
+        return cache.fetch(requestData, batcher::submit);
+    }
+    
+    private CompletableFuture<ApiResponse> post(Map<String, Object> requestData) {
+        return post(requestData, null);
+    }
+    
+    private CompletableFuture<ApiResponse> post(Map<String, Object> requestData,
+                                                Consumer<? super Capsule> onCapsule) {
         String json = gson.toJson(requestData);
+        byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+        Object action = requestData.get("action");
+        logger.body("Request " + action, () -> json);
         
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(BACKEND_URL))
-                .timeout(Duration.ofSeconds(30))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(json))
-                .build();
+        // The payload is serialized once, so every attempt carries the same requestId.
+        return attempt(action, routingKey(requestData), payload, RetryPolicy.idempotencyOf(requestData), onCapsule, null, 1);
+    }
+    
+    /**
+     * The account a request belongs to, so its calls stay on one replica while
+     * that replica is healthy. The email is known before registration.
+     */
+    @SuppressWarnings("unchecked")
+    private String routingKey(Map<String, Object> requestData) {
+        if (currentUserEmail != null) {
+            return currentUserEmail;
+        }
+        if (requestData.get("email") instanceof String) {
+            return (String) requestData.get("email");
+        }
+        if (requestData.get("requests") instanceof List) {
+            for (Object sub : (List<Object>) requestData.get("requests")) {
+                if (sub instanceof Map && ((Map<String, Object>) sub).get("email") instanceof String) {
+                    return (String) ((Map<String, Object>) sub).get("email");
+                }
+            }
+        }
+        return null;
+    }
+    
+    private CompletableFuture<ApiResponse> attempt(Object action, String key, byte[] payload,
+                                                   RetryPolicy.Idempotency idempotency, Consumer<? super Capsule> onCapsule,
+                                                   BackendRouter.Backend previous, int attempt) {
+        BackendRouter.Backend backend = router.select(key);
+        if (backend == null) {
+            long wait = (router.getRemainingOpenMillis() + 999) / 1000;
+            logger.error("Circuit open, not sending " + action);
+            return CompletableFuture.completedFuture(
+                ApiResponse.error("Server is busy. Try again" + (wait > 0 ? " in " + wait + " s" : " shortly") + "."));
+        }
+        if (previous != null && previous != backend) {
+            logger.info(action + " failing over from " + previous.getUri() + " to " + backend.getUri());
+        }
+        CircuitBreaker breaker = backend.getBreaker();
         
-        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .thenApply(response -> {
-                    try {
-                        String body = response.body();
-                        System.out.println("[ApiClient] Response: " + body);
-                        return gson.fromJson(body, ApiResponse.class);
+        long startNanos = System.nanoTime();
+        long sentAt = System.currentTimeMillis();
+        return transport.post(backend.getUri(), payload)
+                .thenCompose(exchange -> {
+                    long receivedAt = System.currentTimeMillis();
+                    HttpResponse<InputStream> response = exchange.getResponse();
+                    int status = response.statusCode();
+                    if (status == 429 || status >= 500) {
+                        closeQuietly(response.body());
+                        long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(0) * 1000;
+                        // Apps Script runs the POST before redirecting, so a status from a later hop is not "never executed".
+                        return CompletableFuture.failedFuture(
+                            new BackendStatusException(status, retryAfter, exchange.getTiming().getHops() > 1));
+                    }
+                    breaker.onSuccess();
+                    
+                    CountingInputStream body = new CountingInputStream(response.body());
+                    try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                        ApiResponse parsed = responseReader.read(reader, onCapsule);
+                        exchange.finish();
+                        serverClock.record(parsed, sentAt, receivedAt);
+                        logger.info(action + " -> " + parsed.getStatus() + " (" + status + ", "
+                            + (System.nanoTime() - startNanos) / 1_000_000 + " ms = " + exchange.getTiming() + ", "
+                            + payload.length + " B out, " + body.count + " B in"
+                            + (attempt > 1 ? ", attempt " + attempt : "") + ")");
+                        logger.body("Response " + action, () -> gson.toJson(parsed));
+                        return CompletableFuture.completedFuture(parsed);
                     } catch (Exception e) {
-                        ApiResponse errorResponse = new ApiResponse();
-                        errorResponse.setStatus("error");
-                        errorResponse.setError("Failed to parse response: " + e.getMessage());
-                        System.err.println("[ApiClient] Parse error: " + e.getMessage());
-                        return errorResponse;
+                        logger.error("Parse error for " + action + ": " + e.getMessage());
+                        return CompletableFuture.completedFuture(ApiResponse.error("Failed to parse response: " + e.getMessage()));
                     }
                 })
-                .exceptionally(e -> {
-                    ApiResponse errorResponse = new ApiResponse();
-                    errorResponse.setStatus("error");
-                    errorResponse.setError("Network error: " + e.getMessage());
-                    return errorResponse;
-                });
+                .handle((response, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    Throwable cause = RetryPolicy.unwrap(error);
+                    breaker.onFailure();
+                    if (retryPolicy.shouldRetry(idempotency, cause, attempt)) {
+                        long delay = retryPolicy.delayMillis(attempt, cause);
+                        logger.info(action + " failed (" + cause.getMessage() + "), retry " + attempt + " in " + delay + " ms");
+                        Executor later = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+                        return CompletableFuture.supplyAsync(() -> null, later)
+                                .thenCompose(v -> attempt(action, key, payload, idempotency, onCapsule, backend, attempt + 1));
+                    }
+                    logger.error("Network error for " + action + ": " + cause.getMessage());
+                    return CompletableFuture.completedFuture(ApiResponse.error("Network error: " + cause.getMessage()));
+                })
+                .thenCompose(Function.identity());
+    }
+    
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+        }
     }
     
     private String generateRequestId() {
@@ -255,33 +582,25 @@ public class ApiClient {
                Long.toHexString(Double.doubleToLongBits(Math.random()));
     }
     
-    private static class LenientLongAdapter extends TypeAdapter<Long> {
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+        
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+        
         @Override
-        public void write(JsonWriter out, Long value) throws IOException {
-            if (value == null) {
-                out.nullValue();
-            } else {
-                out.value(value);
-            }
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
         }
         
         @Override
-        public Long read(JsonReader in) throws IOException {
-            JsonToken token = in.peek();
-            if (token == JsonToken.NULL) {
-                in.nextNull();
-                return 0L;
-            } else if (token == JsonToken.STRING) {
-                String str = in.nextString();
-                try {
-                    return Long.parseLong(str);
-                } catch (NumberFormatException e) {
-                    return 0L;
-                }
-            } else if (token == JsonToken.NUMBER) {
-                return in.nextLong();
-            }
-            return 0L;
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
         }
     }
 }
@@ -0,0 +1,120 @@
+package timecapsule.api;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Levelled, sampled logging for the API client. Messages go to a pluggable
+ * {@link Sink}; the default sink writes to stderr from a background thread and
+ * drops messages rather than block callers when it falls behind.
+ */
+public class ApiLogger {
+
+    public enum Level { OFF, ERROR, INFO, DEBUG, TRACE }
+
+    public interface Sink {
+        void write(Level level, String message);
+    }
+
+    private static final int DEFAULT_MAX_BODY_CHARS = 512;
+
+    private volatile Level level;
+    private volatile int maxBodyChars = DEFAULT_MAX_BODY_CHARS;
+    private volatile double bodySampleRate = 1.0;
+    private volatile Sink sink;
+
+    public ApiLogger() {
+        this(levelFromProperty(), new AsyncStderrSink());
+    }
+
+    public ApiLogger(Level level, Sink sink) {
+        this.level = level;
+        this.sink = sink;
+    }
+
+    public void setLevel(Level level) { this.level = level; }
+    public Level getLevel() { return level; }
+
+    public void setMaxBodyChars(int maxBodyChars) { this.maxBodyChars = maxBodyChars; }
+
+    public void setBodySampleRate(double bodySampleRate) {
+        this.bodySampleRate = Math.max(0.0, Math.min(1.0, bodySampleRate));
+    }
+
+    public void setSink(Sink sink) { this.sink = sink; }
+
+    public boolean isEnabled(Level messageLevel) {
+        return messageLevel != Level.OFF && messageLevel.ordinal() <= level.ordinal();
+    }
+
+    public void error(String message) {
+        log(Level.ERROR, message);
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    public void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, message.get());
+        }
+    }
+
+    public void body(String label, Supplier<String> body) {
+        if (!isEnabled(Level.TRACE)) {
+            return;
+        }
+        if (bodySampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= bodySampleRate) {
+            return;
+        }
+        log(Level.TRACE, label + ": " + truncate(body.get()));
+    }
+
+    private void log(Level messageLevel, String message) {
+        if (isEnabled(messageLevel)) {
+            sink.write(messageLevel, "[ApiClient] " + message);
+        }
+    }
+
+    private String truncate(String body) {
+        if (body == null || body.length() <= maxBodyChars) {
+            return body;
+        }
+        return body.substring(0, maxBodyChars) + "... (" + body.length() + " chars)";
+    }
+
+    private static Level levelFromProperty() {
+        String value = System.getProperty("timecapsule.log.level", "INFO");
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+
+    private static class AsyncStderrSink implements Sink {
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(1024);
+
+        AsyncStderrSink() {
+            Thread writer = new Thread(() -> {
+                try {
+                    while (true) {
+                        System.err.println(queue.take());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "api-log");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        @Override
+        public void write(Level level, String message) {
+            queue.offer(message);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package timecapsule.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import timecapsule.model.ApiResponse;
+import timecapsule.model.Capsule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads an {@link ApiResponse} straight off the response stream. Capsule
+ * arrays are decoded one element at a time and handed to the listener as
+ * they arrive; batched sub-responses are read recursively.
+ */
+class ApiResponseReader {
+
+    private final Gson gson;
+    private final TypeAdapter<Capsule> capsuleAdapter;
+
+    ApiResponseReader(Gson gson) {
+        this.gson = gson;
+        this.capsuleAdapter = gson.getAdapter(Capsule.class);
+    }
+
+    ApiResponse read(JsonReader in, Consumer<? super Capsule> onCapsule) throws IOException {
+        JsonObject scalars = new JsonObject();
+        List<Capsule> capsules = null;
+        List<ApiResponse> responses = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("capsules".equals(name) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                capsules = readCapsules(in, onCapsule);
+            } else if ("responses".equals(name) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                responses = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    responses.add(read(in, null));
+                }
+                in.endArray();
+            } else {
+                scalars.add(name, JsonParser.parseReader(in));
+            }
+        }
+        in.endObject();
+
+        ApiResponse response = gson.fromJson(scalars, ApiResponse.class);
+        if (capsules != null) {
+            response.setCapsules(capsules);
+        }
+        if (responses != null) {
+            response.setResponses(responses);
+        }
+        return response;
+    }
+
+    private List<Capsule> readCapsules(JsonReader in, Consumer<? super Capsule> onCapsule) throws IOException {
+        List<Capsule> capsules = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            Capsule capsule = capsuleAdapter.read(in);
+            if (capsule == null) {
+                continue;
+            }
+            capsules.add(capsule);
+            if (onCapsule != null) {
+                onCapsule.accept(capsule);
+            }
+        }
+        in.endArray();
+        return capsules;
+    }
+}
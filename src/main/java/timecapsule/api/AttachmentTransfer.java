@@ -0,0 +1,296 @@
+package timecapsule.api;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import timecapsule.crypto.AttachmentCipher;
+import timecapsule.crypto.StreamingCipher;
+import timecapsule.model.ApiResponse;
+import timecapsule.model.Attachment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves attachment files to and from the chunk store. Files are read and
+ * sealed once, as a stream; only chunks the server reports as missing are
+ * uploaded, so retrying an interrupted upload with the same cipher resumes
+ * where it stopped and repeated content is stored once. A new cipher has a
+ * new salt, so after a restart the upload starts over.
+ */
+public class AttachmentTransfer {
+
+    public interface ProgressListener {
+        void onProgress(String fileName, long bytesDone, long bytesTotal);
+    }
+
+    private static final int MAX_PARALLEL = 4;
+    private static final int CHECK_BATCH = 8;
+    private static final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "attachment-transfer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ApiClient apiClient;
+    private final AttachmentCipher cipher;
+    private final Gson gson = new Gson();
+
+    public AttachmentTransfer(ApiClient apiClient, AttachmentCipher cipher) {
+        this.apiClient = apiClient;
+        this.cipher = cipher;
+    }
+
+    /**
+     * Uploads every file in turn and returns the sealed manifest to store on
+     * the capsule.
+     */
+    public CompletableFuture<String> uploadAllAsync(List<Path> files, String associatedData,
+                                                    ProgressListener listener) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                List<Attachment> attachments = new ArrayList<>();
+                for (Path file : files) {
+                    attachments.add(upload(file, listener));
+                }
+                return sealManifest(attachments, associatedData);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    public CompletableFuture<Void> downloadAsync(Attachment attachment, Path target, ProgressListener listener) {
+        return CompletableFuture.runAsync(() -> {
+            try (OutputStream out = Files.newOutputStream(target)) {
+                download(attachment, out, listener);
+            } catch (Exception e) {
+                try {
+                    Files.deleteIfExists(target);
+                } catch (IOException ignored) {
+                }
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    public String sealManifest(List<Attachment> attachments, String associatedData) throws Exception {
+        return cipher.sealManifest(gson.toJson(attachments), associatedData);
+    }
+
+    public List<Attachment> openManifest(String sealedManifest, String associatedData) throws Exception {
+        String json = cipher.openManifest(sealedManifest, associatedData);
+        return gson.fromJson(json, new TypeToken<List<Attachment>>() {}.getType());
+    }
+
+    public Attachment upload(Path file, ProgressListener listener) throws Exception {
+        String fileName = file.getFileName().toString();
+        long size = Files.size(file);
+        ChunkUploader uploader = new ChunkUploader(fileName, size, listener);
+
+        try (InputStream in = Files.newInputStream(file)) {
+            StreamingCipher.EncryptingStream sealing = cipher.sealing(uploader::add);
+            try {
+                in.transferTo(sealing);
+            } catch (Throwable e) {
+                try {
+                    sealing.abort();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            sealing.close();
+            uploader.finish();
+        } catch (Exception e) {
+            uploader.cancel();
+            throw e;
+        }
+        return new Attachment(fileName, Files.probeContentType(file), size,
+            AttachmentCipher.CHUNK_SIZE, uploader.chunkIds);
+    }
+
+    public void download(Attachment attachment, OutputStream out, ProgressListener listener) throws Exception {
+        long written = 0;
+        try (InputStream in = cipher.opening(new ChunkFetcher(attachment))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+                written += read;
+                report(listener, attachment.getFileName(), written, attachment.getSize());
+            }
+        }
+        out.flush();
+    }
+
+    // chunkPut is idempotent, so ApiClient already retries transient failures with backoff.
+    private CompletableFuture<Void> put(String id, byte[] sealed) {
+        return apiClient.putChunk(id, sealed).thenCompose(response -> response.isOk()
+            ? CompletableFuture.completedFuture(null)
+            : CompletableFuture.failedFuture(new IOException("Chunk upload failed: " + response.getError())));
+    }
+
+    private static void report(ProgressListener listener, String fileName, long done, long total) {
+        if (listener != null) {
+            listener.onProgress(fileName, done, total);
+        }
+    }
+
+    /**
+     * Collects sealed chunks as the file is read, asks the server which of
+     * each batch it lacks and uploads those in the background, so a file is
+     * read and sealed once and at most a few batches are held in memory.
+     */
+    private class ChunkUploader {
+        private final String fileName;
+        private final long size;
+        private final ProgressListener listener;
+        private final List<String> chunkIds = new ArrayList<>();
+        private final Map<String, byte[]> batch = new LinkedHashMap<>();
+        private final Set<String> queued = new HashSet<>();
+        private final Semaphore permits = new Semaphore(MAX_PARALLEL);
+        private final List<CompletableFuture<Void>> uploads = new ArrayList<>();
+        private final AtomicLong done = new AtomicLong();
+
+        ChunkUploader(String fileName, long size, ProgressListener listener) {
+            this.fileName = fileName;
+            this.size = size;
+            this.listener = listener;
+        }
+
+        void add(byte[] sealed) throws IOException {
+            String id = AttachmentCipher.chunkId(sealed);
+            chunkIds.add(id);
+            if (queued.add(id)) {
+                batch.put(id, sealed);
+            } else {
+                advance();
+            }
+            if (batch.size() >= CHECK_BATCH) {
+                flush();
+            }
+        }
+
+        void finish() throws IOException {
+            flush();
+            try {
+                CompletableFuture.allOf(uploads.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                throw new IOException("Upload of " + fileName + " failed; retry to resume", e.getCause());
+            }
+        }
+
+        void cancel() {
+            uploads.forEach(upload -> upload.cancel(false));
+        }
+
+        private void flush() throws IOException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            ApiResponse check = apiClient.findMissingChunks(new ArrayList<>(batch.keySet())).join();
+            if (!check.isOk() || check.getMissing() == null) {
+                throw new IOException("Chunk check failed: " + check.getError());
+            }
+            Set<String> missing = new HashSet<>(check.getMissing());
+            for (Map.Entry<String, byte[]> chunk : batch.entrySet()) {
+                if (!missing.contains(chunk.getKey())) {
+                    advance();
+                    continue;
+                }
+                permits.acquireUninterruptibly();
+                uploads.add(put(chunk.getKey(), chunk.getValue()).whenComplete((response, error) -> {
+                    permits.release();
+                    if (error == null) {
+                        advance();
+                    }
+                }));
+            }
+            batch.clear();
+        }
+
+        private void advance() {
+            report(listener, fileName, Math.min(done.addAndGet(AttachmentCipher.CHUNK_SIZE), size), size);
+        }
+    }
+
+    /** Fetches an attachment's chunks in order, a few ahead, checking each against its id. */
+    private class ChunkFetcher extends InputStream {
+        private final Attachment attachment;
+        private final List<String> ids;
+        private final Deque<CompletableFuture<ApiResponse>> window = new ArrayDeque<>();
+        private int requested;
+        private int index;
+        private byte[] current = new byte[0];
+        private int position;
+
+        ChunkFetcher(Attachment attachment) {
+            this.attachment = attachment;
+            this.ids = attachment.getChunkIds();
+        }
+
+        private byte[] next() throws IOException {
+            if (index == ids.size()) {
+                return null;
+            }
+            while (requested < ids.size() && window.size() < MAX_PARALLEL) {
+                window.addLast(apiClient.getChunk(ids.get(requested++)));
+            }
+            ApiResponse response = window.removeFirst().join();
+            if (!response.isOk() || response.getDataBase64() == null) {
+                throw new IOException("Chunk " + index + " of " + attachment.getFileName()
+                    + " unavailable: " + response.getError());
+            }
+            byte[] sealed = Base64.getDecoder().decode(response.getDataBase64());
+            if (!ids.get(index).equals(AttachmentCipher.chunkId(sealed))) {
+                throw new IOException("Chunk " + index + " of " + attachment.getFileName()
+                    + " does not match its id");
+            }
+            index++;
+            return sealed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == current.length) {
+                byte[] sealed = next();
+                if (sealed == null) {
+                    return -1;
+                }
+                current = sealed;
+                position = 0;
+            }
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package timecapsule.api;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Spreads calls over several deployments of the backend script that all
+ * share one spreadsheet, so any of them can serve any account. Every replica
+ * has its own {@link CircuitBreaker}; calls go to the healthiest replica and
+ * fail over to the next one when it starts failing.
+ *
+ * The spec accepted by {@link #parse} separates replicas with commas or
+ * {@code |}, e.g. {@code a/exec,b/exec}.
+ */
+public class BackendRouter {
+
+    /** One deployment and its health. */
+    public static class Backend {
+        private final URI uri;
+        private final CircuitBreaker breaker = new CircuitBreaker();
+
+        Backend(URI uri) {
+            this.uri = uri;
+        }
+
+        public URI getUri() { return uri; }
+        public CircuitBreaker getBreaker() { return breaker; }
+
+        @Override
+        public String toString() {
+            return uri + " (" + breaker.getState() + ")";
+        }
+    }
+
+    private final List<Backend> replicas;
+
+    public BackendRouter(List<URI> uris) {
+        if (uris.isEmpty()) {
+            throw new IllegalArgumentException("No backend configured");
+        }
+        List<Backend> backends = new ArrayList<>();
+        for (URI uri : uris) {
+            backends.add(new Backend(uri));
+        }
+        this.replicas = Collections.unmodifiableList(backends);
+    }
+
+    public static BackendRouter parse(String spec) {
+        List<URI> uris = new ArrayList<>();
+        for (String replica : spec.split("[,|]")) {
+            if (!replica.isBlank()) {
+                uris.add(URI.create(replica.trim()));
+            }
+        }
+        return new BackendRouter(uris);
+    }
+
+    public static BackendRouter single(URI uri) {
+        return new BackendRouter(List.of(uri));
+    }
+
+    /**
+     * The replica to call, or null when every replica is open. A non-null
+     * answer may have claimed a half-open trial, so the caller must report the
+     * outcome to its breaker.
+     */
+    public Backend select(String key) {
+        if (replicas.size() == 1) {
+            Backend only = replicas.get(0);
+            return only.breaker.allowRequest() ? only : null;
+        }
+
+        // Start from a per-account replica so healthy replicas share the load, then prefer the fewest recent failures.
+        int start = key == null ? 0 : Math.floorMod(key.trim().toLowerCase(Locale.ROOT).hashCode(), replicas.size());
+        int[] failures = new int[replicas.size()];
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (start + i) % replicas.size();
+            failures[index] = replicas.get(index).breaker.getConsecutiveFailures();
+            order.add(index);
+        }
+        order.sort(Comparator.comparingInt(index -> failures[index]));
+        for (int index : order) {
+            Backend backend = replicas.get(index);
+            if (backend.breaker.allowRequest()) {
+                return backend;
+            }
+        }
+        return null;
+    }
+
+    /** How long until some replica takes calls again. */
+    public long getRemainingOpenMillis() {
+        long wait = Long.MAX_VALUE;
+        for (Backend backend : replicas) {
+            wait = Math.min(wait, backend.breaker.getRemainingOpenMillis());
+        }
+        return wait;
+    }
+
+    public List<Backend> getBackends() {
+        return replicas;
+    }
+}
@@ -0,0 +1,27 @@
+package timecapsule.api;
+
+import java.io.IOException;
+
+/** The backend answered with 429 or a 5xx instead of a JSON response. */
+class BackendStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    private final long retryAfterMillis;
+    private final boolean afterRedirect;
+
+    /** {@code afterRedirect} means the status came from a hop after the first, when the request had already run. */
+    BackendStatusException(int status, long retryAfterMillis, boolean afterRedirect) {
+        super("Backend returned HTTP " + status + (afterRedirect ? " after redirect" : ""));
+        this.status = status;
+        this.retryAfterMillis = retryAfterMillis;
+        this.afterRedirect = afterRedirect;
+    }
+
+    int getStatus() { return status; }
+
+    long getRetryAfterMillis() { return retryAfterMillis; }
+
+    boolean isAfterRedirect() { return afterRedirect; }
+}
@@ -0,0 +1,67 @@
+package timecapsule.api;
+
+import timecapsule.model.Capsule;
+import timecapsule.store.LocalStore;
+
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sealed bodies of capsules that have been opened. Lists only carry headers;
+ * the ciphertext is fetched the first time a capsule is opened and kept here,
+ * in memory and in the local store when one is attached, since a body never
+ * changes once its capsule has unlocked.
+ */
+class CapsuleBodyCache {
+
+    private static final String COLLECTION = "bodies";
+
+    private final Map<String, Capsule> recent;
+    private LocalStore store;
+
+    CapsuleBodyCache(int maxEntries) {
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Capsule> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    synchronized void bind(LocalStore store) {
+        recent.clear();
+        this.store = store;
+    }
+
+    synchronized Capsule get(String capsuleId) {
+        Capsule capsule = recent.get(capsuleId);
+        if (capsule == null && store != null) {
+            capsule = store.get(COLLECTION, capsuleId, Capsule.class);
+            if (capsule != null) {
+                recent.put(capsuleId, capsule);
+            }
+        }
+        return capsule;
+    }
+
+    synchronized void put(Capsule capsule) {
+        if (capsule == null || capsule.getCapsuleId() == null || capsule.getCiphertextBase64() == null) {
+            return;
+        }
+        recent.put(capsule.getCapsuleId(), capsule);
+        if (store != null) {
+            try {
+                store.put(COLLECTION, capsule.getCapsuleId(), capsule);
+            } catch (UncheckedIOException e) {
+                System.err.println("[CapsuleBodyCache] Local store write failed: " + e.getMessage());
+                store = null;
+            }
+        }
+    }
+
+    synchronized void clear() {
+        recent.clear();
+        store = null;
+    }
+}
@@ -0,0 +1,85 @@
+package timecapsule.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The result of one incremental sync: records that appeared, records that
+ * changed, and keys that disappeared, plus the merged snapshot.
+ */
+public class ChangeSet<T> {
+
+    private final List<T> added;
+    private final List<T> updated;
+    private final Set<String> removedKeys;
+    private final List<T> snapshot;
+    private final String error;
+
+    ChangeSet(List<T> added, List<T> updated, Set<String> removedKeys, List<T> snapshot) {
+        this.added = added;
+        this.updated = updated;
+        this.removedKeys = removedKeys;
+        this.snapshot = snapshot;
+        this.error = null;
+    }
+
+    private ChangeSet(String error) {
+        this.added = Collections.emptyList();
+        this.updated = Collections.emptyList();
+        this.removedKeys = Collections.emptySet();
+        this.snapshot = Collections.emptyList();
+        this.error = error;
+    }
+
+    public static <T> ChangeSet<T> failed(String error) {
+        return new ChangeSet<>(error != null ? error : "Unknown error");
+    }
+
+    public List<T> getAdded() { return added; }
+    public List<T> getUpdated() { return updated; }
+    public Set<String> getRemovedKeys() { return removedKeys; }
+    public List<T> getSnapshot() { return snapshot; }
+    public String getError() { return error; }
+
+    public boolean isOk() {
+        return error == null;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removedKeys.isEmpty();
+    }
+
+    public void applyTo(List<T> target, Function<T, String> keyFunction) {
+        if (isEmpty()) {
+            return;
+        }
+
+        if (!removedKeys.isEmpty()) {
+            target.removeIf(item -> removedKeys.contains(keyFunction.apply(item)));
+        }
+
+        if (!updated.isEmpty()) {
+            Map<String, Integer> positions = new HashMap<>();
+            for (int i = 0; i < target.size(); i++) {
+                positions.put(keyFunction.apply(target.get(i)), i);
+            }
+            List<T> missing = new ArrayList<>();
+            for (T item : updated) {
+                Integer index = positions.get(keyFunction.apply(item));
+                if (index != null) {
+                    target.set(index, item);
+                } else {
+                    missing.add(item);
+                }
+            }
+            target.addAll(missing);
+        }
+
+        target.addAll(added);
+    }
+}
@@ -0,0 +1,88 @@
+package timecapsule.api;
+
+/**
+ * Stops sending to a backend that keeps failing. After
+ * {@code failureThreshold} consecutive transient failures the breaker opens
+ * and calls fail immediately; once the cool-down passes a single trial call
+ * is let through, which either closes the breaker or opens it again for twice
+ * as long (up to {@code maxOpenMillis}).
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long baseOpenMillis;
+    private final long maxOpenMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openMillis;
+    private long openUntil;
+    private boolean trialInFlight;
+
+    public CircuitBreaker() {
+        this(5, 10_000, 120_000);
+    }
+
+    public CircuitBreaker(int failureThreshold, long baseOpenMillis, long maxOpenMillis) {
+        this.failureThreshold = failureThreshold;
+        this.baseOpenMillis = baseOpenMillis;
+        this.maxOpenMillis = maxOpenMillis;
+        this.openMillis = baseOpenMillis;
+    }
+
+    /** Whether a call may go out now; a true answer in HALF_OPEN claims the single trial. */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() < openUntil) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        openMillis = baseOpenMillis;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN) {
+            openMillis = Math.min(maxOpenMillis, openMillis * 2);
+            open();
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /** Milliseconds until the next trial call is allowed; 0 unless open. */
+    public synchronized long getRemainingOpenMillis() {
+        return state == State.OPEN ? Math.max(0, openUntil - System.currentTimeMillis()) : 0;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + openMillis;
+        trialInFlight = false;
+    }
+}
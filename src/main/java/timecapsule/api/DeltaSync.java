@@ -0,0 +1,152 @@
+package timecapsule.api;
+
+import timecapsule.store.LocalStore;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keyed local copy of one list endpoint, kept current by merging the records
+ * the server reports as changed since the last watermark.
+ */
+public class DeltaSync<T> {
+
+    private static final long WATERMARK_OVERLAP_MILLIS = 5000;
+
+    private final Function<T, String> keyFunction;
+    private final ToLongFunction<T> versionFunction;
+    private final Map<String, T> records = new LinkedHashMap<>();
+
+    private long watermark;
+    private long syncedAtNanos;
+    private boolean stale = true;
+
+    private LocalStore store;
+    private String collection;
+
+    public DeltaSync(Function<T, String> keyFunction, ToLongFunction<T> versionFunction) {
+        this.keyFunction = keyFunction;
+        this.versionFunction = versionFunction;
+    }
+
+    public synchronized long getWatermark() {
+        return watermark;
+    }
+
+    public synchronized boolean isFresh(Duration ttl) {
+        return !stale && ttl != null && System.nanoTime() - syncedAtNanos < ttl.toNanos();
+    }
+
+    public synchronized void markStale() {
+        stale = true;
+    }
+
+    public synchronized void reset() {
+        records.clear();
+        watermark = 0;
+        stale = true;
+        store = null;
+        collection = null;
+    }
+
+    public synchronized void bind(LocalStore store, String collection, Class<T> type) {
+        reset();
+        if (store == null) {
+            return;
+        }
+        this.store = store;
+        this.collection = collection;
+        for (T record : store.readAll(collection, type)) {
+            records.put(keyFunction.apply(record), record);
+        }
+        watermark = store.getWatermark(collection);
+    }
+
+    public synchronized List<T> snapshot() {
+        return new ArrayList<>(records.values());
+    }
+
+    public synchronized ChangeSet<T> unchanged() {
+        return new ChangeSet<>(Collections.emptyList(), Collections.emptyList(), Collections.emptySet(), snapshot());
+    }
+
+    public synchronized ChangeSet<T> apply(List<T> changed, List<String> deletedKeys, long serverTime, boolean delta) {
+        List<T> added = new ArrayList<>();
+        List<T> updated = new ArrayList<>();
+        Set<String> removed = new HashSet<>();
+
+        Set<String> seen = delta ? null : new HashSet<>();
+        for (T record : changed) {
+            String key = keyFunction.apply(record);
+            if (seen != null) {
+                seen.add(key);
+            }
+            T previous = records.put(key, record);
+            if (previous == null) {
+                added.add(record);
+            } else {
+                long version = versionFunction.applyAsLong(record);
+                if (version == 0 || version != versionFunction.applyAsLong(previous)) {
+                    updated.add(record);
+                }
+            }
+        }
+
+        if (seen != null) {
+            for (String key : new ArrayList<>(records.keySet())) {
+                if (!seen.contains(key)) {
+                    records.remove(key);
+                    removed.add(key);
+                }
+            }
+        }
+
+        if (deletedKeys != null) {
+            for (String key : deletedKeys) {
+                if (records.remove(key) != null) {
+                    removed.add(key);
+                }
+            }
+        }
+
+        if (serverTime > 0) {
+            watermark = Math.max(watermark, serverTime - WATERMARK_OVERLAP_MILLIS);
+        }
+        syncedAtNanos = System.nanoTime();
+        stale = false;
+
+        persist(added, updated, removed);
+        return new ChangeSet<>(added, updated, removed, snapshot());
+    }
+
+    private void persist(List<T> added, List<T> updated, Set<String> removed) {
+        if (store == null) {
+            return;
+        }
+        try {
+            for (T record : added) {
+                store.put(collection, keyFunction.apply(record), record);
+            }
+            for (T record : updated) {
+                store.put(collection, keyFunction.apply(record), record);
+            }
+            for (String key : removed) {
+                store.remove(collection, key);
+            }
+            store.setWatermark(collection, watermark);
+            store.flush();
+        } catch (UncheckedIOException e) {
+            System.err.println("[DeltaSync] Local store write failed: " + e.getMessage());
+            store = null;
+        }
+    }
+}
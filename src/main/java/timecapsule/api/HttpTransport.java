@@ -0,0 +1,286 @@
+package timecapsule.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends the client's JSON POSTs over one HTTP/2 client and follows redirects
+ * itself instead of leaving it to {@link HttpClient.Redirect}.
+ *
+ * Apps Script answers every POST with a 302 to a one-time googleusercontent
+ * URL, so that hop cannot be skipped; following it here lets the hop be timed
+ * and lets the client warm the second host's connection in advance. Permanent
+ * redirects (308) do keep the method and are remembered, so later calls go
+ * straight to the new location.
+ *
+ * java.net.http does not report DNS, connect and TLS separately. They are
+ * folded into the first-hop time of a call on a cold connection, and
+ * {@link #preconnect} times them on their own for each host.
+ *
+ * Idle HTTP/1.1 connections are kept for {@value #DEFAULT_KEEPALIVE_SECONDS} s
+ * unless {@code jdk.httpclient.keepalive.timeout} is set, well under the
+ * JDK's 20 minutes, so a connection the server has already dropped is not
+ * picked for the next call. HTTP/2 connections stay open until the server
+ * closes them.
+ */
+public class HttpTransport {
+
+    private static final int MAX_HOPS = 5;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final String KEEPALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+    private static final int DEFAULT_KEEPALIVE_SECONDS = 120;
+
+    static {
+        // Read once when the JDK's connection pool class loads, so it has to be set before the first client.
+        if (System.getProperty(KEEPALIVE_PROPERTY) == null) {
+            System.setProperty(KEEPALIVE_PROPERTY, String.valueOf(DEFAULT_KEEPALIVE_SECONDS));
+        }
+    }
+
+    /** Phase times for one call; the body phase is filled in by the caller. */
+    public static class Timing {
+        private long firstHopNanos;
+        private long redirectNanos;
+        private long bodyNanos;
+        private int hops;
+        private boolean permanentTarget;
+        private HttpClient.Version version;
+
+        public long getFirstHopMillis() { return firstHopNanos / 1_000_000; }
+        public long getRedirectMillis() { return redirectNanos / 1_000_000; }
+        public long getBodyMillis() { return bodyNanos / 1_000_000; }
+        public long getTotalMillis() { return (firstHopNanos + redirectNanos + bodyNanos) / 1_000_000; }
+        public int getHops() { return hops; }
+        public boolean isPermanentTarget() { return permanentTarget; }
+        public HttpClient.Version getVersion() { return version; }
+
+        @Override
+        public String toString() {
+            return getFirstHopMillis() + " first hop + " + getRedirectMillis() + " redirect + "
+                + getBodyMillis() + " body, " + version + (permanentTarget ? ", cached target" : "");
+        }
+    }
+
+    /** A response whose body has not been read yet. */
+    public class Exchange {
+        private final HttpResponse<InputStream> response;
+        private final Timing timing;
+        private final long bodyStart = System.nanoTime();
+
+        Exchange(HttpResponse<InputStream> response, Timing timing) {
+            this.response = response;
+            this.timing = timing;
+        }
+
+        public HttpResponse<InputStream> getResponse() { return response; }
+        public Timing getTiming() { return timing; }
+
+        /** Marks the body as fully read and adds this call to the running totals. */
+        public void finish() {
+            timing.bodyNanos = System.nanoTime() - bodyStart;
+            stats.add(timing);
+        }
+    }
+
+    /** Running totals per phase across every finished call. */
+    public static class Stats {
+        private long calls;
+        private long redirected;
+        private long http2;
+        private long firstHopTotal;
+        private long firstHopMax;
+        private long redirectTotal;
+        private long redirectMax;
+        private long bodyTotal;
+        private long bodyMax;
+
+        synchronized void add(Timing timing) {
+            calls++;
+            if (timing.hops > 1) redirected++;
+            if (timing.version == HttpClient.Version.HTTP_2) http2++;
+            firstHopTotal += timing.firstHopNanos;
+            firstHopMax = Math.max(firstHopMax, timing.firstHopNanos);
+            redirectTotal += timing.redirectNanos;
+            redirectMax = Math.max(redirectMax, timing.redirectNanos);
+            bodyTotal += timing.bodyNanos;
+            bodyMax = Math.max(bodyMax, timing.bodyNanos);
+        }
+
+        synchronized Stats copy() {
+            Stats copy = new Stats();
+            copy.calls = calls;
+            copy.redirected = redirected;
+            copy.http2 = http2;
+            copy.firstHopTotal = firstHopTotal;
+            copy.firstHopMax = firstHopMax;
+            copy.redirectTotal = redirectTotal;
+            copy.redirectMax = redirectMax;
+            copy.bodyTotal = bodyTotal;
+            copy.bodyMax = bodyMax;
+            return copy;
+        }
+
+        public long getCalls() { return calls; }
+        public long getRedirected() { return redirected; }
+        public long getHttp2Calls() { return http2; }
+
+        @Override
+        public String toString() {
+            if (calls == 0) {
+                return "no calls";
+            }
+            return calls + " calls (" + redirected + " redirected, " + http2 + " over HTTP/2); avg/max ms: "
+                + "first hop " + avg(firstHopTotal) + "/" + firstHopMax / 1_000_000
+                + ", redirect " + avg(redirectTotal) + "/" + redirectMax / 1_000_000
+                + ", body " + avg(bodyTotal) + "/" + bodyMax / 1_000_000;
+        }
+
+        private long avg(long totalNanos) {
+            return totalNanos / calls / 1_000_000;
+        }
+    }
+
+    /**
+     * A hop after the first failed. The backend already ran the request by
+     * then, so callers must not treat this like a connection that never opened.
+     */
+    static class RedirectException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        RedirectException(URI target, Throwable cause) {
+            super("Redirect to " + target.getHost() + " failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private final HttpClient client;
+    private final Map<URI, URI> permanentRedirects = new ConcurrentHashMap<>();
+    private final Map<String, URI> redirectOrigins = new ConcurrentHashMap<>();
+    private final Stats stats = new Stats();
+
+    public HttpTransport() {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    /** Posts {@code payload} to {@code uri} and follows any redirects. */
+    public CompletableFuture<Exchange> post(URI uri, byte[] payload) {
+        Timing timing = new Timing();
+        URI target = permanentRedirects.getOrDefault(uri, uri);
+        timing.permanentTarget = target != uri;
+        return send(uri, target, "POST", payload, timing);
+    }
+
+    /**
+     * Opens connections to {@code uri}'s host and to every redirect host seen
+     * so far, so the first real call skips DNS, TCP and TLS. Each host's
+     * result is reported as (origin, milliseconds); failures are ignored.
+     */
+    public CompletableFuture<Map<String, Long>> preconnect(URI uri, List<URI> knownRedirects) {
+        for (URI known : knownRedirects) {
+            redirectOrigins.putIfAbsent(known.getHost(), origin(known));
+        }
+        List<URI> origins = new ArrayList<>();
+        origins.add(origin(uri));
+        origins.addAll(redirectOrigins.values());
+
+        Map<String, Long> times = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] probes = origins.stream().map(origin -> probe(origin, times)).toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(probes).thenApply(v -> times);
+    }
+
+    public Stats getStats() {
+        return stats.copy();
+    }
+
+    private CompletableFuture<Exchange> send(URI original, URI target, String method, byte[] payload, Timing timing) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(target)
+                .timeout(REQUEST_TIMEOUT);
+        if ("POST".equals(method)) {
+            builder.header("Content-Type", "application/json")
+                   .POST(HttpRequest.BodyPublishers.ofByteArray(payload));
+        } else {
+            builder.GET();
+        }
+
+        long hopStart = System.nanoTime();
+        return client.sendAsync(builder.build(), HttpTransport::bodyUnlessRedirect)
+                .thenCompose(response -> {
+                    long elapsed = System.nanoTime() - hopStart;
+                    if (timing.hops++ == 0) {
+                        timing.firstHopNanos = elapsed;
+                    } else {
+                        timing.redirectNanos += elapsed;
+                    }
+                    timing.version = response.version();
+
+                    int status = response.statusCode();
+                    String location = response.headers().firstValue("Location").orElse(null);
+                    if (!isRedirect(status) || location == null) {
+                        return CompletableFuture.completedFuture(new Exchange(response, timing));
+                    }
+                    if (timing.hops >= MAX_HOPS) {
+                        return CompletableFuture.failedFuture(new IOException("Too many redirects"));
+                    }
+
+                    URI next = target.resolve(location);
+                    if (status == 308 && "POST".equals(method)) {
+                        permanentRedirects.put(original, next);
+                    }
+                    if (!next.getHost().equals(target.getHost())) {
+                        redirectOrigins.putIfAbsent(next.getHost(), origin(next));
+                    }
+                    boolean keepMethod = status == 307 || status == 308;
+                    return send(original, next, keepMethod ? method : "GET", payload, timing)
+                            .exceptionallyCompose(error -> CompletableFuture.failedFuture(
+                                RetryPolicy.unwrap(error) instanceof RedirectException
+                                    ? error : new RedirectException(next, RetryPolicy.unwrap(error))));
+                });
+    }
+
+    private CompletableFuture<Void> probe(URI origin, Map<String, Long> times) {
+        long start = System.nanoTime();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(origin)
+                .timeout(REQUEST_TIMEOUT)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    if (error == null) {
+                        times.put(origin.toString(), (System.nanoTime() - start) / 1_000_000);
+                    }
+                    return null;
+                });
+    }
+
+    /** Redirect bodies are drained rather than buffered so the connection can be reused. */
+    private static HttpResponse.BodySubscriber<InputStream> bodyUnlessRedirect(HttpResponse.ResponseInfo info) {
+        if (isRedirect(info.statusCode())) {
+            return HttpResponse.BodySubscribers.replacing(InputStream.nullInputStream());
+        }
+        return HttpResponse.BodySubscribers.ofInputStream();
+    }
+
+    private static boolean isRedirect(int status) {
+        return status == 301 || status == 302 || status == 303 || status == 307 || status == 308;
+    }
+
+    private static URI origin(URI uri) {
+        return URI.create(uri.getScheme() + "://" + uri.getAuthority() + "/");
+    }
+}
@@ -0,0 +1,39 @@
+package timecapsule.api;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/** Reads longs the backend sends as numbers, numeric strings or null; anything else becomes 0. */
+class LenientLongAdapter extends TypeAdapter<Long> {
+    @Override
+    public void write(JsonWriter out, Long value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value);
+        }
+    }
+
+    @Override
+    public Long read(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return 0L;
+        } else if (token == JsonToken.STRING) {
+            String str = in.nextString();
+            try {
+                return Long.parseLong(str);
+            } catch (NumberFormatException e) {
+                return 0L;
+            }
+        } else if (token == JsonToken.NUMBER) {
+            return in.nextLong();
+        }
+        return 0L;
+    }
+}
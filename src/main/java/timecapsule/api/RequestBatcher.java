@@ -0,0 +1,137 @@
+package timecapsule.api;
+
+import timecapsule.model.ApiResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects requests issued within a short window and sends them to the backend
+ * as a single "batch" envelope, then hands each caller its own response.
+ * Requests whose future is cancelled before the window closes are left out.
+ */
+public class RequestBatcher {
+
+    private final Function<Map<String, Object>, CompletableFuture<ApiResponse>> sender;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+
+    private List<PendingRequest> pending = new ArrayList<>();
+
+    public RequestBatcher(Function<Map<String, Object>, CompletableFuture<ApiResponse>> sender,
+                          Duration window, int maxBatchSize) {
+        this.sender = sender;
+        this.windowMillis = window.toMillis();
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "api-batcher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public CompletableFuture<ApiResponse> submit(Map<String, Object> request) {
+        if (windowMillis <= 0) {
+            return sender.apply(request);
+        }
+
+        PendingRequest entry = new PendingRequest(request);
+        List<PendingRequest> toFlush = null;
+
+        synchronized (this) {
+            pending.add(entry);
+            if (pending.size() >= maxBatchSize) {
+                toFlush = drain();
+            } else if (pending.size() == 1) {
+                scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (toFlush != null) {
+            send(toFlush);
+        }
+        return entry.future;
+    }
+
+    public void flush() {
+        List<PendingRequest> toFlush;
+        synchronized (this) {
+            toFlush = drain();
+        }
+        send(toFlush);
+    }
+
+    private List<PendingRequest> drain() {
+        List<PendingRequest> drained = pending;
+        pending = new ArrayList<>();
+        return drained;
+    }
+
+    private void send(List<PendingRequest> batch) {
+        batch.removeIf(p -> p.future.isCancelled());
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        if (batch.size() == 1) {
+            PendingRequest only = batch.get(0);
+            sender.apply(only.request).whenComplete((response, error) -> complete(only, response, error));
+            return;
+        }
+
+        List<Map<String, Object>> requests = new ArrayList<>(batch.size());
+        for (PendingRequest p : batch) {
+            requests.add(p.request);
+        }
+
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("action", "batch");
+        envelope.put("requests", requests);
+
+        sender.apply(envelope).whenComplete((response, error) -> {
+            if (error != null) {
+                batch.forEach(p -> p.future.completeExceptionally(error));
+                return;
+            }
+
+            List<ApiResponse> responses = response.getResponses();
+            if (!response.isOk() || responses == null || responses.size() != batch.size()) {
+                String reason = response.getError() != null ? response.getError() : "Malformed batch response";
+                batch.forEach(p -> p.future.complete(ApiResponse.error(reason)));
+                return;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i), responses.get(i), null);
+            }
+        });
+    }
+
+    private void complete(PendingRequest p, ApiResponse response, Throwable error) {
+        if (error != null) {
+            p.future.completeExceptionally(error);
+        } else if (response == null) {
+            p.future.complete(ApiResponse.error("Empty response"));
+        } else {
+            p.future.complete(response);
+        }
+    }
+
+    private static class PendingRequest {
+        final Map<String, Object> request;
+        final CompletableFuture<ApiResponse> future = new CompletableFuture<>();
+
+        PendingRequest(Map<String, Object> request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package timecapsule.api;
+
+import timecapsule.model.ApiResponse;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sits in front of the transport for read-only actions: identical concurrent
+ * requests share one in-flight future, and successful responses are kept for a
+ * per-action TTL until a mutating action invalidates them. Each caller gets
+ * its own copy of the shared future; once every caller has cancelled its copy
+ * the load itself is cancelled, so a request still waiting in the batcher is
+ * never sent.
+ */
+public class ResponseCache {
+
+    private static final Set<String> READ_ACTIONS = Set.of(
+        "searchUsers", "getUserByEmail",
+        "friendsList", "friendRequests", "invitesList",
+        "list", "listSent", "listReceived"
+    );
+
+    private static final Map<String, Set<String>> INVALIDATIONS = new HashMap<>();
+    static {
+        Set<String> capsuleLists = Set.of("list", "listSent", "listReceived");
+        Set<String> friendLists = Set.of("friendsList", "friendRequests");
+
+        INVALIDATIONS.put("create", capsuleLists);
+        INVALIDATIONS.put("open", capsuleLists);
+        INVALIDATIONS.put("openReady", capsuleLists);
+        INVALIDATIONS.put("markRecipientOpened", Set.of("listReceived"));
+        INVALIDATIONS.put("friendRequest", Set.of("friendRequests"));
+        INVALIDATIONS.put("friendAccept", friendLists);
+        INVALIDATIONS.put("friendDecline", friendLists);
+        INVALIDATIONS.put("friendBlock", friendLists);
+        INVALIDATIONS.put("inviteSend", Set.of("invitesList"));
+        INVALIDATIONS.put("inviteResend", Set.of("invitesList"));
+        INVALIDATIONS.put("inviteAccept", Set.of("friendsList", "friendRequests", "invitesList"));
+    }
+
+    private final Map<String, Duration> ttlByAction = new ConcurrentHashMap<>();
+    private final Map<String, CacheEntry> entries = new ConcurrentHashMap<>();
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final List<Consumer<Set<String>>> invalidationListeners = new CopyOnWriteArrayList<>();
+    private final Function<Map<String, Object>, String> keyFunction;
+
+    public ResponseCache(Function<Map<String, Object>, String> keyFunction) {
+        this.keyFunction = keyFunction;
+    }
+
+    public void setTtl(String action, Duration ttl) {
+        if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+            ttlByAction.remove(action);
+        } else {
+            ttlByAction.put(action, ttl);
+        }
+    }
+
+    public Duration getTtl(String action) {
+        return ttlByAction.get(action);
+    }
+
+    public void addInvalidationListener(Consumer<Set<String>> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    public CompletableFuture<ApiResponse> fetch(Map<String, Object> request,
+                                                Function<Map<String, Object>, CompletableFuture<ApiResponse>> loader) {
+        String action = String.valueOf(request.get("action"));
+
+        if (!READ_ACTIONS.contains(action)) {
+            return loader.apply(request).thenApply(response -> {
+                if (response.isOk()) {
+                    onMutation(action);
+                }
+                return response;
+            });
+        }
+
+        String key = keyFunction.apply(new TreeMap<>(request));
+        CacheEntry cached = entries.get(key);
+        if (cached != null) {
+            if (cached.isFresh()) {
+                return CompletableFuture.completedFuture(cached.response);
+            }
+            entries.remove(key, cached);
+        }
+
+        InFlight[] created = new InFlight[1];
+        InFlight call = inFlight.compute(key, (k, current) -> {
+            if (current == null) {
+                current = created[0] = new InFlight(action);
+            }
+            current.waiters++;
+            return current;
+        });
+        CompletableFuture<ApiResponse> copy = call.shared.copy();
+        copy.whenComplete((response, error) -> {
+            if (copy.isCancelled()) {
+                abandon(key, call);
+            }
+        });
+        if (created[0] == null) {
+            return copy;
+        }
+
+        long startGeneration = generation.get();
+        try {
+            call.load = loader.apply(request);
+        } catch (RuntimeException e) {
+            inFlight.remove(key, call);
+            call.shared.completeExceptionally(e);
+            return copy;
+        }
+        call.load.whenComplete((response, error) -> {
+            inFlight.remove(key, call);
+            if (error != null) {
+                call.shared.completeExceptionally(error);
+                return;
+            }
+            Duration ttl = ttlByAction.get(action);
+            if (response.isOk() && ttl != null && generation.get() == startGeneration) {
+                entries.put(key, new CacheEntry(action, response, System.nanoTime() + ttl.toNanos()));
+            }
+            call.shared.complete(response);
+        });
+
+        return copy;
+    }
+
+    private void abandon(String key, InFlight call) {
+        boolean[] last = new boolean[1];
+        inFlight.computeIfPresent(key, (k, current) -> {
+            if (current != call || --current.waiters > 0) {
+                return current;
+            }
+            last[0] = true;
+            return null;
+        });
+        if (last[0] && call.load != null) {
+            call.load.cancel(false);
+        }
+    }
+
+    public void invalidate(String... actions) {
+        generation.incrementAndGet();
+        Set<String> targets = Set.of(actions);
+        entries.values().removeIf(e -> targets.contains(e.action));
+        // Loads already under way may predate the mutation; later callers must not join them.
+        inFlight.values().removeIf(call -> targets.contains(call.action));
+        invalidationListeners.forEach(l -> l.accept(targets));
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+        inFlight.clear();
+        invalidationListeners.forEach(l -> l.accept(READ_ACTIONS));
+    }
+
+    private void onMutation(String action) {
+        if ("registerOrLogin".equals(action)) {
+            clear();
+            return;
+        }
+        Set<String> targets = INVALIDATIONS.getOrDefault(action, Collections.emptySet());
+        if (!targets.isEmpty()) {
+            invalidate(targets.toArray(new String[0]));
+        }
+    }
+
+    private static class InFlight {
+        final String action;
+        final CompletableFuture<ApiResponse> shared = new CompletableFuture<>();
+        volatile CompletableFuture<ApiResponse> load;
+        int waiters;
+
+        InFlight(String action) {
+            this.action = action;
+        }
+    }
+
+    private static class CacheEntry {
+        final String action;
+        final ApiResponse response;
+        final long expiresAtNanos;
+
+        CacheEntry(String action, ApiResponse response, long expiresAtNanos) {
+            this.action = action;
+            this.response = response;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean isFresh() {
+            return System.nanoTime() - expiresAtNanos < 0;
+        }
+    }
+}
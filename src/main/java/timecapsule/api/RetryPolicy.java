@@ -0,0 +1,119 @@
+package timecapsule.api;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether a failed backend call may be sent again, and how long to
+ * wait first. Backoff is exponential with full jitter, so clients that were
+ * throttled together do not all come back at the same moment.
+ *
+ * A retry is only allowed when repeating the action cannot do anything the
+ * first attempt did not already do:
+ * <ul>
+ *   <li>{@link Idempotency#SAFE} reads retry on any transient failure.</li>
+ *   <li>{@link Idempotency#IDEMPOTENT} writes leave the same state however
+ *       often they run. "open" and "openReady" carry a requestId that every
+ *       attempt reuses, so the audit log ties repeats to one request.</li>
+ *   <li>{@link Idempotency#UNSAFE} writes (creating a capsule, sending an
+ *       invite email) retry only when the request provably never ran: the
+ *       connection failed, or the backend answered 429 on the first hop,
+ *       before executing it. A 429 from the redirect hop does not count.</li>
+ * </ul>
+ */
+public class RetryPolicy {
+
+    public enum Idempotency { SAFE, IDEMPOTENT, UNSAFE }
+
+    private static final Set<String> SAFE_ACTIONS = Set.of(
+        "list", "listSent", "listReceived", "friendsList", "friendRequests", "invitesList",
+        "searchUsers", "getUserByEmail", "chunkHas", "chunkGet");
+
+    private static final Set<String> IDEMPOTENT_ACTIONS = Set.of(
+        "open", "openReady", "markRecipientOpened", "chunkPut",
+        "friendAccept", "friendDecline", "friendBlock", "registerOrLogin");
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy() {
+        this(4, 250, 8000);
+    }
+
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /** A batch is only as retryable as the least retryable request in it. */
+    @SuppressWarnings("unchecked")
+    public static Idempotency idempotencyOf(Map<String, Object> request) {
+        Object action = request.get("action");
+        if ("batch".equals(action) && request.get("requests") instanceof List) {
+            Idempotency worst = Idempotency.SAFE;
+            for (Object sub : (List<Object>) request.get("requests")) {
+                Idempotency each = sub instanceof Map ? idempotencyOf((Map<String, Object>) sub) : Idempotency.UNSAFE;
+                if (each.ordinal() > worst.ordinal()) {
+                    worst = each;
+                }
+            }
+            return worst;
+        }
+        if (SAFE_ACTIONS.contains(action)) {
+            return Idempotency.SAFE;
+        }
+        return IDEMPOTENT_ACTIONS.contains(action) ? Idempotency.IDEMPOTENT : Idempotency.UNSAFE;
+    }
+
+    /** {@code attempt} counts from 1 for the call that just failed. */
+    public boolean shouldRetry(Idempotency idempotency, Throwable failure, int attempt) {
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+        Throwable cause = unwrap(failure);
+        if (neverExecuted(cause)) {
+            return true;
+        }
+        if (idempotency == Idempotency.UNSAFE) {
+            return false;
+        }
+        return cause instanceof IOException;
+    }
+
+    /** Delay before attempt {@code attempt + 1}; a Retry-After from the backend wins if longer. */
+    public long delayMillis(int attempt, Throwable failure) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        Throwable cause = unwrap(failure);
+        if (cause instanceof BackendStatusException) {
+            delay = Math.max(delay, Math.min(maxDelayMillis, ((BackendStatusException) cause).getRetryAfterMillis()));
+        }
+        return delay;
+    }
+
+    static Throwable unwrap(Throwable failure) {
+        while (failure instanceof CompletionException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+
+    private static boolean neverExecuted(Throwable cause) {
+        if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) {
+            return true;
+        }
+        if (!(cause instanceof BackendStatusException)) {
+            return false;
+        }
+        BackendStatusException status = (BackendStatusException) cause;
+        return status.getStatus() == 429 && !status.isAfterRedirect();
+    }
+}
@@ -0,0 +1,94 @@
+package timecapsule.api;
+
+import timecapsule.model.ApiResponse;
+
+/**
+ * Estimates the offset between the local clock and the backend's clock from
+ * the timestamps on every response, the way an NTP client does against a
+ * single server: each exchange gives an offset and a round-trip delay, the
+ * sample with the smallest delay in a short window is taken as the most
+ * trustworthy, and the published offset moves towards it gradually so one
+ * slow response cannot make countdowns jump.
+ */
+public class ServerClock {
+
+    private static final int WINDOW = 8;
+    private static final double GAIN = 0.25;
+    private static final long STEP_THRESHOLD_MILLIS = 10 * 60 * 1000L;
+
+    private final long[] offsets = new long[WINDOW];
+    private final long[] delays = new long[WINDOW];
+    private int samples;
+    private int next;
+    private boolean synced;
+
+    private volatile long offset;
+    private volatile long uncertainty = -1;
+
+    /** Current time on the server's clock, as best known. */
+    public long millis() {
+        return System.currentTimeMillis() + offset;
+    }
+
+    /** Milliseconds to add to the local clock to get server time. */
+    public long getOffsetMillis() {
+        return offset;
+    }
+
+    /** Half the round trip of the best recent sample, or -1 before the first sample. */
+    public long getUncertaintyMillis() {
+        return uncertainty;
+    }
+
+    public boolean isSynchronized() {
+        return uncertainty >= 0;
+    }
+
+    /**
+     * Records one exchange. {@code sentAt} and {@code receivedAt} are local
+     * wall-clock times around the request; the response supplies the server's
+     * receive and send times, or just {@code serverTimeEpoch} from backends
+     * that predate them.
+     */
+    void record(ApiResponse response, long sentAt, long receivedAt) {
+        long serverSent = response.getServerSentEpoch();
+        long serverReceived = response.getServerReceivedEpoch();
+        if (serverSent <= 0) {
+            serverSent = response.getServerTimeEpoch();
+            serverReceived = serverSent;
+        }
+        if (serverSent <= 0) {
+            return;
+        }
+        if (serverReceived <= 0 || serverReceived > serverSent) {
+            serverReceived = serverSent;
+        }
+        sample(sentAt, serverReceived, serverSent, receivedAt);
+    }
+
+    synchronized void sample(long t0, long t1, long t2, long t3) {
+        long sampleOffset = ((t1 - t0) + (t2 - t3)) / 2;
+        long sampleDelay = Math.max(0, (t3 - t0) - (t2 - t1));
+
+        offsets[next] = sampleOffset;
+        delays[next] = sampleDelay;
+        next = (next + 1) % WINDOW;
+        samples = Math.min(samples + 1, WINDOW);
+
+        int best = 0;
+        for (int i = 1; i < samples; i++) {
+            if (delays[i] < delays[best]) {
+                best = i;
+            }
+        }
+
+        long target = offsets[best];
+        if (!synced || Math.abs(target - offset) > STEP_THRESHOLD_MILLIS) {
+            offset = target;
+            synced = true;
+        } else {
+            offset += Math.round(GAIN * (target - offset));
+        }
+        uncertainty = delays[best] / 2;
+    }
+}
@@ -0,0 +1,131 @@
+package timecapsule.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Seals attachment chunks and the attachment manifest for one capsule.
+ *
+ * File contents go through {@link StreamingCipher} in its synthetic-nonce
+ * mode: every chunk's nonce is an HMAC of its position and plaintext under a
+ * key separate from the encryption key, so the same file under the same
+ * capsule key always produces the same chunks. That is what lets chunks be
+ * stored under the SHA-256 of their ciphertext, deduplicated, and re-checked
+ * on resume. Both only hold for one instance: {@link #create} draws a fresh
+ * salt, so a new instance derives different keys and seals the same file to
+ * different chunks. The manifest is sealed with a random nonce and carries
+ * the salt and key derivation cost needed to re-derive the keys from the
+ * passphrase.
+ */
+public class AttachmentCipher {
+
+    public static final int CHUNK_SIZE = 512 * 1024;
+
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final byte[] STREAM_AAD = "timecapsule-attachment-v2".getBytes(StandardCharsets.UTF_8);
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    private final KdfParams kdf;
+    private final SecretKeySpec encryptionKey;
+    private final SecretKeySpec nonceKey;
+
+    private AttachmentCipher(KdfParams kdf, SecretKey masterKey) throws GeneralSecurityException {
+        this.kdf = kdf;
+        byte[] master = masterKey.getEncoded();
+        try {
+            this.encryptionKey = new SecretKeySpec(subkey(master, "attachment-encryption"), "AES");
+            this.nonceKey = new SecretKeySpec(subkey(master, "attachment-nonce"), "HmacSHA256");
+        } finally {
+            Arrays.fill(master, (byte) 0);
+        }
+    }
+
+    /**
+     * Derives keys under a fresh salt. Keep the instance for as long as an
+     * upload may be retried: chunks sealed by another instance get other ids,
+     * so nothing already on the server is recognised.
+     */
+    public static AttachmentCipher create(String passphrase) throws Exception {
+        KdfParams kdf = CryptoUtils.newKdfParams();
+        return new AttachmentCipher(kdf, CryptoUtils.deriveKey(passphrase, kdf));
+    }
+
+    public static AttachmentCipher forManifest(String sealedManifest, String passphrase) throws Exception {
+        int dot = sealedManifest.indexOf('.');
+        if (dot <= 0) {
+            throw new GeneralSecurityException("Malformed attachment manifest");
+        }
+        KdfParams kdf = KdfParams.parse(sealedManifest.substring(0, dot));
+        return new AttachmentCipher(kdf, CryptoUtils.deriveKey(passphrase, kdf));
+    }
+
+    /** Seals a file written to the returned stream; {@code sink} gets each stored chunk in order. */
+    public StreamingCipher.EncryptingStream sealing(StreamingCipher.ChunkSink sink) throws IOException {
+        return StreamingCipher.encryptingChunks(sink, encryptionKey, nonceKey, STREAM_AAD, CHUNK_SIZE);
+    }
+
+    /** Opens the concatenation of a file's stored chunks, as produced by {@link #sealing}. */
+    public InputStream opening(InputStream storedChunks) throws IOException {
+        return StreamingCipher.decrypting(storedChunks, encryptionKey, null, STREAM_AAD);
+    }
+
+    public static String chunkId(byte[] sealed) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sealed);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    public String sealManifest(String manifestJson, String associatedData) throws GeneralSecurityException {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        secureRandom.nextBytes(nonce);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, nonce));
+        if (associatedData != null && !associatedData.isEmpty()) {
+            cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] ciphertext = cipher.doFinal(manifestJson.getBytes(StandardCharsets.UTF_8));
+
+        byte[] body = new byte[NONCE_LENGTH + ciphertext.length];
+        System.arraycopy(nonce, 0, body, 0, NONCE_LENGTH);
+        System.arraycopy(ciphertext, 0, body, NONCE_LENGTH, ciphertext.length);
+        return kdf.encode() + "." + Base64.getEncoder().encodeToString(body);
+    }
+
+    public String openManifest(String sealedManifest, String associatedData) throws GeneralSecurityException {
+        byte[] body = Base64.getDecoder().decode(sealedManifest.substring(sealedManifest.indexOf('.') + 1));
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, body, 0, NONCE_LENGTH));
+        if (associatedData != null && !associatedData.isEmpty()) {
+            cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] plaintext = cipher.doFinal(body, NONCE_LENGTH, body.length - NONCE_LENGTH);
+        return new String(plaintext, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] subkey(byte[] master, String label) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(master, "HmacSHA256"));
+        return mac.doFinal(label.getBytes(StandardCharsets.UTF_8));
+    }
+}
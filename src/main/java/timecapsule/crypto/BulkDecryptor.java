@@ -0,0 +1,62 @@
+package timecapsule.crypto;
+
+import timecapsule.model.Capsule;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Decrypts many capsules in parallel on a fork-join pool sized to the machine.
+ * Capsules can be submitted while they are still streaming in; each future
+ * completes as soon as its own key derivation and cipher are done. Capsules
+ * sharing a salt and passphrase derive their key once via the key cache.
+ */
+public class BulkDecryptor implements AutoCloseable {
+
+    private final ForkJoinPool pool;
+    private volatile boolean cancelled;
+
+    public BulkDecryptor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BulkDecryptor(int parallelism) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism),
+            ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    public static String associatedData(Capsule capsule) {
+        return capsule.getOwnerEmail() + "|" + capsule.getUnlockAtUtc();
+    }
+
+    public CompletableFuture<String> decrypt(Capsule capsule, String passphrase) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (cancelled) {
+                throw new CancellationException("Bulk decryption cancelled");
+            }
+            try {
+                return CryptoUtils.decrypt(
+                    capsule.getCiphertextBase64(),
+                    capsule.getIvBase64(),
+                    capsule.getSaltBase64(),
+                    passphrase,
+                    associatedData(capsule)
+                );
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, pool);
+    }
+
+    /**
+     * Stops work that has not started yet; queued capsules complete with a
+     * {@link CancellationException}.
+     */
+    @Override
+    public void close() {
+        cancelled = true;
+        pool.shutdown();
+    }
+}
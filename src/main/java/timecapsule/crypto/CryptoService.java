@@ -0,0 +1,105 @@
+package timecapsule.crypto;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs key derivation and AES-GCM work on a small dedicated pool so callers on
+ * the UI thread only ever wait on a future. Cancelling a returned future
+ * drops it from the queue, or interrupts it between derivation and cipher.
+ */
+public class CryptoService {
+
+    public enum Stage {
+        DERIVING_KEY("Deriving key..."),
+        ENCRYPTING("Encrypting..."),
+        DECRYPTING("Decrypting...");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(Stage stage);
+    }
+
+    private static final int QUEUE_CAPACITY = 64;
+    private static final CryptoService DEFAULT = new CryptoService(
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)), QUEUE_CAPACITY);
+
+    private final ThreadPoolExecutor executor;
+
+    public CryptoService(int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread t = new Thread(r, "crypto-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static CryptoService getDefault() {
+        return DEFAULT;
+    }
+
+    public CompletableFuture<CryptoUtils.EncryptionResult> encryptAsync(
+            String plaintext, String passphrase, String associatedData, ProgressListener listener) {
+        return submit(() -> CryptoUtils.encrypt(plaintext, passphrase, associatedData, listener));
+    }
+
+    public CompletableFuture<String> decryptAsync(String ciphertextBase64, String ivBase64, String saltBase64,
+                                                  String passphrase, String associatedData,
+                                                  ProgressListener listener) {
+        return submit(() -> CryptoUtils.decrypt(
+            ciphertextBase64, ivBase64, saltBase64, passphrase, associatedData, listener));
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            if (result.isDone()) {
+                return null;
+            }
+            try {
+                result.complete(work.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+            return null;
+        });
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new RejectedExecutionException("Crypto queue is full", e));
+            return result;
+        }
+
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+                executor.remove(task);
+            }
+        });
+        return result;
+    }
+}
@@ -2,32 +2,128 @@ package timecapsule.crypto;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
-import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CryptoUtils {
 
     private static final int AES_KEY_SIZE = 256;
     private static final int GCM_TAG_LENGTH = 128;
     private static final int GCM_IV_LENGTH = 12;
-    private static final int SALT_LENGTH = 16;
-    private static final int PBKDF2_ITERATIONS = 100000;
+    private static final int SALT_LENGTH = KdfParams.SALT_LENGTH;
+    private static final String KDF_PROPERTY = "timecapsule.kdf";
+    private static final long DEFAULT_KDF_TARGET_MILLIS = 250;
+    private static final int PBKDF2_PROBE_ITERATIONS = 20_000;
+    // Recipients re-derive with the sender's cost, so a fast sender must not price out a slow recipient.
+    private static final int MAX_CALIBRATED_ITERATIONS = 2_000_000;
+    private static final int SCRYPT_PROBE_LOG_N = 12;
+    private static final int MIN_CALIBRATED_LOG_N = 14;
+    private static final int MAX_CALIBRATED_LOG_N = 17;
+    private static final int KEY_CACHE_SIZE = 64;
+    private static final long KEY_CACHE_TTL_MILLIS = 10 * 60 * 1000;
     private static final SecureRandom secureRandom = new SecureRandom();
+    private static final KeyCache keyCache = new KeyCache(KEY_CACHE_SIZE, KEY_CACHE_TTL_MILLIS);
+
+    // 0xFF never starts valid UTF-8, so it marks a codec-encoded body without breaking older capsules.
+    private static final byte CODEC_MARKER = (byte) 0xFF;
+    private static final int COMPRESSION_THRESHOLD = 256;
+    private static final Map<Byte, PayloadCodec> codecs = new ConcurrentHashMap<>();
+    private static volatile PayloadCodec compressionCodec;
+    private static volatile KdfParams kdf = initialKdf();
+
+    static {
+        registerCodec(new DeflateCodec());
+        compressionCodec = codecs.get(DeflateCodec.ID);
+    }
+
+    public static void clearKeyCache() {
+        keyCache.clear();
+    }
+
+    /** The algorithm and cost new capsules are sealed with; the salt of {@code template} is ignored. */
+    public static void setKdf(KdfParams template) {
+        kdf = template;
+    }
+
+    public static KdfParams getKdf() {
+        return kdf;
+    }
+
+    public static KdfParams calibrate() {
+        return calibrate(DEFAULT_KDF_TARGET_MILLIS);
+    }
+
+    /**
+     * Times a cheap derivation with the current algorithm and scales the cost
+     * so a full one takes about {@code targetMillis} on this machine. PBKDF2
+     * never drops below the legacy 100,000 iterations.
+     */
+    public static KdfParams calibrate(long targetMillis) {
+        KdfParams current = kdf;
+        KdfParams calibrated;
+        try {
+            if (current.getAlgorithm() == KdfParams.Algorithm.SCRYPT) {
+                KdfParams probe = KdfParams.scrypt(SCRYPT_PROBE_LOG_N, current.getR(), current.getP(), newSalt());
+                double ratio = (double) targetMillis / timeDerivation(probe);
+                int logN = SCRYPT_PROBE_LOG_N + (int) Math.floor(Math.log(ratio) / Math.log(2));
+                logN = Math.max(MIN_CALIBRATED_LOG_N, Math.min(MAX_CALIBRATED_LOG_N, logN));
+                calibrated = KdfParams.scrypt(logN, current.getR(), current.getP(), newSalt());
+            } else {
+                KdfParams probe = KdfParams.pbkdf2(PBKDF2_PROBE_ITERATIONS, newSalt());
+                long iterations = PBKDF2_PROBE_ITERATIONS * targetMillis / Math.max(1, timeDerivation(probe));
+                iterations = iterations / 10_000 * 10_000;
+                iterations = Math.max(KdfParams.LEGACY_ITERATIONS, Math.min(MAX_CALIBRATED_ITERATIONS, iterations));
+                calibrated = KdfParams.pbkdf2((int) iterations, newSalt());
+            }
+        } catch (GeneralSecurityException e) {
+            return current;
+        }
+        kdf = calibrated;
+        return calibrated;
+    }
+
+    public static void registerCodec(PayloadCodec codec) {
+        codecs.put(codec.getId(), codec);
+    }
+
+    /**
+     * Sets the codec applied to new capsule bodies above the size threshold, or
+     * disables compression when {@code codec} is null. Bodies written with any
+     * registered codec still decrypt.
+     */
+    public static void setCompressionCodec(PayloadCodec codec) {
+        if (codec != null) {
+            registerCodec(codec);
+        }
+        compressionCodec = codec;
+    }
 
     public static EncryptionResult encrypt(String plaintext, String passphrase, String associatedData) 
             throws Exception {
-        byte[] salt = new byte[SALT_LENGTH];
-        secureRandom.nextBytes(salt);
+        return encrypt(plaintext, passphrase, associatedData, null);
+    }
+
+    static EncryptionResult encrypt(String plaintext, String passphrase, String associatedData,
+                                    CryptoService.ProgressListener listener) throws Exception {
+        KdfParams params = newKdfParams();
         
         byte[] iv = new byte[GCM_IV_LENGTH];
         secureRandom.nextBytes(iv);
         
-        SecretKey key = deriveKey(passphrase, salt);
+        report(listener, CryptoService.Stage.DERIVING_KEY);
+        SecretKey key = deriveKey(passphrase, params);
+        report(listener, CryptoService.Stage.ENCRYPTING);
         
         Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
         GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
@@ -37,22 +133,30 @@ public class CryptoUtils {
             cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
         }
         
-        byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+        byte[] ciphertext = cipher.doFinal(encodeBody(plaintext.getBytes(StandardCharsets.UTF_8)));
         
         return new EncryptionResult(
             Base64.getEncoder().encodeToString(ciphertext),
             Base64.getEncoder().encodeToString(iv),
-            Base64.getEncoder().encodeToString(salt)
+            params.encode()
         );
     }
 
     public static String decrypt(String ciphertextBase64, String ivBase64, String saltBase64,
                                   String passphrase, String associatedData) throws Exception {
+        return decrypt(ciphertextBase64, ivBase64, saltBase64, passphrase, associatedData, null);
+    }
+
+    static String decrypt(String ciphertextBase64, String ivBase64, String saltBase64,
+                          String passphrase, String associatedData,
+                          CryptoService.ProgressListener listener) throws Exception {
         byte[] ciphertext = Base64.getDecoder().decode(ciphertextBase64);
         byte[] iv = Base64.getDecoder().decode(ivBase64);
-        byte[] salt = Base64.getDecoder().decode(saltBase64);
+        KdfParams params = KdfParams.parse(saltBase64);
         
-        SecretKey key = deriveKey(passphrase, salt);
+        report(listener, CryptoService.Stage.DERIVING_KEY);
+        SecretKey key = deriveKey(passphrase, params);
+        report(listener, CryptoService.Stage.DECRYPTING);
         
         Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
         GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
@@ -63,22 +167,131 @@ public class CryptoUtils {
         }
         
         byte[] plaintext = cipher.doFinal(ciphertext);
-        return new String(plaintext, StandardCharsets.UTF_8);
+        return new String(decodeBody(plaintext), StandardCharsets.UTF_8);
     }
 
-    private static SecretKey deriveKey(String passphrase, byte[] salt) throws Exception {
-        PBEKeySpec spec = new PBEKeySpec(
-            passphrase.toCharArray(),
-            salt,
-            PBKDF2_ITERATIONS,
-            AES_KEY_SIZE
+    /**
+     * Seals {@code in} into {@code out} in the chunked streaming format; the
+     * returned result carries the IV and salt but no inline ciphertext.
+     */
+    public static EncryptionResult encrypt(InputStream in, OutputStream out, String passphrase,
+                                           String associatedData) throws Exception {
+        KdfParams params = newKdfParams();
+        
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        secureRandom.nextBytes(iv);
+        
+        SecretKey key = deriveKey(passphrase, params);
+        StreamingCipher.EncryptingStream sealed = StreamingCipher.encrypting(out, key, iv, aadBytes(associatedData));
+        try {
+            in.transferTo(sealed);
+        } catch (Throwable e) {
+            try {
+                sealed.abort();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        sealed.close();
+        
+        return new EncryptionResult(
+            null,
+            Base64.getEncoder().encodeToString(iv),
+            params.encode()
         );
+    }
+
+    public static void decrypt(InputStream in, OutputStream out, String ivBase64, String saltBase64,
+                               String passphrase, String associatedData) throws Exception {
+        byte[] iv = Base64.getDecoder().decode(ivBase64);
+        KdfParams params = KdfParams.parse(saltBase64);
         
-        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        byte[] keyBytes = factory.generateSecret(spec).getEncoded();
-        spec.clearPassword();
+        SecretKey key = deriveKey(passphrase, params);
+        try (InputStream opened = StreamingCipher.decrypting(in, key, iv, aadBytes(associatedData))) {
+            opened.transferTo(out);
+        }
+    }
+
+    private static byte[] encodeBody(byte[] body) throws IOException {
+        PayloadCodec codec = compressionCodec;
+        if (codec == null || body.length < COMPRESSION_THRESHOLD) {
+            return body;
+        }
+        byte[] encoded = codec.encode(body);
+        if (encoded.length + 2 >= body.length) {
+            return body;
+        }
+        byte[] framed = new byte[encoded.length + 2];
+        framed[0] = CODEC_MARKER;
+        framed[1] = codec.getId();
+        System.arraycopy(encoded, 0, framed, 2, encoded.length);
+        return framed;
+    }
+
+    private static byte[] decodeBody(byte[] body) throws IOException {
+        if (body.length < 2 || body[0] != CODEC_MARKER) {
+            return body;
+        }
+        PayloadCodec codec = codecs.get(body[1]);
+        if (codec == null) {
+            throw new IOException("Unknown payload codec: " + body[1]);
+        }
+        return codec.decode(Arrays.copyOfRange(body, 2, body.length));
+    }
+
+    private static byte[] aadBytes(String associatedData) {
+        return associatedData != null ? associatedData.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static void report(CryptoService.ProgressListener listener, CryptoService.Stage stage) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Crypto operation cancelled");
+        }
+        if (listener != null) {
+            listener.onProgress(stage);
+        }
+    }
+
+    static SecretKey deriveKey(String passphrase, byte[] salt) throws Exception {
+        return deriveKey(passphrase, KdfParams.legacy(salt));
+    }
+
+    static SecretKey deriveKey(String passphrase, KdfParams params) throws Exception {
+        byte[] keyBytes = keyCache.getOrDerive(passphrase, params.getSalt(), params.costId(),
+            () -> params.derive(passphrase, AES_KEY_SIZE));
         
-        return new SecretKeySpec(keyBytes, "AES");
+        SecretKey key = new SecretKeySpec(keyBytes, "AES");
+        Arrays.fill(keyBytes, (byte) 0);
+        return key;
+    }
+
+    static KdfParams newKdfParams() {
+        return kdf.withSalt(newSalt());
+    }
+
+    private static byte[] newSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        secureRandom.nextBytes(salt);
+        return salt;
+    }
+
+    private static long timeDerivation(KdfParams params) throws GeneralSecurityException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            params.derive("calibration", AES_KEY_SIZE);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Math.max(1, best / 1_000_000);
+    }
+
+    private static KdfParams initialKdf() {
+        byte[] salt = new byte[SALT_LENGTH];
+        if ("scrypt".equalsIgnoreCase(System.getProperty(KDF_PROPERTY))) {
+            return KdfParams.scrypt(15, 8, 1, salt);
+        }
+        return KdfParams.pbkdf2(KdfParams.LEGACY_ITERATIONS, salt);
     }
 
     public static class EncryptionResult {
@@ -0,0 +1,71 @@
+package timecapsule.crypto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class DeflateCodec implements PayloadCodec {
+
+    public static final byte ID = 1;
+
+    private static final int MAX_DECODED_BYTES = 64 * 1024 * 1024;
+
+    private final int level;
+
+    public DeflateCodec() {
+        this(Deflater.BEST_COMPRESSION);
+    }
+
+    public DeflateCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(byte[] data) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public byte[] decode(byte[] data) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed payload");
+                }
+                if (out.size() + n > MAX_DECODED_BYTES) {
+                    throw new IOException("Decompressed payload too large");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
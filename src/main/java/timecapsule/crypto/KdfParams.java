@@ -0,0 +1,160 @@
+package timecapsule.crypto;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * The key derivation used for one capsule: algorithm, cost and salt. It is
+ * stored in the envelope's salt field, so the cost can change without
+ * breaking capsules sealed under an older setting:
+ * <pre>
+ *   base64salt                          legacy, PBKDF2-SHA256 at 100,000 iterations
+ *   $pbkdf2-sha256$i=600000$base64salt
+ *   $scrypt$ln=15,r=8,p=1$base64salt
+ * </pre>
+ * Parameters read from an envelope are bounded, so a capsule from someone
+ * else cannot make opening it take minutes or exhaust memory.
+ */
+public final class KdfParams {
+
+    public enum Algorithm { PBKDF2_SHA256, SCRYPT }
+
+    static final int LEGACY_ITERATIONS = 100_000;
+    static final int SALT_LENGTH = 16;
+
+    private static final int MIN_ITERATIONS = 10_000;
+    private static final int MAX_ITERATIONS = 10_000_000;
+    private static final int MIN_LOG_N = 10;
+    private static final int MAX_LOG_N = 20;
+    private static final int MAX_R = 32;
+    private static final int MAX_P = 16;
+    private static final long MAX_SCRYPT_MEMORY = 256L * 1024 * 1024;
+
+    private final Algorithm algorithm;
+    private final int iterations;
+    private final int logN;
+    private final int r;
+    private final int p;
+    private final byte[] salt;
+    private final boolean legacy;
+
+    private KdfParams(Algorithm algorithm, int iterations, int logN, int r, int p, byte[] salt, boolean legacy) {
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+        this.logN = logN;
+        this.r = r;
+        this.p = p;
+        this.salt = salt;
+        this.legacy = legacy;
+    }
+
+    public static KdfParams pbkdf2(int iterations, byte[] salt) {
+        if (iterations < MIN_ITERATIONS || iterations > MAX_ITERATIONS) {
+            throw new IllegalArgumentException("PBKDF2 iterations out of range: " + iterations);
+        }
+        return new KdfParams(Algorithm.PBKDF2_SHA256, iterations, 0, 0, 0, salt.clone(), false);
+    }
+
+    public static KdfParams scrypt(int logN, int r, int p, byte[] salt) {
+        if (logN < MIN_LOG_N || logN > MAX_LOG_N || r < 1 || r > MAX_R || p < 1 || p > MAX_P
+                || 128L * r * (1L << logN) > MAX_SCRYPT_MEMORY) {
+            throw new IllegalArgumentException("scrypt parameters out of range: ln=" + logN + ",r=" + r + ",p=" + p);
+        }
+        return new KdfParams(Algorithm.SCRYPT, 0, logN, r, p, salt.clone(), false);
+    }
+
+    /** What capsules sealed before the cost was stored used. */
+    public static KdfParams legacy(byte[] salt) {
+        return new KdfParams(Algorithm.PBKDF2_SHA256, LEGACY_ITERATIONS, 0, 0, 0, salt.clone(), true);
+    }
+
+    public static KdfParams parse(String encoded) throws GeneralSecurityException {
+        if (encoded == null || encoded.isEmpty()) {
+            throw new GeneralSecurityException("Missing key derivation salt");
+        }
+        try {
+            if (!encoded.startsWith("$")) {
+                return legacy(Base64.getDecoder().decode(encoded));
+            }
+            String[] parts = encoded.split("\\$", -1);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("expected $algorithm$params$salt");
+            }
+            byte[] salt = Base64.getDecoder().decode(parts[3]);
+            switch (parts[1]) {
+                case "pbkdf2-sha256":
+                    return pbkdf2(intParam(parts[2], "i"), salt);
+                case "scrypt":
+                    return scrypt(intParam(parts[2], "ln"), intParam(parts[2], "r"), intParam(parts[2], "p"), salt);
+                default:
+                    throw new IllegalArgumentException("unknown algorithm " + parts[1]);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new GeneralSecurityException("Unsupported key derivation: " + e.getMessage(), e);
+        }
+    }
+
+    /** Same algorithm and cost with a fresh random salt, for sealing a new capsule. */
+    public KdfParams withSalt(byte[] salt) {
+        return new KdfParams(algorithm, iterations, logN, r, p, salt.clone(), false);
+    }
+
+    public String encode() {
+        String saltBase64 = Base64.getEncoder().encodeToString(salt);
+        return legacy ? saltBase64 : "$" + costId() + "$" + saltBase64;
+    }
+
+    /** Algorithm and cost without the salt; keys derived under different costs never share a cache entry. */
+    String costId() {
+        return algorithm == Algorithm.SCRYPT
+            ? "scrypt$ln=" + logN + ",r=" + r + ",p=" + p
+            : "pbkdf2-sha256$i=" + iterations;
+    }
+
+    public Algorithm getAlgorithm() { return algorithm; }
+    public int getIterations() { return iterations; }
+    public int getLogN() { return logN; }
+    public int getR() { return r; }
+    public int getP() { return p; }
+    public boolean isLegacy() { return legacy; }
+
+    byte[] getSalt() {
+        return salt.clone();
+    }
+
+    byte[] derive(String passphrase, int keyBits) throws GeneralSecurityException {
+        if (algorithm == Algorithm.SCRYPT) {
+            byte[] password = passphrase.getBytes(StandardCharsets.UTF_8);
+            try {
+                return Scrypt.derive(password, salt, 1 << logN, r, p, keyBits / 8);
+            } finally {
+                Arrays.fill(password, (byte) 0);
+            }
+        }
+        PBEKeySpec spec = new PBEKeySpec(passphrase.toCharArray(), salt, iterations, keyBits);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return costId();
+    }
+
+    private static int intParam(String params, String name) {
+        for (String pair : params.split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return Integer.parseInt(pair.substring(eq + 1));
+            }
+        }
+        throw new IllegalArgumentException("missing " + name);
+    }
+}
@@ -0,0 +1,159 @@
+package timecapsule.crypto;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bounded, expiring in-memory cache of derived key bytes. Entries are looked
+ * up by an HMAC of (passphrase, salt, cost) under a per-process secret, so the
+ * passphrase itself is never retained, and key bytes are zeroed when an entry
+ * is evicted, expires or the cache is cleared.
+ */
+class KeyCache {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final byte[] lookupSecret = new byte[32];
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    KeyCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        new SecureRandom().nextBytes(lookupSecret);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > KeyCache.this.maxEntries) {
+                    eldest.getValue().wipe();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached key, or runs {@code derive} once for concurrent callers
+     * asking for the same key; the others wait and then read it from the cache.
+     */
+    byte[] getOrDerive(String passphrase, byte[] salt, String cost, Callable<byte[]> derive) throws Exception {
+        String id = lookupId(passphrase, salt, cost);
+        while (true) {
+            byte[] cached = get(id);
+            if (cached != null) {
+                return cached;
+            }
+
+            CompletableFuture<Void> pending = new CompletableFuture<>();
+            CompletableFuture<Void> existing = inFlight.putIfAbsent(id, pending);
+            if (existing != null) {
+                try {
+                    existing.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                continue;
+            }
+
+            try {
+                byte[] keyBytes = derive.call();
+                put(id, keyBytes);
+                return keyBytes;
+            } catch (Exception e) {
+                pending.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(id, pending);
+                pending.complete(null);
+            }
+        }
+    }
+
+    private synchronized byte[] get(String id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired()) {
+            entries.remove(id);
+            entry.wipe();
+            return null;
+        }
+        return entry.keyBytes.clone();
+    }
+
+    private synchronized void put(String id, byte[] keyBytes) {
+        purgeExpired();
+        Entry previous = entries.put(id,
+            new Entry(keyBytes.clone(), System.nanoTime() + ttlNanos));
+        if (previous != null) {
+            previous.wipe();
+        }
+    }
+
+    synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            entry.wipe();
+        }
+        entries.clear();
+    }
+
+    private void purgeExpired() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.isExpired()) {
+                entry.wipe();
+                it.remove();
+            }
+        }
+    }
+
+    private String lookupId(String passphrase, byte[] salt, String cost) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(lookupSecret, "HmacSHA256"));
+            byte[] pass = passphrase.getBytes(StandardCharsets.UTF_8);
+            mac.update(ByteBuffer.allocate(4).putInt(pass.length).array());
+            mac.update(pass);
+            Arrays.fill(pass, (byte) 0);
+            mac.update(ByteBuffer.allocate(4).putInt(salt.length).array());
+            mac.update(salt);
+            mac.update(cost.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(mac.doFinal());
+        } catch (Exception e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private static class Entry {
+        final byte[] keyBytes;
+        final long expiresAtNanos;
+
+        Entry(byte[] keyBytes, long expiresAtNanos) {
+            this.keyBytes = keyBytes;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAtNanos >= 0;
+        }
+
+        void wipe() {
+            Arrays.fill(keyBytes, (byte) 0);
+        }
+    }
+}
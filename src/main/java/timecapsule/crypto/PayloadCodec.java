@@ -0,0 +1,17 @@
+package timecapsule.crypto;
+
+import java.io.IOException;
+
+/**
+ * Reversible transform applied to a capsule body before encryption. The codec
+ * id is written into the sealed payload, so it must never change once
+ * capsules have been sent with it.
+ */
+public interface PayloadCodec {
+
+    byte getId();
+
+    byte[] encode(byte[] data) throws IOException;
+
+    byte[] decode(byte[] data) throws IOException;
+}
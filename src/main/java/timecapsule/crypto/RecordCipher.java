@@ -0,0 +1,62 @@
+package timecapsule.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Seals small local records (nonce || AES-GCM ciphertext) under one key
+ * derived from a secret the user types, such as their login password. The
+ * record's id is bound as associated data so sealed values cannot be
+ * swapped between keys.
+ */
+public class RecordCipher {
+
+    private static final int SALT_LENGTH = 16;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    private final SecretKey key;
+
+    private RecordCipher(SecretKey key) {
+        this.key = key;
+    }
+
+    public static byte[] newSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        secureRandom.nextBytes(salt);
+        return salt;
+    }
+
+    public static RecordCipher derive(String secret, byte[] salt) throws Exception {
+        return new RecordCipher(CryptoUtils.deriveKey(secret, salt));
+    }
+
+    public byte[] seal(byte[] plaintext, String recordId) throws GeneralSecurityException {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        secureRandom.nextBytes(nonce);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce));
+        cipher.updateAAD(recordId.getBytes(StandardCharsets.UTF_8));
+
+        byte[] sealed = new byte[NONCE_LENGTH + cipher.getOutputSize(plaintext.length)];
+        System.arraycopy(nonce, 0, sealed, 0, NONCE_LENGTH);
+        cipher.doFinal(plaintext, 0, plaintext.length, sealed, NONCE_LENGTH);
+        return sealed;
+    }
+
+    public byte[] open(byte[] sealed, String recordId) throws GeneralSecurityException {
+        if (sealed.length < NONCE_LENGTH) {
+            throw new GeneralSecurityException("Sealed record too short");
+        }
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 0, NONCE_LENGTH));
+        cipher.updateAAD(recordId.getBytes(StandardCharsets.UTF_8));
+        return cipher.doFinal(sealed, NONCE_LENGTH, sealed.length - NONCE_LENGTH);
+    }
+}
@@ -0,0 +1,133 @@
+package timecapsule.crypto;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/**
+ * scrypt (RFC 7914), a memory-hard key derivation: each derivation needs
+ * {@code 128 * r * N} bytes of working memory, which makes guessing on GPUs
+ * and custom hardware far more expensive than with PBKDF2.
+ */
+final class Scrypt {
+
+    private Scrypt() {
+    }
+
+    static byte[] derive(byte[] password, byte[] salt, int n, int r, int p, int keyLength)
+            throws GeneralSecurityException {
+        if (n < 2 || (n & (n - 1)) != 0) {
+            throw new GeneralSecurityException("scrypt N must be a power of two");
+        }
+        Mac mac = Mac.getInstance("HmacSHA256");
+        // HMAC zero-pads short keys, so one zero byte is the same key as an empty one, which SecretKeySpec rejects.
+        mac.init(new SecretKeySpec(password.length > 0 ? password : new byte[1], "HmacSHA256"));
+
+        int blockBytes = 128 * r;
+        byte[] b = pbkdf2(mac, salt, p * blockBytes);
+        int[] x = new int[32 * r];
+        int[] v = new int[32 * r * n];
+        int[] y = new int[32 * r];
+        for (int i = 0; i < p; i++) {
+            smix(b, i * blockBytes, r, n, x, v, y);
+        }
+        byte[] key = pbkdf2(mac, b, keyLength);
+        Arrays.fill(b, (byte) 0);
+        Arrays.fill(v, 0);
+        Arrays.fill(x, 0);
+        Arrays.fill(y, 0);
+        return key;
+    }
+
+    /** PBKDF2-HMAC-SHA256 with a single iteration, as scrypt uses it. */
+    private static byte[] pbkdf2(Mac mac, byte[] salt, int length) {
+        byte[] out = new byte[length];
+        int blocks = (length + 31) / 32;
+        for (int i = 1; i <= blocks; i++) {
+            mac.update(salt);
+            mac.update(new byte[]{(byte) (i >>> 24), (byte) (i >>> 16), (byte) (i >>> 8), (byte) i});
+            byte[] u = mac.doFinal();
+            System.arraycopy(u, 0, out, (i - 1) * 32, Math.min(32, length - (i - 1) * 32));
+        }
+        return out;
+    }
+
+    private static void smix(byte[] b, int offset, int r, int n, int[] x, int[] v, int[] y) {
+        int words = 32 * r;
+        int[] t = new int[16];
+        for (int i = 0; i < words; i++) {
+            int at = offset + i * 4;
+            x[i] = (b[at] & 0xff) | (b[at + 1] & 0xff) << 8 | (b[at + 2] & 0xff) << 16 | (b[at + 3] & 0xff) << 24;
+        }
+
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(x, 0, v, i * words, words);
+            blockMix(x, y, t, r);
+            checkInterrupted(i);
+        }
+        for (int i = 0; i < n; i++) {
+            int j = x[(2 * r - 1) * 16] & (n - 1);
+            int base = j * words;
+            for (int k = 0; k < words; k++) {
+                x[k] ^= v[base + k];
+            }
+            blockMix(x, y, t, r);
+            checkInterrupted(i);
+        }
+
+        for (int i = 0; i < words; i++) {
+            int at = offset + i * 4;
+            b[at] = (byte) x[i];
+            b[at + 1] = (byte) (x[i] >>> 8);
+            b[at + 2] = (byte) (x[i] >>> 16);
+            b[at + 3] = (byte) (x[i] >>> 24);
+        }
+    }
+
+    /** BlockMix over {@code b} in place; {@code y} and {@code t} are scratch. */
+    private static void blockMix(int[] b, int[] y, int[] t, int r) {
+        System.arraycopy(b, (2 * r - 1) * 16, t, 0, 16);
+        for (int i = 0; i < 2 * r; i++) {
+            for (int k = 0; k < 16; k++) {
+                t[k] ^= b[i * 16 + k];
+            }
+            salsa20_8(t);
+            // Even blocks go to the first half of the output, odd blocks to the second.
+            System.arraycopy(t, 0, y, ((i & 1) * r + (i >> 1)) * 16, 16);
+        }
+        System.arraycopy(y, 0, b, 0, 32 * r);
+    }
+
+    private static void salsa20_8(int[] b) {
+        int x0 = b[0], x1 = b[1], x2 = b[2], x3 = b[3], x4 = b[4], x5 = b[5], x6 = b[6], x7 = b[7];
+        int x8 = b[8], x9 = b[9], x10 = b[10], x11 = b[11], x12 = b[12], x13 = b[13], x14 = b[14], x15 = b[15];
+        for (int i = 0; i < 8; i += 2) {
+            x4 ^= Integer.rotateLeft(x0 + x12, 7);   x8 ^= Integer.rotateLeft(x4 + x0, 9);
+            x12 ^= Integer.rotateLeft(x8 + x4, 13);  x0 ^= Integer.rotateLeft(x12 + x8, 18);
+            x9 ^= Integer.rotateLeft(x5 + x1, 7);    x13 ^= Integer.rotateLeft(x9 + x5, 9);
+            x1 ^= Integer.rotateLeft(x13 + x9, 13);  x5 ^= Integer.rotateLeft(x1 + x13, 18);
+            x14 ^= Integer.rotateLeft(x10 + x6, 7);  x2 ^= Integer.rotateLeft(x14 + x10, 9);
+            x6 ^= Integer.rotateLeft(x2 + x14, 13);  x10 ^= Integer.rotateLeft(x6 + x2, 18);
+            x3 ^= Integer.rotateLeft(x15 + x11, 7);  x7 ^= Integer.rotateLeft(x3 + x15, 9);
+            x11 ^= Integer.rotateLeft(x7 + x3, 13);  x15 ^= Integer.rotateLeft(x11 + x7, 18);
+            x1 ^= Integer.rotateLeft(x0 + x3, 7);    x2 ^= Integer.rotateLeft(x1 + x0, 9);
+            x3 ^= Integer.rotateLeft(x2 + x1, 13);   x0 ^= Integer.rotateLeft(x3 + x2, 18);
+            x6 ^= Integer.rotateLeft(x5 + x4, 7);    x7 ^= Integer.rotateLeft(x6 + x5, 9);
+            x4 ^= Integer.rotateLeft(x7 + x6, 13);   x5 ^= Integer.rotateLeft(x4 + x7, 18);
+            x11 ^= Integer.rotateLeft(x10 + x9, 7);  x8 ^= Integer.rotateLeft(x11 + x10, 9);
+            x9 ^= Integer.rotateLeft(x8 + x11, 13);  x10 ^= Integer.rotateLeft(x9 + x8, 18);
+            x12 ^= Integer.rotateLeft(x15 + x14, 7); x13 ^= Integer.rotateLeft(x12 + x15, 9);
+            x14 ^= Integer.rotateLeft(x13 + x12, 13); x15 ^= Integer.rotateLeft(x14 + x13, 18);
+        }
+        b[0] += x0; b[1] += x1; b[2] += x2; b[3] += x3; b[4] += x4; b[5] += x5; b[6] += x6; b[7] += x7;
+        b[8] += x8; b[9] += x9; b[10] += x10; b[11] += x11; b[12] += x12; b[13] += x13; b[14] += x14; b[15] += x15;
+    }
+
+    private static void checkInterrupted(int i) {
+        if ((i & 1023) == 0 && Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Key derivation cancelled");
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package timecapsule.crypto;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Chunked AES-GCM over streams. The payload is split into fixed-size chunks,
+ * each sealed on its own with a nonce derived from the capsule IV and the
+ * chunk index; the chunk index, a final-chunk flag and the stream header are
+ * bound into every chunk's associated data, so chunks cannot be reordered,
+ * dropped or truncated without failing authentication. Memory use is bounded
+ * by one chunk regardless of payload size.
+ *
+ * <pre>
+ * stream := version(1) chunkSize(4) chunk*
+ * chunk  := AES-GCM(plaintext[0..chunkSize]) || tag(16)              version 1
+ * chunk  := nonce(12) || AES-GCM(plaintext[0..chunkSize]) || tag(16)  version 2
+ * </pre>
+ *
+ * Version 2 is for content-addressed storage: each nonce is an HMAC of the
+ * chunk's position and plaintext under a separate key, so the same content
+ * always seals to the same bytes and no IV has to be kept to reproduce it.
+ * {@link #encryptingChunks} hands each sealed chunk over separately, the
+ * first one prefixed with the header.
+ */
+public final class StreamingCipher {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private static final byte VERSION_IV = 1;
+    private static final byte VERSION_SYNTHETIC = 2;
+    private static final int HEADER_SIZE = 5;
+    private static final int TAG_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /** Receives sealed chunks in order. */
+    public interface ChunkSink {
+        void accept(byte[] chunk) throws IOException;
+    }
+
+    private StreamingCipher() {
+    }
+
+    public static EncryptingStream encrypting(OutputStream out, SecretKey key, byte[] iv, byte[] associatedData)
+            throws IOException {
+        return encrypting(out, key, iv, associatedData, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static EncryptingStream encrypting(OutputStream out, SecretKey key, byte[] iv, byte[] associatedData,
+                                              int chunkSize) throws IOException {
+        checkChunkSize(chunkSize);
+        byte[] header = header(VERSION_IV, chunkSize);
+        out.write(header);
+        return new EncryptingStream(out::write, out, new ChunkSealer(key, iv, null, associatedData, header), chunkSize);
+    }
+
+    /** Seals in version 2; {@code sink} gets one array per chunk, so each can be stored under its own hash. */
+    public static EncryptingStream encryptingChunks(ChunkSink sink, SecretKey key, SecretKey nonceKey,
+                                                    byte[] associatedData, int chunkSize) throws IOException {
+        checkChunkSize(chunkSize);
+        byte[] header = header(VERSION_SYNTHETIC, chunkSize);
+        ChunkSink first = new ChunkSink() {
+            private boolean started;
+
+            @Override
+            public void accept(byte[] chunk) throws IOException {
+                if (started) {
+                    sink.accept(chunk);
+                    return;
+                }
+                started = true;
+                byte[] prefixed = Arrays.copyOf(header, HEADER_SIZE + chunk.length);
+                System.arraycopy(chunk, 0, prefixed, HEADER_SIZE, chunk.length);
+                sink.accept(prefixed);
+            }
+        };
+        return new EncryptingStream(first, null, new ChunkSealer(key, null, nonceKey, associatedData, header), chunkSize);
+    }
+
+    /** Opens either version; {@code iv} is only needed for version 1. */
+    public static InputStream decrypting(InputStream in, SecretKey key, byte[] iv, byte[] associatedData)
+            throws IOException {
+        byte[] header = in.readNBytes(HEADER_SIZE);
+        if (header.length < HEADER_SIZE) {
+            throw new EOFException("Truncated stream header");
+        }
+        if (header[0] != VERSION_IV && header[0] != VERSION_SYNTHETIC) {
+            throw new IOException("Unsupported stream version: " + header[0]);
+        }
+        int chunkSize = ByteBuffer.wrap(header, 1, 4).getInt();
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid chunk size: " + chunkSize);
+        }
+        ChunkSealer sealer = header[0] == VERSION_IV
+            ? new ChunkSealer(key, iv, null, associatedData, header)
+            : new ChunkSealer(key, null, null, associatedData, header);
+        return new DecryptingStream(new PushbackInputStream(in, 1), sealer, chunkSize);
+    }
+
+    private static void checkChunkSize(int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+    }
+
+    private static byte[] header(byte version, int chunkSize) {
+        return ByteBuffer.allocate(HEADER_SIZE).put(version).putInt(chunkSize).array();
+    }
+
+    private static class ChunkSealer {
+        private final Cipher cipher;
+        private final SecretKey key;
+        private final byte[] iv;
+        private final Mac nonceMac;
+        private final boolean synthetic;
+        private final byte[] associatedData;
+        private final byte[] header;
+        private long index;
+
+        /** With a null {@code iv} nonces are synthetic: made from {@code nonceKey} when sealing, read back when opening. */
+        ChunkSealer(SecretKey key, byte[] iv, SecretKey nonceKey, byte[] associatedData, byte[] header) throws IOException {
+            this.synthetic = iv == null;
+            if (!synthetic && iv.length != IV_LENGTH) {
+                throw new IllegalArgumentException("IV must be " + IV_LENGTH + " bytes");
+            }
+            try {
+                this.cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                if (nonceKey != null) {
+                    this.nonceMac = Mac.getInstance("HmacSHA256");
+                    this.nonceMac.init(nonceKey);
+                } else {
+                    this.nonceMac = null;
+                }
+            } catch (GeneralSecurityException e) {
+                throw new IOException("AES/GCM unavailable", e);
+            }
+            this.key = key;
+            this.iv = synthetic ? null : iv.clone();
+            this.associatedData = associatedData;
+            this.header = header;
+        }
+
+        /** Bytes a sealed chunk adds to its plaintext. */
+        int overhead() {
+            return TAG_LENGTH + (synthetic ? IV_LENGTH : 0);
+        }
+
+        byte[] seal(byte[] buffer, int length, boolean last) throws IOException {
+            try {
+                if (!synthetic) {
+                    init(Cipher.ENCRYPT_MODE, ivNonce(index), last);
+                    return cipher.doFinal(buffer, 0, length);
+                }
+                byte[] position = position(index, last);
+                nonceMac.update(header);
+                nonceMac.update(position);
+                nonceMac.update(buffer, 0, length);
+                byte[] nonce = Arrays.copyOf(nonceMac.doFinal(), IV_LENGTH);
+                init(Cipher.ENCRYPT_MODE, nonce, last);
+                byte[] sealed = new byte[IV_LENGTH + cipher.getOutputSize(length)];
+                System.arraycopy(nonce, 0, sealed, 0, IV_LENGTH);
+                cipher.doFinal(buffer, 0, length, sealed, IV_LENGTH);
+                return sealed;
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Chunk encryption failed", e);
+            }
+        }
+
+        byte[] open(byte[] buffer, int length, boolean last) throws IOException {
+            try {
+                if (!synthetic) {
+                    init(Cipher.DECRYPT_MODE, ivNonce(index), last);
+                    return cipher.doFinal(buffer, 0, length);
+                }
+                init(Cipher.DECRYPT_MODE, Arrays.copyOf(buffer, IV_LENGTH), last);
+                return cipher.doFinal(buffer, IV_LENGTH, length - IV_LENGTH);
+            } catch (AEADBadTagException e) {
+                throw new IOException("Chunk " + (index - 1) + " failed authentication", e);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Chunk decryption failed", e);
+            }
+        }
+
+        private byte[] ivNonce(long chunk) {
+            byte[] nonce = iv.clone();
+            for (int i = 0; i < 8; i++) {
+                nonce[IV_LENGTH - 1 - i] ^= (byte) (chunk >>> (8 * i));
+            }
+            return nonce;
+        }
+
+        private void init(int mode, byte[] nonce, boolean last) throws GeneralSecurityException {
+            long chunk = index++;
+            cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(header);
+            cipher.updateAAD(position(chunk, last));
+            if (associatedData != null && associatedData.length > 0) {
+                cipher.updateAAD(associatedData);
+            }
+        }
+
+        private static byte[] position(long chunk, boolean last) {
+            return ByteBuffer.allocate(9).putLong(chunk).put((byte) (last ? 1 : 0)).array();
+        }
+    }
+
+    /**
+     * Seals on {@link #close()}, which writes the final chunk. If the plaintext
+     * could not be read to the end, call {@link #abort()} instead, so a partial
+     * stream never authenticates as a complete one.
+     */
+    public static class EncryptingStream extends OutputStream {
+        private final ChunkSink sink;
+        private final OutputStream out;
+        private final ChunkSealer sealer;
+        private final byte[] buffer;
+        private int filled;
+        private boolean closed;
+        private boolean failed;
+
+        /** {@code out}, when not null, is flushed and closed along with this stream. */
+        EncryptingStream(ChunkSink sink, OutputStream out, ChunkSealer sealer, int chunkSize) {
+            this.sink = sink;
+            this.out = out;
+            this.sealer = sealer;
+            this.buffer = new byte[chunkSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            while (len > 0) {
+                // A full buffer is only sealed once more data arrives, so the last chunk can be flagged on close.
+                if (filled == buffer.length) {
+                    try {
+                        sink.accept(sealer.seal(buffer, filled, false));
+                    } catch (IOException | RuntimeException e) {
+                        failed = true;
+                        throw e;
+                    }
+                    filled = 0;
+                }
+                int n = Math.min(len, buffer.length - filled);
+                System.arraycopy(b, off, buffer, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (failed) {
+                abort();
+                return;
+            }
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                sink.accept(sealer.seal(buffer, filled, true));
+                flush();
+            } finally {
+                Arrays.fill(buffer, (byte) 0);
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+
+        /** Discards buffered plaintext and closes the sink without writing a final chunk. */
+        public void abort() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Arrays.fill(buffer, (byte) 0);
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    private static class DecryptingStream extends FilterInputStream {
+        private final PushbackInputStream source;
+        private final ChunkSealer sealer;
+        private final byte[] sealed;
+        private byte[] plain = new byte[0];
+        private int position;
+        private boolean finished;
+
+        DecryptingStream(PushbackInputStream in, ChunkSealer sealer, int chunkSize) {
+            super(in);
+            this.source = in;
+            this.sealer = sealer;
+            this.sealed = new byte[chunkSize + sealer.overhead()];
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == plain.length) {
+                if (finished) {
+                    return -1;
+                }
+                nextChunk();
+            }
+            int n = Math.min(len, plain.length - position);
+            System.arraycopy(plain, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return plain.length - position;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            long skipped = 0;
+            byte[] scratch = new byte[(int) Math.min(n, 8192)];
+            while (skipped < n) {
+                int r = read(scratch, 0, (int) Math.min(scratch.length, n - skipped));
+                if (r < 0) {
+                    break;
+                }
+                skipped += r;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void nextChunk() throws IOException {
+            int length = source.readNBytes(sealed, 0, sealed.length);
+            if (length < sealer.overhead()) {
+                throw new EOFException("Truncated chunk");
+            }
+            int next = source.read();
+            boolean last = next < 0;
+            if (!last) {
+                source.unread(next);
+            }
+            plain = sealer.open(sealed, length, last);
+            position = 0;
+            finished = last;
+        }
+    }
+}
@@ -22,10 +22,27 @@ public class ApiResponse {
     private List<User> users;
     
     private long serverTimeEpoch;
+    private long serverReceivedEpoch;
+    private long serverSentEpoch;
     private long unlockTimeEpoch;
+    
+    private List<ApiResponse> responses;
+    
+    private List<String> deletedIds;
+    private boolean delta;
+    
+    private List<String> missing;
+    private String dataBase64;
 
     public ApiResponse() {}
 
+    public static ApiResponse error(String error) {
+        ApiResponse response = new ApiResponse();
+        response.setStatus("error");
+        response.setError(error);
+        return response;
+    }
+
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
 
@@ -67,10 +84,31 @@ public class ApiResponse {
 
     public long getServerTimeEpoch() { return serverTimeEpoch; }
     public void setServerTimeEpoch(long serverTimeEpoch) { this.serverTimeEpoch = serverTimeEpoch; }
+    
+    public long getServerReceivedEpoch() { return serverReceivedEpoch; }
+    public void setServerReceivedEpoch(long serverReceivedEpoch) { this.serverReceivedEpoch = serverReceivedEpoch; }
+    
+    public long getServerSentEpoch() { return serverSentEpoch; }
+    public void setServerSentEpoch(long serverSentEpoch) { this.serverSentEpoch = serverSentEpoch; }
 
     public long getUnlockTimeEpoch() { return unlockTimeEpoch; }
     public void setUnlockTimeEpoch(long unlockTimeEpoch) { this.unlockTimeEpoch = unlockTimeEpoch; }
 
+    public List<ApiResponse> getResponses() { return responses; }
+    public void setResponses(List<ApiResponse> responses) { this.responses = responses; }
+
+    public List<String> getDeletedIds() { return deletedIds; }
+    public void setDeletedIds(List<String> deletedIds) { this.deletedIds = deletedIds; }
+
+    public boolean isDelta() { return delta; }
+    public void setDelta(boolean delta) { this.delta = delta; }
+
+    public List<String> getMissing() { return missing; }
+    public void setMissing(List<String> missing) { this.missing = missing; }
+
+    public String getDataBase64() { return dataBase64; }
+    public void setDataBase64(String dataBase64) { this.dataBase64 = dataBase64; }
+
     public boolean isOk() {
         return "ok".equalsIgnoreCase(status);
     }
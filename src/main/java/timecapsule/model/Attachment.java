@@ -0,0 +1,39 @@
+package timecapsule.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Attachment {
+    private String fileName;
+    private String mimeType;
+    private long size;
+    private int chunkSize;
+    private List<String> chunkIds;
+
+    public Attachment() {
+        this.chunkIds = new ArrayList<>();
+    }
+
+    public Attachment(String fileName, String mimeType, long size, int chunkSize, List<String> chunkIds) {
+        this.fileName = fileName;
+        this.mimeType = mimeType;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.chunkIds = chunkIds;
+    }
+
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public String getMimeType() { return mimeType; }
+    public void setMimeType(String mimeType) { this.mimeType = mimeType; }
+
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+
+    public int getChunkSize() { return chunkSize; }
+    public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+
+    public List<String> getChunkIds() { return chunkIds; }
+    public void setChunkIds(List<String> chunkIds) { this.chunkIds = chunkIds; }
+}
@@ -50,6 +50,10 @@ public class Friend {
         }
     }
 
+    public String getRelationshipKey() {
+        return requesterUserId + "|" + addresseeUserId;
+    }
+
     public boolean isRequester(String currentUserId) {
         return requesterUserId.equals(currentUserId);
     }
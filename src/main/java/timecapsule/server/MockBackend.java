@@ -0,0 +1,1194 @@
+package timecapsule.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import timecapsule.api.RetryPolicy;
+import timecapsule.store.LocalStore;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process stand-in for the Apps Script backend (TimeCapsuleServiceV2.gs).
+ * It accepts the same JSON actions and answers with the same fields and error
+ * strings, including the server-side time lock on "open", so the client can
+ * be load-tested and benchmarked without touching Google's quotas.
+ *
+ * Each sheet becomes a collection in a {@link LocalStore} (or memory only if
+ * the store is null), with the rows also held in insertion-ordered maps.
+ * Read-only actions run concurrently under a shared lock; anything that
+ * writes takes the exclusive lock, much like the script lock on the real
+ * backend. Email is not sent; messages go to {@link #getOutbox()}.
+ */
+public class MockBackend {
+
+    static class UserRow {
+        String userId;
+        String email;
+        String displayName;
+        String passwordHash;
+        long createdAtUtc;
+    }
+
+    static class FriendRow {
+        String requesterUserId;
+        String addresseeUserId;
+        String status;
+        long createdAtUtc;
+        long updatedAtUtc;
+
+        String key() {
+            return requesterUserId + "|" + addresseeUserId;
+        }
+    }
+
+    static class InviteRow {
+        String inviteId;
+        String inviterUserId;
+        String inviteeEmail;
+        String tokenHash;
+        String status;
+        long createdAtUtc;
+        long expiresAtUtc;
+        long acceptedAtUtc;
+    }
+
+    static class CapsuleRow {
+        String id;
+        String owner;
+        String ownerUserId;
+        long unlockTimeEpoch;
+        String state;
+        String ciphertextBase64;
+        String ivBase64;
+        String saltBase64;
+        String headline;
+        long createdAtEpoch;
+        long updatedAtEpoch;
+        String attachmentManifest;
+    }
+
+    static class RecipientRow {
+        String key;
+        String capsuleId;
+        String recipientEmail;
+        String recipientUserId;
+        boolean notifyOnCreate;
+        boolean notifyOnUnlock;
+        String deliveryStatus;
+        long openedAtUtc;
+        long createdAtUtc;
+    }
+
+    static class ChunkRow {
+        String id;
+        String dataBase64;
+    }
+
+    static class AuditRow {
+        long timestampEpoch;
+        String action;
+        String entityId;
+        String oldState;
+        String newState;
+        String requestId;
+    }
+
+    private static final String USERS = "users";
+    private static final String FRIENDS = "friends";
+    private static final String INVITES = "invites";
+    private static final String CAPSULES = "capsules";
+    private static final String RECIPIENTS = "recipients";
+    private static final String CHUNKS = "chunks";
+    private static final String AUDIT = "audit";
+
+    private static final long INVITE_EXPIRY_MILLIS = 7L * 24 * 60 * 60 * 1000;
+    private static final int MAX_CHUNK_BYTES = 512 * 1024 + 64;
+    private static final int MAX_SEARCH_RESULTS = 20;
+    private static final String TOKEN_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    private final LocalStore store;
+    private final LongSupplier clock;
+    private final Gson gson = new Gson();
+    private final SecureRandom random = new SecureRandom();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong auditSequence = new AtomicLong();
+
+    private final Map<String, UserRow> users = new LinkedHashMap<>();
+    private final Map<String, UserRow> usersByEmail = new HashMap<>();
+    private final Map<String, FriendRow> friends = new LinkedHashMap<>();
+    private final Map<String, InviteRow> invites = new LinkedHashMap<>();
+    private final Map<String, CapsuleRow> capsules = new LinkedHashMap<>();
+    private final Map<String, RecipientRow> recipients = new LinkedHashMap<>();
+    private final Map<String, String> chunks = new HashMap<>();
+    private final List<String> outbox = Collections.synchronizedList(new ArrayList<>());
+
+    /** {@code store} may be null for a backend that forgets everything on exit. */
+    public MockBackend(LocalStore store) {
+        this(store, System::currentTimeMillis);
+    }
+
+    /** {@code clock} stands in for the server's Date.now(), so tests can move past unlock times. */
+    public MockBackend(LocalStore store, LongSupplier clock) {
+        this.store = store;
+        this.clock = clock;
+        if (store != null) {
+            load();
+        }
+    }
+
+    /** Handles one POST body the way doPost does and returns the JSON reply. */
+    public String handle(String body, long receivedAt) {
+        JsonObject response;
+        try {
+            if (body == null || body.isBlank()) {
+                response = error("No request body");
+            } else {
+                response = dispatch(JsonParser.parseString(body).getAsJsonObject());
+            }
+        } catch (RuntimeException e) {
+            response = error(String.valueOf(e));
+        }
+        return gson.toJson(stamp(response, receivedAt));
+    }
+
+    /** Messages the real backend would have emailed, oldest first. */
+    public List<String> getOutbox() {
+        synchronized (outbox) {
+            return new ArrayList<>(outbox);
+        }
+    }
+
+    public void flush() {
+        if (store != null) {
+            store.flush();
+        }
+    }
+
+    JsonObject dispatch(JsonObject request) {
+        Lock held = RetryPolicy.idempotencyOf(actionsOf(request)) == RetryPolicy.Idempotency.SAFE
+            ? lock.readLock() : lock.writeLock();
+        held.lock();
+        try {
+            return route(request);
+        } finally {
+            held.unlock();
+        }
+    }
+
+    /** Just the action names, so large chunk payloads are not copied to pick a lock. */
+    private static Map<String, Object> actionsOf(JsonObject request) {
+        Map<String, Object> shape = new HashMap<>();
+        shape.put("action", str(request, "action"));
+        if (request.has("requests") && request.get("requests").isJsonArray()) {
+            List<Object> subs = new ArrayList<>();
+            for (JsonElement element : request.getAsJsonArray("requests")) {
+                subs.add(element.isJsonObject() ? actionsOf(element.getAsJsonObject()) : null);
+            }
+            shape.put("requests", subs);
+        }
+        return shape;
+    }
+
+    private JsonObject route(JsonObject request) {
+        String action = str(request, "action");
+        if (action == null) {
+            return error("Unknown action: undefined");
+        }
+        switch (action) {
+            case "batch": return handleBatch(request);
+            case "registerOrLogin": return handleRegisterOrLogin(request);
+            case "searchUsers": return handleSearchUsers(request);
+            case "getUserByEmail": return handleGetUserByEmail(request);
+            case "friendRequest": return handleFriendRequest(request);
+            case "friendAccept": return handleFriendAccept(request);
+            case "friendDecline": return handleFriendDecline(request);
+            case "friendBlock": return handleFriendBlock(request);
+            case "friendsList": return handleFriendsList(request);
+            case "friendRequests": return handleFriendRequests(request);
+            case "inviteSend": return handleInviteSend(request);
+            case "inviteAccept": return handleInviteAccept(request);
+            case "inviteResend": return handleInviteResend(request);
+            case "invitesList": return handleInvitesList(request);
+            case "create": return handleCreate(request);
+            case "list":
+            case "listSent": return handleList(request);
+            case "listReceived": return handleListReceived(request);
+            case "open": return handleOpen(request);
+            case "openReady": return handleOpenReady(request);
+            case "markRecipientOpened": return handleMarkRecipientOpened(request);
+            case "chunkHas": return handleChunkHas(request);
+            case "chunkPut": return handleChunkPut(request);
+            case "chunkGet": return handleChunkGet(request);
+            default: return error("Unknown action: " + action);
+        }
+    }
+
+    private JsonObject handleBatch(JsonObject request) {
+        JsonArray requests = request.has("requests") && request.get("requests").isJsonArray()
+            ? request.getAsJsonArray("requests") : null;
+        if (requests == null || requests.size() == 0) {
+            return error("Missing requests");
+        }
+        JsonArray responses = new JsonArray();
+        for (JsonElement element : requests) {
+            JsonObject sub = element.isJsonObject() ? element.getAsJsonObject() : null;
+            if (sub == null || "batch".equals(str(sub, "action"))) {
+                responses.add(error("Invalid batched request"));
+                continue;
+            }
+            try {
+                responses.add(stamp(route(sub), 0));
+            } catch (RuntimeException e) {
+                responses.add(error(String.valueOf(e)));
+            }
+        }
+        JsonObject response = ok();
+        response.add("responses", responses);
+        return response;
+    }
+
+    // ---- Users ----
+
+    private JsonObject handleRegisterOrLogin(JsonObject request) {
+        String email = str(request, "email");
+        if (email == null) {
+            return error("Missing email");
+        }
+        String displayName = str(request, "displayName");
+        String passwordHash = str(request, "passwordHash");
+
+        UserRow user = usersByEmail.get(email);
+        if (user != null) {
+            if (passwordHash != null && !passwordHash.equals(user.passwordHash)) {
+                return error("Invalid password");
+            }
+            if (displayName != null && !displayName.equals(user.displayName)) {
+                user.displayName = displayName;
+                save(USERS, user.userId, user);
+            }
+            JsonObject response = ok();
+            response.add("user", userJson(user, true));
+            return response;
+        }
+
+        long now = clock.getAsLong();
+        user = new UserRow();
+        user.userId = "U" + now + "_" + randomSuffix();
+        user.email = email;
+        user.displayName = displayName != null ? displayName : "";
+        user.passwordHash = passwordHash != null ? passwordHash : "";
+        user.createdAtUtc = now;
+        putUser(user);
+        audit("USER_CREATE", user.userId, "", "created", "");
+
+        JsonObject response = ok();
+        response.add("user", userJson(user, true));
+        return response;
+    }
+
+    private JsonObject handleSearchUsers(JsonObject request) {
+        String query = str(request, "query");
+        if (query == null) {
+            return error("Missing search query");
+        }
+        String needle = query.toLowerCase(Locale.ROOT);
+        String self = str(request, "userId");
+        JsonArray results = new JsonArray();
+        for (UserRow user : users.values()) {
+            if (user.userId.equals(self)) {
+                continue;
+            }
+            if (lower(user.email).contains(needle) || lower(user.displayName).contains(needle)) {
+                results.add(userJson(user, false));
+                if (results.size() >= MAX_SEARCH_RESULTS) {
+                    break;
+                }
+            }
+        }
+        JsonObject response = ok();
+        response.add("users", results);
+        return response;
+    }
+
+    private JsonObject handleGetUserByEmail(JsonObject request) {
+        String email = str(request, "email");
+        if (email == null) {
+            return error("Missing email");
+        }
+        UserRow user = usersByEmail.get(email);
+        JsonObject response = ok();
+        response.add("user", user != null ? userJson(user, false) : null);
+        return response;
+    }
+
+    // ---- Friends ----
+
+    private JsonObject handleFriendRequest(JsonObject request) {
+        String requester = str(request, "requesterUserId");
+        String addressee = str(request, "addresseeUserId");
+        if (requester == null || addressee == null) {
+            return error("Missing user IDs");
+        }
+        if (requester.equals(addressee)) {
+            return error("Cannot friend yourself");
+        }
+
+        for (FriendRow row : friends.values()) {
+            if (connects(row, requester, addressee)) {
+                switch (row.status) {
+                    case "ACCEPTED": return error("Already friends");
+                    case "PENDING": return error("Request already pending");
+                    case "BLOCKED": return error("Cannot send request");
+                    default: break;
+                }
+            }
+        }
+
+        long now = clock.getAsLong();
+        FriendRow row = new FriendRow();
+        row.requesterUserId = requester;
+        row.addresseeUserId = addressee;
+        row.status = "PENDING";
+        row.createdAtUtc = now;
+        row.updatedAtUtc = now;
+        putFriend(row);
+        audit("FRIEND_REQUEST", requester + "->" + addressee, "", "PENDING", "");
+
+        UserRow target = users.get(addressee);
+        if (target != null) {
+            mail(target.email, displayNameOf(requester) + " sent you a friend request on TimeCapsule");
+        }
+        return message("Friend request sent");
+    }
+
+    private JsonObject handleFriendAccept(JsonObject request) {
+        String requester = str(request, "requesterUserId");
+        String addressee = str(request, "addresseeUserId");
+        if (requester == null || addressee == null) {
+            return error("Missing user IDs");
+        }
+        FriendRow row = friends.get(requester + "|" + addressee);
+        if (row == null || !"PENDING".equals(row.status)) {
+            return error("Friend request not found");
+        }
+        row.status = "ACCEPTED";
+        row.updatedAtUtc = clock.getAsLong();
+        putFriend(row);
+        audit("FRIEND_ACCEPT", requester + "->" + addressee, "PENDING", "ACCEPTED", "");
+        return message("Friend request accepted");
+    }
+
+    private JsonObject handleFriendDecline(JsonObject request) {
+        String requester = str(request, "requesterUserId");
+        String addressee = str(request, "addresseeUserId");
+        if (requester == null || addressee == null) {
+            return error("Missing user IDs");
+        }
+        FriendRow row = friends.get(requester + "|" + addressee);
+        if (row == null || !"PENDING".equals(row.status)) {
+            return error("Friend request not found");
+        }
+        friends.remove(row.key());
+        if (store != null) {
+            store.remove(FRIENDS, row.key());
+        }
+        audit("FRIEND_DECLINE", requester + "->" + addressee, "PENDING", "DELETED", "");
+        return message("Friend request declined");
+    }
+
+    private JsonObject handleFriendBlock(JsonObject request) {
+        String userId = str(request, "userId");
+        String blockUserId = str(request, "blockUserId");
+        if (userId == null || blockUserId == null) {
+            return error("Missing user IDs");
+        }
+        long now = clock.getAsLong();
+        for (FriendRow row : friends.values()) {
+            if (connects(row, userId, blockUserId)) {
+                row.status = "BLOCKED";
+                row.updatedAtUtc = now;
+                putFriend(row);
+                return message("User blocked");
+            }
+        }
+        FriendRow row = new FriendRow();
+        row.requesterUserId = userId;
+        row.addresseeUserId = blockUserId;
+        row.status = "BLOCKED";
+        row.createdAtUtc = now;
+        row.updatedAtUtc = now;
+        putFriend(row);
+        return message("User blocked");
+    }
+
+    private JsonObject handleFriendsList(JsonObject request) {
+        String userId = str(request, "userId");
+        if (userId == null) {
+            return error("Missing userId");
+        }
+        long now = clock.getAsLong();
+        long since = num(request, "since");
+        JsonArray list = new JsonArray();
+        JsonArray deletedIds = new JsonArray();
+
+        for (FriendRow row : friends.values()) {
+            if (since != 0 && row.updatedAtUtc <= since) {
+                continue;
+            }
+            String friendUserId = otherSide(row, userId);
+            if (friendUserId == null) {
+                continue;
+            }
+            if (!"ACCEPTED".equals(row.status)) {
+                if (since != 0) {
+                    deletedIds.add(row.key());
+                }
+                continue;
+            }
+            list.add(friendJson(row, friendUserId));
+        }
+
+        JsonObject response = ok();
+        response.add("friends", list);
+        response.add("deletedIds", deletedIds);
+        response.addProperty("delta", since != 0);
+        response.addProperty("serverTimeEpoch", now);
+        return response;
+    }
+
+    private JsonObject handleFriendRequests(JsonObject request) {
+        String userId = str(request, "userId");
+        if (userId == null) {
+            return error("Missing userId");
+        }
+        JsonArray list = new JsonArray();
+        for (FriendRow row : friends.values()) {
+            String friendUserId = otherSide(row, userId);
+            if ("PENDING".equals(row.status) && friendUserId != null) {
+                list.add(friendJson(row, friendUserId));
+            }
+        }
+        JsonObject response = ok();
+        response.add("requests", list);
+        return response;
+    }
+
+    // ---- Invites ----
+
+    private JsonObject handleInviteSend(JsonObject request) {
+        String inviter = str(request, "inviterUserId");
+        String inviteeEmail = str(request, "inviteeEmail");
+        if (inviter == null || inviteeEmail == null) {
+            return error("Missing required fields");
+        }
+
+        UserRow existing = usersByEmail.get(inviteeEmail);
+        if (existing != null) {
+            JsonObject friendRequest = new JsonObject();
+            friendRequest.addProperty("requesterUserId", inviter);
+            friendRequest.addProperty("addresseeUserId", existing.userId);
+            return handleFriendRequest(friendRequest);
+        }
+
+        long now = clock.getAsLong();
+        for (InviteRow row : invites.values()) {
+            if (row.inviterUserId.equals(inviter) && row.inviteeEmail.equals(inviteeEmail)
+                    && "SENT".equals(row.status) && row.expiresAtUtc > now) {
+                return error("Invite already pending");
+            }
+        }
+
+        String token = generateToken();
+        InviteRow row = new InviteRow();
+        row.inviteId = "INV" + now + "_" + randomSuffix();
+        row.inviterUserId = inviter;
+        row.inviteeEmail = inviteeEmail;
+        row.tokenHash = sha256Hex(token.getBytes(StandardCharsets.UTF_8));
+        row.status = "SENT";
+        row.createdAtUtc = now;
+        row.expiresAtUtc = now + INVITE_EXPIRY_MILLIS;
+        putInvite(row);
+
+        mail(inviteeEmail, displayNameOf(inviter) + " invited you to TimeCapsule; token " + token);
+        audit("INVITE_SEND", row.inviteId, "", "SENT", "");
+
+        JsonObject response = ok();
+        response.addProperty("inviteId", row.inviteId);
+        response.addProperty("message", "Invite sent to " + inviteeEmail);
+        return response;
+    }
+
+    private JsonObject handleInviteAccept(JsonObject request) {
+        String token = str(request, "token");
+        if (token == null) {
+            return error("Missing token");
+        }
+        String tokenHash = sha256Hex(token.getBytes(StandardCharsets.UTF_8));
+        long now = clock.getAsLong();
+
+        for (InviteRow row : invites.values()) {
+            if (!tokenHash.equals(row.tokenHash) || !"SENT".equals(row.status)) {
+                continue;
+            }
+            if (now > row.expiresAtUtc) {
+                row.status = "EXPIRED";
+                putInvite(row);
+                return error("Invite has expired");
+            }
+
+            JsonObject register = new JsonObject();
+            String email = str(request, "email");
+            register.addProperty("email", email != null ? email : row.inviteeEmail);
+            register.addProperty("displayName", orEmpty(str(request, "displayName")));
+            register.addProperty("passwordHash", orEmpty(str(request, "passwordHash")));
+            JsonObject registered = handleRegisterOrLogin(register);
+            if (!"ok".equals(str(registered, "status"))) {
+                return error("Failed to create user");
+            }
+            String newUserId = registered.getAsJsonObject("user").get("userId").getAsString();
+
+            row.status = "ACCEPTED";
+            row.acceptedAtUtc = now;
+            putInvite(row);
+
+            FriendRow friendship = new FriendRow();
+            friendship.requesterUserId = row.inviterUserId;
+            friendship.addresseeUserId = newUserId;
+            friendship.status = "ACCEPTED";
+            friendship.createdAtUtc = now;
+            friendship.updatedAtUtc = now;
+            putFriend(friendship);
+
+            for (RecipientRow recipient : recipients.values()) {
+                if (row.inviteeEmail.equals(recipient.recipientEmail) && isBlank(recipient.recipientUserId)) {
+                    recipient.recipientUserId = newUserId;
+                    save(RECIPIENTS, recipient.key, recipient);
+                }
+            }
+            audit("INVITE_ACCEPT", row.inviteId, "SENT", "ACCEPTED", "");
+
+            JsonObject response = message("Welcome to TimeCapsule!");
+            response.add("user", registered.get("user"));
+            return response;
+        }
+        return error("Invalid or expired invite token");
+    }
+
+    private JsonObject handleInviteResend(JsonObject request) {
+        String inviteId = str(request, "inviteId");
+        String inviter = str(request, "inviterUserId");
+        if (inviteId == null || inviter == null) {
+            return error("Missing required fields");
+        }
+        InviteRow row = invites.get(inviteId);
+        if (row == null || !row.inviterUserId.equals(inviter) || !"SENT".equals(row.status)) {
+            return error("Invite not found");
+        }
+        String token = generateToken();
+        row.tokenHash = sha256Hex(token.getBytes(StandardCharsets.UTF_8));
+        row.expiresAtUtc = clock.getAsLong() + INVITE_EXPIRY_MILLIS;
+        putInvite(row);
+        mail(row.inviteeEmail, "Reminder: " + displayNameOf(inviter) + " invited you to TimeCapsule; token " + token);
+        return message("Invite resent");
+    }
+
+    private JsonObject handleInvitesList(JsonObject request) {
+        String userId = str(request, "userId");
+        if (userId == null) {
+            return error("Missing userId");
+        }
+        JsonArray list = new JsonArray();
+        for (InviteRow row : invites.values()) {
+            if (row.inviterUserId.equals(userId)) {
+                JsonObject invite = new JsonObject();
+                invite.addProperty("inviteId", row.inviteId);
+                invite.addProperty("inviterUserId", row.inviterUserId);
+                invite.addProperty("inviteeEmail", row.inviteeEmail);
+                invite.addProperty("status", row.status);
+                invite.addProperty("createdAtUtc", row.createdAtUtc);
+                invite.addProperty("expiresAtUtc", row.expiresAtUtc);
+                invite.addProperty("acceptedAtUtc", row.acceptedAtUtc != 0 ? row.acceptedAtUtc : null);
+                list.add(invite);
+            }
+        }
+        JsonObject response = ok();
+        response.add("invites", list);
+        return response;
+    }
+
+    // ---- Capsules ----
+
+    private JsonObject handleCreate(JsonObject request) {
+        if (str(request, "owner") == null) {
+            return error("Missing owner");
+        }
+        if (num(request, "unlockTimeEpoch") == 0) {
+            return error("Missing unlockTimeEpoch");
+        }
+        if (str(request, "ciphertextBase64") == null) {
+            return error("Missing ciphertextBase64");
+        }
+        if (str(request, "ivBase64") == null || str(request, "saltBase64") == null) {
+            return error("Missing iv or salt");
+        }
+
+        long now = clock.getAsLong();
+        long unlockTime = num(request, "unlockTimeEpoch");
+        if (unlockTime <= now) {
+            return error("Unlock time must be in the future");
+        }
+
+        CapsuleRow capsule = new CapsuleRow();
+        capsule.id = "C" + now + "_" + randomSuffix();
+        capsule.owner = str(request, "owner");
+        capsule.ownerUserId = orEmpty(str(request, "ownerUserId"));
+        capsule.unlockTimeEpoch = unlockTime;
+        capsule.state = "sealed";
+        capsule.ciphertextBase64 = str(request, "ciphertextBase64");
+        capsule.ivBase64 = str(request, "ivBase64");
+        capsule.saltBase64 = str(request, "saltBase64");
+        capsule.headline = orEmpty(str(request, "headline"));
+        capsule.createdAtEpoch = now;
+        capsule.updatedAtEpoch = now;
+        capsule.attachmentManifest = orEmpty(str(request, "attachmentManifest"));
+        putCapsule(capsule);
+
+        if (request.has("recipients") && request.get("recipients").isJsonArray()) {
+            int index = 0;
+            for (JsonElement element : request.getAsJsonArray("recipients")) {
+                JsonObject r = element.getAsJsonObject();
+                RecipientRow recipient = new RecipientRow();
+                recipient.key = capsule.id + "|" + index++;
+                recipient.capsuleId = capsule.id;
+                recipient.recipientEmail = orEmpty(str(r, "recipientEmail"));
+                UserRow existing = usersByEmail.get(recipient.recipientEmail);
+                recipient.recipientUserId = existing != null ? existing.userId : orEmpty(str(r, "recipientUserId"));
+                recipient.notifyOnCreate = bool(r, "notifyOnCreate", false);
+                recipient.notifyOnUnlock = bool(r, "notifyOnUnlock", true);
+                recipient.deliveryStatus = "NONE";
+                recipient.createdAtUtc = now;
+                if (recipient.notifyOnCreate && !recipient.recipientEmail.isEmpty()) {
+                    String sender = capsule.ownerUserId.isEmpty() ? capsule.owner : displayNameOf(capsule.ownerUserId);
+                    mail(recipient.recipientEmail, sender + " sent you a TimeCapsule!");
+                    recipient.deliveryStatus = "CREATED_EMAIL_SENT";
+                }
+                putRecipient(recipient);
+            }
+        }
+        audit("CREATE", capsule.id, "", "sealed", "");
+
+        JsonObject response = ok();
+        response.addProperty("id", capsule.id);
+        return response;
+    }
+
+    private JsonObject handleList(JsonObject request) {
+        String owner = str(request, "owner");
+        if (owner == null) {
+            return error("Missing owner");
+        }
+        long now = clock.getAsLong();
+        long since = num(request, "since");
+        JsonArray list = new JsonArray();
+        for (CapsuleRow capsule : capsules.values()) {
+            if (since != 0 && capsule.updatedAtEpoch <= since) {
+                continue;
+            }
+            if (capsule.owner.equals(owner)) {
+                list.add(headerJson(capsule));
+            }
+        }
+        return listResponse(list, since, now);
+    }
+
+    private JsonObject handleListReceived(JsonObject request) {
+        String userId = str(request, "userId");
+        String email = str(request, "email");
+        if (userId == null && email == null) {
+            return error("Missing userId or email");
+        }
+        long now = clock.getAsLong();
+        long since = num(request, "since");
+        JsonArray list = new JsonArray();
+        for (RecipientRow recipient : recipients.values()) {
+            if (!matches(recipient, userId, email)) {
+                continue;
+            }
+            CapsuleRow capsule = capsules.get(recipient.capsuleId);
+            if (capsule == null) {
+                continue;
+            }
+            long updatedAt = Math.max(capsule.updatedAtEpoch, Math.max(recipient.openedAtUtc, recipient.createdAtUtc));
+            if (since != 0 && updatedAt <= since) {
+                continue;
+            }
+            UserRow owner = users.get(capsule.ownerUserId);
+            JsonObject header = new JsonObject();
+            header.addProperty("capsuleId", capsule.id);
+            header.addProperty("ownerEmail", capsule.owner);
+            header.addProperty("ownerDisplayName", owner != null ? owner.displayName : null);
+            header.addProperty("unlockAtUtc", capsule.unlockTimeEpoch);
+            header.addProperty("state", capsule.state);
+            header.addProperty("headline", capsule.headline);
+            header.addProperty("createdAtUtc", capsule.createdAtEpoch);
+            header.addProperty("updatedAtUtc", updatedAt);
+            header.addProperty("recipientOpenedAt", recipient.openedAtUtc != 0 ? recipient.openedAtUtc : null);
+            header.addProperty("isSurprise", !recipient.notifyOnCreate);
+            list.add(header);
+        }
+        return listResponse(list, since, now);
+    }
+
+    private JsonObject handleOpen(JsonObject request) {
+        String id = str(request, "id");
+        if (id == null) {
+            return error("Missing capsule id");
+        }
+        CapsuleRow capsule = capsules.get(id);
+        if (capsule == null) {
+            return error("Capsule not found");
+        }
+
+        String owner = str(request, "owner");
+        String userId = str(request, "userId");
+        boolean isOwner = capsule.owner.equals(owner) || capsule.ownerUserId.equals(userId);
+        boolean isRecipient = false;
+        for (RecipientRow recipient : recipients.values()) {
+            if (recipient.capsuleId.equals(id) && matches(recipient, userId, owner)) {
+                isRecipient = true;
+                break;
+            }
+        }
+        if (!isOwner && !isRecipient) {
+            return error("Access denied");
+        }
+
+        long now = clock.getAsLong();
+        if (now < capsule.unlockTimeEpoch) {
+            JsonObject response = new JsonObject();
+            response.addProperty("status", "notYet");
+            response.addProperty("message", "Capsule cannot be opened yet");
+            response.addProperty("unlockTimeEpoch", capsule.unlockTimeEpoch);
+            response.addProperty("serverTimeEpoch", now);
+            return response;
+        }
+
+        if ("sealed".equals(capsule.state)) {
+            capsule.state = "opened";
+            capsule.updatedAtEpoch = now;
+            putCapsule(capsule);
+            audit("OPEN", id, "sealed", "opened", orEmpty(str(request, "requestId")));
+        }
+
+        JsonObject response = ok();
+        response.add("capsule", bodyJson(capsule));
+        return response;
+    }
+
+    private JsonObject handleOpenReady(JsonObject request) {
+        String userId = str(request, "userId");
+        String email = str(request, "email");
+        if (userId == null && email == null) {
+            return error("Missing userId or email");
+        }
+        long now = clock.getAsLong();
+        JsonArray ready = new JsonArray();
+        Map<String, Boolean> seen = new HashMap<>();
+
+        for (RecipientRow recipient : recipients.values()) {
+            if (!matches(recipient, userId, email) || recipient.openedAtUtc != 0 || seen.containsKey(recipient.capsuleId)) {
+                continue;
+            }
+            CapsuleRow capsule = capsules.get(recipient.capsuleId);
+            if (capsule == null || now < capsule.unlockTimeEpoch) {
+                continue;
+            }
+            seen.put(capsule.id, true);
+            if ("sealed".equals(capsule.state)) {
+                capsule.state = "opened";
+                capsule.updatedAtEpoch = now;
+                putCapsule(capsule);
+                audit("OPEN", capsule.id, "sealed", "opened", orEmpty(str(request, "requestId")));
+            }
+            JsonObject body = bodyJson(capsule);
+            UserRow owner = users.get(capsule.ownerUserId);
+            body.addProperty("ownerDisplayName", owner != null ? owner.displayName : null);
+            ready.add(body);
+        }
+
+        JsonObject response = ok();
+        response.add("capsules", ready);
+        response.addProperty("serverTimeEpoch", now);
+        return response;
+    }
+
+    private JsonObject handleMarkRecipientOpened(JsonObject request) {
+        String userId = str(request, "userId");
+        String email = str(request, "email");
+        long now = clock.getAsLong();
+
+        if (request.has("capsuleIds") && request.get("capsuleIds").isJsonArray()) {
+            List<String> wanted = new ArrayList<>();
+            request.getAsJsonArray("capsuleIds").forEach(e -> wanted.add(e.getAsString()));
+            for (RecipientRow recipient : recipients.values()) {
+                if (wanted.contains(recipient.capsuleId) && matches(recipient, userId, email)) {
+                    markOpened(recipient, now);
+                }
+            }
+            return ok();
+        }
+
+        String capsuleId = str(request, "capsuleId");
+        if (capsuleId == null) {
+            return error("Missing capsuleId");
+        }
+        for (RecipientRow recipient : recipients.values()) {
+            if (recipient.capsuleId.equals(capsuleId) && matches(recipient, userId, email)) {
+                markOpened(recipient, now);
+                return ok();
+            }
+        }
+        return error("Recipient not found");
+    }
+
+    // ---- Chunks ----
+
+    private JsonObject handleChunkHas(JsonObject request) {
+        if (!request.has("ids") || !request.get("ids").isJsonArray()) {
+            return error("Missing ids");
+        }
+        JsonArray missing = new JsonArray();
+        Map<String, Boolean> checked = new HashMap<>();
+        for (JsonElement element : request.getAsJsonArray("ids")) {
+            String id = element.getAsString();
+            if (checked.put(id, true) == null && !chunks.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        JsonObject response = ok();
+        response.add("missing", missing);
+        return response;
+    }
+
+    private JsonObject handleChunkPut(JsonObject request) {
+        if (str(request, "userId") == null) {
+            return error("Missing userId");
+        }
+        String id = str(request, "id");
+        String dataBase64 = str(request, "dataBase64");
+        if (id == null || dataBase64 == null) {
+            return error("Missing chunk id or data");
+        }
+        byte[] bytes = Base64.getDecoder().decode(dataBase64);
+        if (bytes.length > MAX_CHUNK_BYTES) {
+            return error("Chunk too large");
+        }
+        if (!sha256Hex(bytes).equals(id)) {
+            return error("Chunk hash mismatch");
+        }
+        if (!chunks.containsKey(id)) {
+            chunks.put(id, dataBase64);
+            ChunkRow row = new ChunkRow();
+            row.id = id;
+            row.dataBase64 = dataBase64;
+            save(CHUNKS, id, row);
+        }
+        return ok();
+    }
+
+    private JsonObject handleChunkGet(JsonObject request) {
+        String id = str(request, "id");
+        if (id == null) {
+            return error("Missing chunk id");
+        }
+        String data = chunks.get(id);
+        if (data == null) {
+            return error("Chunk not found");
+        }
+        JsonObject response = ok();
+        response.addProperty("dataBase64", data);
+        return response;
+    }
+
+    // ---- Rows ----
+
+    private void load() {
+        store.readAll(USERS, UserRow.class).forEach(this::indexUser);
+        store.readAll(FRIENDS, FriendRow.class).forEach(row -> friends.put(row.key(), row));
+        store.readAll(INVITES, InviteRow.class).forEach(row -> invites.put(row.inviteId, row));
+        store.readAll(CAPSULES, CapsuleRow.class).forEach(row -> capsules.put(row.id, row));
+        store.readAll(RECIPIENTS, RecipientRow.class).forEach(row -> recipients.put(row.key, row));
+        store.readAll(CHUNKS, ChunkRow.class).forEach(row -> chunks.put(row.id, row.dataBase64));
+        auditSequence.set(store.getWatermark(AUDIT));
+    }
+
+    private void indexUser(UserRow user) {
+        users.put(user.userId, user);
+        usersByEmail.put(user.email, user);
+    }
+
+    private void putUser(UserRow user) {
+        indexUser(user);
+        save(USERS, user.userId, user);
+    }
+
+    private void putFriend(FriendRow row) {
+        friends.put(row.key(), row);
+        save(FRIENDS, row.key(), row);
+    }
+
+    private void putInvite(InviteRow row) {
+        invites.put(row.inviteId, row);
+        save(INVITES, row.inviteId, row);
+    }
+
+    private void putCapsule(CapsuleRow row) {
+        capsules.put(row.id, row);
+        save(CAPSULES, row.id, row);
+    }
+
+    private void putRecipient(RecipientRow row) {
+        recipients.put(row.key, row);
+        save(RECIPIENTS, row.key, row);
+    }
+
+    private void markOpened(RecipientRow recipient, long now) {
+        if (recipient.openedAtUtc == 0) {
+            recipient.openedAtUtc = now;
+            save(RECIPIENTS, recipient.key, recipient);
+        }
+    }
+
+    private void save(String collection, String key, Object row) {
+        if (store != null) {
+            store.put(collection, key, row);
+        }
+    }
+
+    private void audit(String action, String entityId, String oldState, String newState, String requestId) {
+        if (store == null) {
+            return;
+        }
+        AuditRow row = new AuditRow();
+        row.timestampEpoch = clock.getAsLong();
+        row.action = action;
+        row.entityId = entityId;
+        row.oldState = oldState;
+        row.newState = newState;
+        row.requestId = requestId;
+        long sequence = auditSequence.incrementAndGet();
+        store.put(AUDIT, Long.toString(sequence), row);
+        store.setWatermark(AUDIT, sequence);
+    }
+
+    private void mail(String to, String text) {
+        outbox.add(to + ": " + text);
+    }
+
+    // ---- JSON ----
+
+    private JsonObject userJson(UserRow user, boolean withCreatedAt) {
+        JsonObject json = new JsonObject();
+        json.addProperty("userId", user.userId);
+        json.addProperty("email", user.email);
+        json.addProperty("displayName", user.displayName);
+        if (withCreatedAt) {
+            json.addProperty("createdAtUtc", user.createdAtUtc);
+        }
+        return json;
+    }
+
+    private JsonObject friendJson(FriendRow row, String friendUserId) {
+        UserRow friend = users.get(friendUserId);
+        JsonObject json = new JsonObject();
+        json.addProperty("requesterUserId", row.requesterUserId);
+        json.addProperty("addresseeUserId", row.addresseeUserId);
+        json.addProperty("status", row.status);
+        json.addProperty("createdAtUtc", row.createdAtUtc);
+        json.addProperty("updatedAtUtc", row.updatedAtUtc);
+        json.addProperty("friendEmail", friend != null ? friend.email : null);
+        json.addProperty("friendDisplayName", friend != null ? friend.displayName : null);
+        return json;
+    }
+
+    private static JsonObject headerJson(CapsuleRow capsule) {
+        JsonObject json = new JsonObject();
+        json.addProperty("capsuleId", capsule.id);
+        json.addProperty("ownerEmail", capsule.owner);
+        json.addProperty("ownerUserId", capsule.ownerUserId);
+        json.addProperty("unlockAtUtc", capsule.unlockTimeEpoch);
+        json.addProperty("state", capsule.state);
+        json.addProperty("headline", capsule.headline);
+        json.addProperty("createdAtUtc", capsule.createdAtEpoch);
+        json.addProperty("updatedAtUtc", capsule.updatedAtEpoch);
+        return json;
+    }
+
+    private static JsonObject bodyJson(CapsuleRow capsule) {
+        JsonObject json = new JsonObject();
+        json.addProperty("capsuleId", capsule.id);
+        json.addProperty("ownerEmail", capsule.owner);
+        json.addProperty("ownerUserId", capsule.ownerUserId);
+        json.addProperty("unlockAtUtc", capsule.unlockTimeEpoch);
+        json.addProperty("state", "opened");
+        json.addProperty("ciphertextBase64", capsule.ciphertextBase64);
+        json.addProperty("ivBase64", capsule.ivBase64);
+        json.addProperty("saltBase64", capsule.saltBase64);
+        json.addProperty("headline", capsule.headline);
+        json.addProperty("createdAtUtc", capsule.createdAtEpoch);
+        json.addProperty("attachmentManifest", isBlank(capsule.attachmentManifest) ? null : capsule.attachmentManifest);
+        return json;
+    }
+
+    private static JsonObject listResponse(JsonArray capsules, long since, long now) {
+        JsonObject response = ok();
+        response.add("capsules", capsules);
+        response.add("deletedIds", new JsonArray());
+        response.addProperty("delta", since != 0);
+        response.addProperty("serverTimeEpoch", now);
+        return response;
+    }
+
+    /** Adds the timestamps jsonResponse() puts on every reply. */
+    private JsonObject stamp(JsonObject response, long receivedAt) {
+        long sentAt = clock.getAsLong();
+        response.addProperty("serverSentEpoch", sentAt);
+        if (receivedAt != 0) {
+            response.addProperty("serverReceivedEpoch", receivedAt);
+        }
+        if (!response.has("serverTimeEpoch")) {
+            response.addProperty("serverTimeEpoch", sentAt);
+        }
+        return response;
+    }
+
+    private static JsonObject ok() {
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "ok");
+        return response;
+    }
+
+    private static JsonObject message(String message) {
+        JsonObject response = ok();
+        response.addProperty("message", message);
+        return response;
+    }
+
+    private static JsonObject error(String error) {
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "error");
+        response.addProperty("error", error);
+        return response;
+    }
+
+    // ---- Helpers ----
+
+    /** A string field, or null where the script's {@code !request.x} would be true. */
+    private static String str(JsonObject request, String field) {
+        JsonElement value = request.get(field);
+        if (value == null || value.isJsonNull()) {
+            return null;
+        }
+        String text = value.isJsonPrimitive() ? value.getAsString() : value.toString();
+        return text.isEmpty() ? null : text;
+    }
+
+    private static long num(JsonObject request, String field) {
+        JsonElement value = request.get(field);
+        if (value == null || value.isJsonNull()) {
+            return 0;
+        }
+        try {
+            return (long) Double.parseDouble(value.getAsString());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean bool(JsonObject request, String field, boolean fallback) {
+        JsonElement value = request.get(field);
+        return value == null || value.isJsonNull() ? fallback : value.getAsBoolean();
+    }
+
+    private static boolean connects(FriendRow row, String a, String b) {
+        return (row.requesterUserId.equals(a) && row.addresseeUserId.equals(b))
+            || (row.requesterUserId.equals(b) && row.addresseeUserId.equals(a));
+    }
+
+    private static String otherSide(FriendRow row, String userId) {
+        if (row.requesterUserId.equals(userId)) {
+            return row.addresseeUserId;
+        }
+        return row.addresseeUserId.equals(userId) ? row.requesterUserId : null;
+    }
+
+    private static boolean matches(RecipientRow recipient, String userId, String email) {
+        return (userId != null && userId.equals(recipient.recipientUserId))
+            || (email != null && email.equals(recipient.recipientEmail));
+    }
+
+    private String displayNameOf(String userId) {
+        UserRow user = users.get(userId);
+        if (user == null) {
+            return null;
+        }
+        return isBlank(user.displayName) ? user.email : user.displayName;
+    }
+
+    /** Six base-36 characters, like Math.random().toString(36).substring(2, 8). */
+    private String randomSuffix() {
+        long range = 2_176_782_336L;
+        return Long.toString(range + Math.floorMod(random.nextLong(), range), 36).substring(1);
+    }
+
+    private String generateToken() {
+        StringBuilder token = new StringBuilder(32);
+        for (int i = 0; i < 32; i++) {
+            token.append(TOKEN_CHARS.charAt(random.nextInt(TOKEN_CHARS.length())));
+        }
+        return token.toString();
+    }
+
+    private static String sha256Hex(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String lower(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isEmpty();
+    }
+}
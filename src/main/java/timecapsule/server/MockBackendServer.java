@@ -0,0 +1,157 @@
+package timecapsule.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import timecapsule.store.LocalStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves a {@link MockBackend} over HTTP on localhost with the same URL shape
+ * as a deployed script: POST /exec runs an action. With {@code emulateRedirect}
+ * the reply is parked and the client is sent a 302 to GET /echo, as Apps Script
+ * does with googleusercontent, so transport timings include the second hop.
+ *
+ * Point the client at it with {@code -Dtimecapsule.backend=http://127.0.0.1:8787/exec}.
+ * Run standalone with {@code --port=8787 --data=DIR --redirect}; without
+ * {@code --data} everything is kept in memory.
+ */
+public class MockBackendServer implements Closeable {
+
+    private final MockBackend backend;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean emulateRedirect;
+    private final Map<String, byte[]> parked = new ConcurrentHashMap<>();
+
+    private MockBackendServer(MockBackend backend, HttpServer server, ExecutorService executor, boolean emulateRedirect) {
+        this.backend = backend;
+        this.server = server;
+        this.executor = executor;
+        this.emulateRedirect = emulateRedirect;
+    }
+
+    /** Starts serving on 127.0.0.1; port 0 picks a free port. */
+    public static MockBackendServer start(MockBackend backend, int port, boolean emulateRedirect) throws IOException {
+        // Without TCP_NODELAY small replies wait out the peer's delayed ACK (~40 ms) and swamp latency figures.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2), r -> {
+            Thread t = new Thread(r, "mock-backend");
+            t.setDaemon(true);
+            return t;
+        });
+        MockBackendServer mock = new MockBackendServer(backend, server, executor, emulateRedirect);
+        server.createContext("/exec", mock::handleExec);
+        server.createContext("/echo", mock::handleEcho);
+        server.setExecutor(executor);
+        server.start();
+        return mock;
+    }
+
+    public URI getEndpoint() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/exec");
+    }
+
+    public MockBackend getBackend() {
+        return backend;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        backend.flush();
+    }
+
+    private void handleExec(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 200, ("{\"status\":\"ok\",\"message\":\"TimeCapsule API V2 is running\",\"timestamp\":"
+                    + System.currentTimeMillis() + "}").getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            long receivedAt = System.currentTimeMillis();
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            byte[] reply = backend.handle(body, receivedAt).getBytes(StandardCharsets.UTF_8);
+
+            if (emulateRedirect) {
+                String key = UUID.randomUUID().toString();
+                parked.put(key, reply);
+                exchange.getResponseHeaders().add("Location", "/echo?user_content_key=" + key);
+                exchange.sendResponseHeaders(302, -1);
+            } else {
+                send(exchange, 200, reply);
+            }
+        }
+    }
+
+    private void handleEcho(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String query = exchange.getRequestURI().getQuery();
+            String key = query != null && query.startsWith("user_content_key=") ? query.substring(17) : null;
+            byte[] reply = key != null ? parked.remove(key) : null;
+            if (reply == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            send(exchange, 200, reply);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 8787;
+        Path data = null;
+        boolean redirect = false;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring(7));
+            } else if (arg.startsWith("--data=")) {
+                data = Path.of(arg.substring(7));
+            } else if (arg.equals("--redirect")) {
+                redirect = true;
+            }
+        }
+
+        LocalStore store = data != null ? LocalStore.open(data) : null;
+        MockBackendServer mock = start(new MockBackend(store), port, redirect);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            mock.close();
+            if (store != null) {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    System.err.println("[MockBackendServer] Failed to close store: " + e.getMessage());
+                }
+            }
+        }));
+        System.err.println("[MockBackendServer] Listening on " + mock.getEndpoint()
+            + (store != null ? " with data in " + data : " (in memory)"));
+    }
+}
@@ -0,0 +1,299 @@
+package timecapsule.store;
+
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-user on-disk copy of capsules, recipients, friends and invites, kept in
+ * a {@link RecordLog} with an in-memory key index. Values are stored as JSON
+ * under a collection name ("sent", "received", "friends", ...).
+ */
+public class LocalStore implements Closeable {
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte WATERMARK = 3;
+
+    private static final String LOG_PREFIX = "store-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final long COMPACT_MIN_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final Gson gson = new Gson();
+    private final Map<String, Map<String, Location>> index = new HashMap<>();
+    private final Map<String, Long> watermarks = new HashMap<>();
+
+    private RecordLog log;
+    private long generation;
+    private long liveBytes;
+
+    private LocalStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public static LocalStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        LocalStore store = new LocalStore(directory);
+        store.openLatest();
+        return store;
+    }
+
+    public synchronized <T> List<T> readAll(String collection, Class<T> type) {
+        Map<String, Location> keys = index.get(collection);
+        List<T> values = new ArrayList<>();
+        if (keys == null) {
+            return values;
+        }
+        for (Location location : keys.values()) {
+            values.add(gson.fromJson(decode(log.read(location.offset)).body, type));
+        }
+        return values;
+    }
+
+    public synchronized <T> T get(String collection, String key, Class<T> type) {
+        Map<String, Location> keys = index.get(collection);
+        Location location = keys != null ? keys.get(key) : null;
+        if (location == null) {
+            return null;
+        }
+        return gson.fromJson(decode(log.read(location.offset)).body, type);
+    }
+
+    public synchronized void put(String collection, String key, Object value) {
+        byte[] payload = encode(collection, key, gson.toJson(value));
+        track(collection, key, new Location(append(PUT, payload), RecordLog.recordSize(payload)));
+    }
+
+    public synchronized void remove(String collection, String key) {
+        if (untrack(collection, key)) {
+            append(DELETE, encode(collection, key, ""));
+        }
+    }
+
+    public synchronized long getWatermark(String collection) {
+        return watermarks.getOrDefault(collection, 0L);
+    }
+
+    public synchronized void setWatermark(String collection, long watermark) {
+        watermarks.put(collection, watermark);
+        append(WATERMARK, encode(collection, "", Long.toString(watermark)));
+    }
+
+    public synchronized void flush() {
+        log.force();
+        if (log.size() > COMPACT_MIN_BYTES && liveBytes * 2 < log.size()) {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.err.println("[LocalStore] Compaction failed: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        log.close();
+    }
+
+    private long append(byte type, byte[] payload) {
+        try {
+            return log.append(type, payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openLatest() throws IOException {
+        long latest = -1;
+        List<Path> stale = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, LOG_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(LOG_SUFFIX)) {
+                    stale.add(file);
+                    continue;
+                }
+                long gen = parseGeneration(name);
+                if (gen > latest) {
+                    if (latest >= 0) {
+                        stale.add(logPath(latest));
+                    }
+                    latest = gen;
+                } else {
+                    stale.add(file);
+                }
+            }
+        }
+
+        generation = Math.max(latest, 0);
+        log = RecordLog.open(logPath(generation), this::replay);
+
+        for (Path file : stale) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void replay(long offset, byte type, byte[] payload) {
+        Entry entry = decode(payload);
+        switch (type) {
+            case PUT:
+                track(entry.collection, entry.key, new Location(offset, RecordLog.recordSize(payload)));
+                break;
+            case DELETE:
+                untrack(entry.collection, entry.key);
+                break;
+            case WATERMARK:
+                watermarks.put(entry.collection, Long.parseLong(entry.body));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void track(String collection, String key, Location location) {
+        Location previous = index.computeIfAbsent(collection, c -> new LinkedHashMap<>()).put(key, location);
+        if (previous != null) {
+            liveBytes -= previous.size;
+        }
+        liveBytes += location.size;
+    }
+
+    private boolean untrack(String collection, String key) {
+        Map<String, Location> keys = index.get(collection);
+        Location previous = keys != null ? keys.remove(key) : null;
+        if (previous == null) {
+            return false;
+        }
+        liveBytes -= previous.size;
+        return true;
+    }
+
+    private void compact() throws IOException {
+        long nextGeneration = generation + 1;
+        Path target = logPath(nextGeneration);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(RecordLog.HEADER_SIZE);
+            RecordLog.writeHeader(header);
+            header.flip();
+            out.write(header);
+
+            for (Map<String, Location> keys : index.values()) {
+                for (Location location : keys.values()) {
+                    writeTo(out, PUT, log.read(location.offset));
+                }
+            }
+            for (Map.Entry<String, Long> watermark : watermarks.entrySet()) {
+                writeTo(out, WATERMARK, encode(watermark.getKey(), "", Long.toString(watermark.getValue())));
+            }
+            out.force(true);
+        }
+
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+
+        RecordLog previous = log;
+        index.clear();
+        watermarks.clear();
+        liveBytes = 0;
+        log = RecordLog.open(target, this::replay);
+        generation = nextGeneration;
+
+        previous.close();
+        try {
+            Files.deleteIfExists(previous.getPath());
+        } catch (IOException e) {
+            previous.getPath().toFile().deleteOnExit();
+        }
+    }
+
+    private static void writeTo(FileChannel out, byte type, byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RecordLog.recordSize(payload));
+        RecordLog.writeRecord(record, type, payload);
+        record.flip();
+        while (record.hasRemaining()) {
+            out.write(record);
+        }
+    }
+
+    private Path logPath(long gen) {
+        return directory.resolve(LOG_PREFIX + gen + LOG_SUFFIX);
+    }
+
+    private static long parseGeneration(String name) {
+        try {
+            return Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] encode(String collection, String key, String body) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(collection);
+            out.writeUTF(key);
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Entry decode(byte[] payload) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            String collection = in.readUTF();
+            String key = in.readUTF();
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return new Entry(collection, key, body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Location {
+        final long offset;
+        final int size;
+
+        Location(long offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+
+    private static class Entry {
+        final String collection;
+        final String key;
+        final String body;
+
+        Entry(String collection, String key, String body) {
+            this.collection = collection;
+            this.key = key;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package timecapsule.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped log of typed records. Each record is
+ * [length][crc32][type][payload]; on open the log is replayed up to the first
+ * torn or corrupt record, and everything after it is discarded.
+ */
+class RecordLog implements Closeable {
+
+    static final int MAGIC = 0x54434C47;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 9;
+
+    private static final int INITIAL_MAP_SIZE = 1 << 20;
+    private static final long MAX_MAP_SIZE = Integer.MAX_VALUE;
+
+    interface Visitor {
+        void visit(long offset, byte type, byte[] payload);
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+
+    private RecordLog(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    static RecordLog open(Path path, Visitor visitor) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        RecordLog log = new RecordLog(path, channel);
+        try {
+            log.map(Math.max(INITIAL_MAP_SIZE, channel.size()));
+            log.recover(visitor);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return log;
+    }
+
+    static void writeHeader(ByteBuffer target) {
+        target.putInt(MAGIC);
+        target.putInt(VERSION);
+    }
+
+    static int recordSize(byte[] payload) {
+        return RECORD_HEADER_SIZE + payload.length;
+    }
+
+    static void writeRecord(ByteBuffer target, byte type, byte[] payload) {
+        target.putInt(payload.length);
+        target.putInt(checksum(type, payload));
+        target.put(type);
+        target.put(payload);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int size() {
+        return writePosition;
+    }
+
+    synchronized long append(byte type, byte[] payload) throws IOException {
+        int needed = recordSize(payload);
+        ensureCapacity((long) writePosition + needed);
+
+        long offset = writePosition;
+        buffer.position(writePosition);
+        writeRecord(buffer, type, payload);
+        writePosition += needed;
+        return offset;
+    }
+
+    synchronized byte[] read(long offset) {
+        int pos = (int) offset;
+        int length = buffer.getInt(pos);
+        byte[] payload = new byte[length];
+        buffer.get(pos + RECORD_HEADER_SIZE, payload);
+        return payload;
+    }
+
+    synchronized void force() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void recover(Visitor visitor) throws IOException {
+        if (buffer.getInt(0) == 0) {
+            buffer.position(0);
+            writeHeader(buffer);
+            writePosition = HEADER_SIZE;
+            return;
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a capsule store log: " + path);
+        }
+
+        int capacity = buffer.capacity();
+        int pos = HEADER_SIZE;
+        long tornEnd = pos;
+        while (pos + RECORD_HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(pos);
+            tornEnd = Math.min(capacity, (long) pos + RECORD_HEADER_SIZE + Math.max(0, length));
+            if (length <= 0 || (long) pos + RECORD_HEADER_SIZE + length > capacity) {
+                break;
+            }
+            int crc = buffer.getInt(pos + 4);
+            byte type = buffer.get(pos + 8);
+            byte[] payload = new byte[length];
+            buffer.get(pos + RECORD_HEADER_SIZE, payload);
+            if (checksum(type, payload) != crc) {
+                break;
+            }
+            visitor.visit(pos, type, payload);
+            pos += RECORD_HEADER_SIZE + length;
+            tornEnd = pos;
+        }
+
+        writePosition = pos;
+        for (int i = pos; i < tornEnd; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.force();
+    }
+
+    private void ensureCapacity(long required) throws IOException {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        if (required > MAX_MAP_SIZE) {
+            throw new IOException("Capsule store log is full: " + path);
+        }
+        long newSize = buffer.capacity();
+        while (newSize < required) {
+            newSize = Math.min(MAX_MAP_SIZE, newSize * 2);
+        }
+        buffer.force();
+        map(newSize);
+    }
+
+    private void map(long size) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static int checksum(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
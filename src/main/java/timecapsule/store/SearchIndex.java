@@ -0,0 +1,364 @@
+package timecapsule.store;
+
+import com.google.gson.Gson;
+import timecapsule.crypto.CryptoService;
+import timecapsule.crypto.RecordCipher;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Full-text index over the plaintext of capsules the user has opened, so old
+ * messages can be found without re-deriving each capsule's key.
+ *
+ * Postings live only in memory as bitsets over document ordinals, in a
+ * sorted map so a prefix query is a range scan and multi-term queries are
+ * bitwise ANDs. On disk each indexed message is a separate record in the local store,
+ * sealed under a key derived from the login password; the index is rebuilt
+ * from those records when it is unlocked after login. Messages indexed
+ * before the unlock completes are held and written afterwards.
+ */
+public class SearchIndex {
+
+    public static class Document {
+        private String capsuleId;
+        private String headline;
+        private String sender;
+        private long unlockAtUtc;
+        private String text;
+
+        public Document() {}
+
+        public Document(String capsuleId, String headline, String sender, long unlockAtUtc, String text) {
+            this.capsuleId = capsuleId;
+            this.headline = headline;
+            this.sender = sender;
+            this.unlockAtUtc = unlockAtUtc;
+            this.text = text;
+        }
+
+        public String getCapsuleId() { return capsuleId; }
+        public String getHeadline() { return headline; }
+        public String getSender() { return sender; }
+        public long getUnlockAtUtc() { return unlockAtUtc; }
+        public String getText() { return text; }
+    }
+
+    public static class Hit {
+        private final Document document;
+        private final String snippet;
+
+        Hit(Document document, String snippet) {
+            this.document = document;
+            this.snippet = snippet;
+        }
+
+        public Document getDocument() { return document; }
+        public String getSnippet() { return snippet; }
+    }
+
+    private static class KeyCheck {
+        String saltBase64;
+        String checkBase64;
+    }
+
+    private static class SealedDocument {
+        String id;
+        String dataBase64;
+    }
+
+    private static final String META_COLLECTION = "searchMeta";
+    private static final String DOC_COLLECTION = "searchDocs";
+    private static final String KEY_CHECK_ID = "key";
+    private static final byte[] KEY_CHECK = "timecapsule-search-v1".getBytes(StandardCharsets.UTF_8);
+    private static final int SNIPPET_CONTEXT = 60;
+
+    private final LocalStore store;
+    private final Gson gson = new Gson();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<Document> documents = new ArrayList<>();
+    private final TreeMap<String, BitSet> postings = new TreeMap<>();
+    private final List<Document> pending = new ArrayList<>();
+    private RecordCipher cipher;
+    private boolean closed;
+
+    /** {@code store} may be null, in which case the index lasts only for the session. */
+    public SearchIndex(LocalStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Derives the index key from {@code secret} and loads previously indexed
+     * messages. If the key no longer matches (the password changed), the old
+     * records are unreadable and are discarded.
+     */
+    public CompletableFuture<Void> unlock(String secret) {
+        return CryptoService.getDefault().submit(() -> {
+            RecordCipher unlocked = store != null ? openStored(secret) : RecordCipher.derive(secret, RecordCipher.newSalt());
+            synchronized (this) {
+                if (closed) {
+                    return null;
+                }
+                cipher = unlocked;
+                for (Document document : pending) {
+                    persist(document);
+                }
+                pending.clear();
+            }
+            return null;
+        });
+    }
+
+    public synchronized boolean isUnlocked() {
+        return cipher != null;
+    }
+
+    public synchronized int size() {
+        return ordinals.size();
+    }
+
+    /** Indexes (or re-indexes) one opened capsule and writes it through to the store. */
+    public synchronized void add(String capsuleId, String headline, String sender, long unlockAtUtc, String text) {
+        if (capsuleId == null || text == null) {
+            return;
+        }
+        Document document = new Document(capsuleId, headline, sender, unlockAtUtc, text);
+        index(document);
+        if (cipher != null) {
+            persist(document);
+        } else {
+            pending.removeIf(d -> d.capsuleId.equals(capsuleId));
+            pending.add(document);
+        }
+    }
+
+    /**
+     * Returns documents containing every term of {@code query}, most recently
+     * unlocked first. Terms match whole words; a trailing '*' makes a term a
+     * prefix ("birth*" finds "birthday").
+     */
+    public synchronized List<Hit> search(String query, int limit) {
+        BitSet matches = null;
+        List<String> terms = new ArrayList<>();
+        for (String raw : query.trim().split("\\s+")) {
+            boolean prefix = raw.endsWith("*");
+            List<String> tokens = tokenize(raw);
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                terms.add(token);
+                BitSet termMatches = prefix && i == tokens.size() - 1 ? prefixMatches(token) : postings.get(token);
+                if (termMatches == null) {
+                    return List.of();
+                }
+                if (matches == null) {
+                    matches = (BitSet) termMatches.clone();
+                } else {
+                    matches.and(termMatches);
+                }
+            }
+        }
+        if (matches == null) {
+            return List.of();
+        }
+
+        List<Document> found = new ArrayList<>(matches.cardinality());
+        for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+            found.add(documents.get(ordinal));
+        }
+        found.sort(Comparator.comparingLong(Document::getUnlockAtUtc).reversed());
+
+        List<Hit> hits = new ArrayList<>();
+        for (Document document : found.subList(0, Math.min(limit, found.size()))) {
+            hits.add(new Hit(document, snippet(document.text, terms)));
+        }
+        return hits;
+    }
+
+    /** Drops the in-memory index and key; the sealed records stay on disk. */
+    public synchronized void close() {
+        ordinals.clear();
+        documents.clear();
+        postings.clear();
+        pending.clear();
+        cipher = null;
+        closed = true;
+    }
+
+    private RecordCipher openStored(String secret) throws Exception {
+        KeyCheck check = store.get(META_COLLECTION, KEY_CHECK_ID, KeyCheck.class);
+        if (check != null) {
+            RecordCipher stored = RecordCipher.derive(secret, Base64.getDecoder().decode(check.saltBase64));
+            try {
+                stored.open(Base64.getDecoder().decode(check.checkBase64), KEY_CHECK_ID);
+                load(stored);
+                return stored;
+            } catch (GeneralSecurityException e) {
+                System.err.println("[SearchIndex] Index key changed; discarding old search records");
+                for (SealedDocument sealed : store.readAll(DOC_COLLECTION, SealedDocument.class)) {
+                    store.remove(DOC_COLLECTION, sealed.id);
+                }
+            }
+        }
+
+        byte[] salt = RecordCipher.newSalt();
+        RecordCipher fresh = RecordCipher.derive(secret, salt);
+        KeyCheck created = new KeyCheck();
+        created.saltBase64 = Base64.getEncoder().encodeToString(salt);
+        created.checkBase64 = Base64.getEncoder().encodeToString(fresh.seal(KEY_CHECK, KEY_CHECK_ID));
+        store.put(META_COLLECTION, KEY_CHECK_ID, created);
+        return fresh;
+    }
+
+    private void load(RecordCipher stored) {
+        List<Document> loaded = new ArrayList<>();
+        for (SealedDocument sealed : store.readAll(DOC_COLLECTION, SealedDocument.class)) {
+            try {
+                byte[] json = stored.open(Base64.getDecoder().decode(sealed.dataBase64), sealed.id);
+                loaded.add(gson.fromJson(new String(json, StandardCharsets.UTF_8), Document.class));
+            } catch (Exception e) {
+                System.err.println("[SearchIndex] Dropping unreadable record " + sealed.id);
+                store.remove(DOC_COLLECTION, sealed.id);
+            }
+        }
+        synchronized (this) {
+            for (Document document : loaded) {
+                if (!closed && !ordinals.containsKey(document.capsuleId)) {
+                    index(document);
+                }
+            }
+        }
+    }
+
+    private void index(Document document) {
+        Integer ordinal = ordinals.get(document.capsuleId);
+        if (ordinal == null) {
+            ordinal = documents.size();
+            ordinals.put(document.capsuleId, ordinal);
+            documents.add(document);
+        } else {
+            for (String term : terms(documents.get(ordinal))) {
+                BitSet ids = postings.get(term);
+                if (ids != null) {
+                    ids.clear(ordinal);
+                    if (ids.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            documents.set(ordinal, document);
+        }
+        for (String term : terms(document)) {
+            postings.computeIfAbsent(term, t -> new BitSet()).set(ordinal);
+        }
+    }
+
+    private void persist(Document document) {
+        if (store == null) {
+            return;
+        }
+        try {
+            SealedDocument sealed = new SealedDocument();
+            sealed.id = document.capsuleId;
+            sealed.dataBase64 = Base64.getEncoder().encodeToString(
+                cipher.seal(gson.toJson(document).getBytes(StandardCharsets.UTF_8), document.capsuleId));
+            store.put(DOC_COLLECTION, document.capsuleId, sealed);
+        } catch (GeneralSecurityException | UncheckedIOException e) {
+            System.err.println("[SearchIndex] Failed to save search record: " + e.getMessage());
+        }
+    }
+
+    private BitSet prefixMatches(String prefix) {
+        BitSet ids = new BitSet();
+        for (BitSet posting : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+            ids.or(posting);
+        }
+        return ids;
+    }
+
+    private static Set<String> terms(Document document) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(document.text));
+        if (document.headline != null) {
+            terms.addAll(tokenize(document.headline));
+        }
+        if (document.sender != null) {
+            terms.addAll(tokenize(document.sender));
+        }
+        return terms;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static String snippet(String text, List<String> terms) {
+        int at = -1;
+        for (String term : terms) {
+            int found = indexOfIgnoreCase(text, term, at < 0 ? text.length() : at);
+            if (found >= 0) {
+                at = found;
+            }
+        }
+        if (at < 0) {
+            at = 0;
+        }
+        int from = Math.max(0, at - SNIPPET_CONTEXT);
+        int to = Math.min(text.length(), at + SNIPPET_CONTEXT * 2);
+
+        StringBuilder snippet = new StringBuilder(to - from + 2);
+        if (from > 0) {
+            snippet.append('…');
+        }
+        boolean space = false;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = snippet.length() > 0;
+            } else {
+                if (space) {
+                    snippet.append(' ');
+                    space = false;
+                }
+                snippet.append(c);
+            }
+        }
+        if (to < text.length()) {
+            snippet.append('…');
+        }
+        return snippet.toString();
+    }
+
+    private static int indexOfIgnoreCase(String text, String term, int before) {
+        int last = Math.min(before, text.length() - term.length());
+        char first = term.charAt(0);
+        for (int i = 0; i <= last; i++) {
+            if (Character.toLowerCase(text.charAt(i)) == first && text.regionMatches(true, i, term, 0, term.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,108 @@
+package timecapsule.ui;
+
+import javafx.application.Platform;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.stage.FileChooser;
+import timecapsule.api.ApiClient;
+import timecapsule.api.AttachmentTransfer;
+import timecapsule.crypto.AttachmentCipher;
+import timecapsule.crypto.CryptoService;
+import timecapsule.model.Attachment;
+import timecapsule.model.Capsule;
+
+import java.io.File;
+import java.util.List;
+
+public class AttachmentsPane extends VBox {
+
+    private final Label statusLabel;
+
+    public AttachmentsPane(ApiClient apiClient, Capsule capsule, String passphrase) {
+        setSpacing(8);
+
+        Label headerLabel = new Label("📎 Attachments");
+        headerLabel.setFont(Font.font("SF Pro Display", FontWeight.BOLD, 14));
+        headerLabel.setTextFill(Color.WHITE);
+
+        statusLabel = new Label("Unsealing attachment list...");
+        statusLabel.setTextFill(Color.web("#8E8E93"));
+
+        getChildren().addAll(headerLabel, statusLabel);
+
+        String associatedData = capsule.getOwnerEmail() + "|" + capsule.getUnlockAtUtc();
+        CryptoService.getDefault().submit(() -> {
+            AttachmentTransfer transfer = new AttachmentTransfer(apiClient,
+                AttachmentCipher.forManifest(capsule.getAttachmentManifest(), passphrase));
+            List<Attachment> attachments = transfer.openManifest(capsule.getAttachmentManifest(), associatedData);
+            Platform.runLater(() -> show(transfer, attachments));
+            return null;
+        }).exceptionally(e -> {
+            Platform.runLater(() -> statusLabel.setText("Could not read attachments"));
+            return null;
+        });
+    }
+
+    private void show(AttachmentTransfer transfer, List<Attachment> attachments) {
+        statusLabel.setText(attachments.size() + " file(s)");
+        for (Attachment attachment : attachments) {
+            Label nameLabel = new Label(attachment.getFileName() + "  (" + formatSize(attachment.getSize()) + ")");
+            nameLabel.setTextFill(Color.WHITE);
+            HBox.setHgrow(nameLabel, Priority.ALWAYS);
+            nameLabel.setMaxWidth(Double.MAX_VALUE);
+
+            Button saveBtn = new Button("Save...");
+            saveBtn.setStyle(
+                "-fx-background-color: #667eea; " +
+                "-fx-text-fill: white; " +
+                "-fx-background-radius: 6; " +
+                "-fx-padding: 4 12;"
+            );
+            saveBtn.setOnAction(e -> save(transfer, attachment, saveBtn));
+
+            HBox row = new HBox(10, nameLabel, saveBtn);
+            row.setAlignment(Pos.CENTER_LEFT);
+            getChildren().add(row);
+        }
+    }
+
+    private void save(AttachmentTransfer transfer, Attachment attachment, Button saveBtn) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Save Attachment");
+        chooser.setInitialFileName(attachment.getFileName());
+        File target = chooser.showSaveDialog(getScene().getWindow());
+        if (target == null) {
+            return;
+        }
+
+        saveBtn.setDisable(true);
+        transfer.downloadAsync(attachment, target.toPath(), (fileName, done, total) ->
+            Platform.runLater(() -> statusLabel.setText("Saving " + fileName + " (" + formatSize(done)
+                + " of " + formatSize(total) + ")"))
+        ).whenComplete((v, error) -> Platform.runLater(() -> {
+            saveBtn.setDisable(false);
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                statusLabel.setText("Failed to save " + attachment.getFileName() + ": " + cause.getMessage());
+            } else {
+                statusLabel.setText("Saved " + attachment.getFileName());
+            }
+        }));
+    }
+
+    private static String formatSize(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return (bytes / 1024) + " KB";
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
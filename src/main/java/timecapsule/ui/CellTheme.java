@@ -0,0 +1,63 @@
+package timecapsule.ui;
+
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Fonts, colours and styles shared by every list cell. Cells are recycled
+ * while scrolling, so anything they draw with is created once here rather
+ * than on each update.
+ */
+final class CellTheme {
+
+    static final Font ICON_FONT = Font.font(24);
+    static final Font TITLE_FONT = Font.font("SF Pro Display", FontWeight.BOLD, 16);
+    static final Font NAME_FONT = Font.font("SF Pro Display", FontWeight.BOLD, 14);
+    static final Font STATUS_FONT = Font.font("SF Pro Display", FontWeight.BOLD, 12);
+    static final Font DETAIL_FONT = Font.font("SF Pro Display", 11);
+
+    static final Color TEXT = Color.WHITE;
+    static final Color MUTED = Color.web("#8E8E93");
+    static final Color SUCCESS = Color.web("#34C759");
+    static final Color WARNING = Color.web("#FF9500");
+    static final Color DANGER = Color.web("#FF3B30");
+    static final Color ACCENT = Color.web("#667eea");
+
+    static final String ROW_STYLE = "-fx-background-color: #3A3A3C; -fx-background-radius: 10;";
+    static final String COMPACT_ROW_STYLE = "-fx-background-color: #3A3A3C; -fx-background-radius: 8;";
+    static final String CELL_STYLE = "-fx-background-color: transparent;";
+
+    static final Insets ROW_PADDING = new Insets(15);
+    static final Insets COMPACT_ROW_PADDING = new Insets(10);
+
+    static final DateTimeFormatter DATE_FORMAT =
+        DateTimeFormatter.ofPattern("MMM dd, yyyy 'at' HH:mm").withZone(ZoneId.systemDefault());
+
+    private CellTheme() {
+    }
+
+    static Button button(String text, String color) {
+        Button btn = new Button(text);
+        btn.setStyle(
+            "-fx-background-color: " + color + "; " +
+            "-fx-text-fill: white; " +
+            "-fx-font-weight: bold; " +
+            "-fx-background-radius: 8; " +
+            "-fx-padding: 8 16; " +
+            "-fx-cursor: hand;"
+        );
+        return btn;
+    }
+
+    static void show(Node node, boolean visible) {
+        node.setVisible(visible);
+        node.setManaged(visible);
+    }
+}
@@ -8,16 +8,24 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.stage.FileChooser;
 import timecapsule.api.ApiClient;
+import timecapsule.api.AttachmentTransfer;
+import timecapsule.crypto.AttachmentCipher;
+import timecapsule.crypto.CryptoService;
 import timecapsule.crypto.CryptoUtils;
 import timecapsule.model.*;
 
+import java.io.File;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 public class ComposeCapsuleScreen extends VBox {
@@ -36,6 +44,9 @@ public class ComposeCapsuleScreen extends VBox {
     private PasswordField confirmPassphraseField;
     private Label statusLabel;
     private Button sendButton;
+    private CompletableFuture<CryptoUtils.EncryptionResult> pendingEncryption;
+    private ListView<Path> attachmentsListView;
+    private volatile AttachmentCipher attachmentCipher;
     
     private List<Friend> availableFriends = new ArrayList<>();
     
@@ -95,6 +106,8 @@ public class ComposeCapsuleScreen extends VBox {
         
         messageBox.getChildren().addAll(messageLabel, messageArea);
         
+        VBox attachmentsBox = createAttachmentsSection();
+        
         VBox dateTimeBox = createDateTimeSection();
         
         VBox recipientsBox = createRecipientsSection();
@@ -103,12 +116,63 @@ public class ComposeCapsuleScreen extends VBox {
         
         VBox passphraseBox = createPassphraseSection();
         
-        form.getChildren().addAll(headlineBox, messageBox, dateTimeBox, 
+        form.getChildren().addAll(headlineBox, messageBox, attachmentsBox, dateTimeBox, 
                                    recipientsBox, surpriseBox, passphraseBox);
         
         return form;
     }
     
+    private VBox createAttachmentsSection() {
+        VBox box = new VBox(10);
+        
+        HBox headerRow = new HBox(15);
+        headerRow.setAlignment(Pos.CENTER_LEFT);
+        
+        Label label = new Label("📎 Attachments (optional)");
+        label.setTextFill(Color.WHITE);
+        label.setFont(Font.font("SF Pro Display", FontWeight.BOLD, 14));
+        HBox.setHgrow(label, Priority.ALWAYS);
+        
+        Button attachBtn = createSmallButton("+ Attach File", "#667eea");
+        attachBtn.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Attach Files");
+            List<File> files = chooser.showOpenMultipleDialog(getScene().getWindow());
+            if (files != null) {
+                for (File file : files) {
+                    if (!attachmentsListView.getItems().contains(file.toPath())) {
+                        attachmentsListView.getItems().add(file.toPath());
+                    }
+                }
+            }
+        });
+        
+        Button clearBtn = createSmallButton("Clear", "#3A3A3C");
+        clearBtn.setOnAction(e -> attachmentsListView.getItems().clear());
+        
+        headerRow.getChildren().addAll(label, attachBtn, clearBtn);
+        
+        attachmentsListView = new ListView<>();
+        attachmentsListView.setPrefHeight(70);
+        attachmentsListView.setStyle("-fx-background-color: #3A3A3C; -fx-control-inner-background: #3A3A3C;");
+        attachmentsListView.setCellFactory(lv -> new ListCell<>() {
+            @Override
+            protected void updateItem(Path path, boolean empty) {
+                super.updateItem(path, empty);
+                if (empty || path == null) {
+                    setText(null);
+                    return;
+                }
+                setText(path.getFileName() + "  (" + formatSize(path.toFile().length()) + ")");
+                setTextFill(Color.WHITE);
+            }
+        });
+        attachmentsListView.setPlaceholder(new Label("No files attached"));
+        
+        box.getChildren().addAll(headerRow, attachmentsListView);
+        return box;
+    }
+    
     private VBox createDateTimeSection() {
         VBox box = new VBox(5);
         
@@ -239,6 +303,7 @@ public class ComposeCapsuleScreen extends VBox {
         passphraseField = new PasswordField();
         passphraseField.setPromptText("Enter passphrase...");
         styleTextField(passphraseField);
+        passphraseField.textProperty().addListener((obs, old, text) -> attachmentCipher = null);
         
         confirmPassphraseField = new PasswordField();
         confirmPassphraseField.setPromptText("Confirm passphrase...");
@@ -260,7 +325,12 @@ public class ComposeCapsuleScreen extends VBox {
             "-fx-background-radius: 8; " +
             "-fx-padding: 12 30;"
         );
-        cancelBtn.setOnAction(e -> onComplete.accept(false));
+        cancelBtn.setOnAction(e -> {
+            if (pendingEncryption != null) {
+                pendingEncryption.cancel(true);
+            }
+            onComplete.accept(false);
+        });
         
         sendButton = new Button("🚀 Seal & Send Capsule");
         sendButton.setStyle(
@@ -404,52 +474,89 @@ public class ComposeCapsuleScreen extends VBox {
         LocalDateTime unlockDateTime = LocalDateTime.of(date, time);
         long unlockTimeEpoch = unlockDateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
         
-        if (unlockTimeEpoch <= System.currentTimeMillis()) {
+        if (unlockTimeEpoch <= apiClient.getServerClock().millis()) {
             setStatus("Unlock time must be in the future");
             return;
         }
         
         sendButton.setDisable(true);
-        setStatus("Encrypting...");
         
-        try {
-            String headline = headlineField.getText();
-            String associatedData = apiClient.getCurrentUserEmail() + "|" + unlockTimeEpoch;
-            
-            CryptoUtils.EncryptionResult encrypted = CryptoUtils.encrypt(
-                message.trim(), passphrase, associatedData);
-            
-            List<CapsuleRecipient> recipients = new ArrayList<>();
-            for (RecipientEntry entry : recipientsListView.getItems()) {
-                CapsuleRecipient r = new CapsuleRecipient();
-                r.setRecipientEmail(entry.email);
-                r.setRecipientUserId(entry.userId);
-                recipients.add(r);
+        String headline = headlineField.getText();
+        String associatedData = apiClient.getCurrentUserEmail() + "|" + unlockTimeEpoch;
+        
+        List<CapsuleRecipient> recipients = new ArrayList<>();
+        for (RecipientEntry entry : recipientsListView.getItems()) {
+            CapsuleRecipient r = new CapsuleRecipient();
+            r.setRecipientEmail(entry.email);
+            r.setRecipientUserId(entry.userId);
+            recipients.add(r);
+        }
+        
+        boolean surpriseMode = surpriseToggle.isSelected();
+        
+        pendingEncryption = CryptoService.getDefault().encryptAsync(
+            message.trim(), passphrase, associatedData, stage -> setStatus(stage.getLabel()));
+        
+        pendingEncryption.whenComplete((encrypted, error) -> Platform.runLater(() -> {
+            pendingEncryption = null;
+            if (error != null) {
+                sendButton.setDisable(false);
+                if (!(error instanceof CancellationException)) {
+                    setStatus("Encryption failed: " + error.getMessage());
+                }
+                return;
             }
             
-            boolean surpriseMode = surpriseToggle.isSelected();
-            
-            setStatus("Sending to server...");
-            
-            apiClient.createCapsule(
-                headline, unlockTimeEpoch,
-                encrypted.ciphertextBase64, encrypted.ivBase64, encrypted.saltBase64,
-                recipients, surpriseMode
-            ).thenAccept(response -> Platform.runLater(() -> {
+            uploadAttachments(passphrase, associatedData).thenCompose(manifest -> {
+                setStatus("Sending to server...");
+                return apiClient.createCapsule(
+                    headline, unlockTimeEpoch,
+                    encrypted.ciphertextBase64, encrypted.ivBase64, encrypted.saltBase64,
+                    recipients, surpriseMode, manifest
+                );
+            }).whenComplete((response, uploadError) -> Platform.runLater(() -> {
                 sendButton.setDisable(false);
                 
-                if (response.isOk()) {
+                if (uploadError != null) {
+                    Throwable cause = uploadError.getCause() != null ? uploadError.getCause() : uploadError;
+                    setStatus("Attachment upload failed: " + cause.getMessage() + " (send again to resume)");
+                } else if (response.isOk()) {
                     showSuccessDialog(headline, recipients.size());
                     onComplete.accept(true);
                 } else {
                     setStatus("Failed: " + response.getError());
                 }
             }));
-            
-        } catch (Exception e) {
-            sendButton.setDisable(false);
-            setStatus("Encryption failed: " + e.getMessage());
+        }));
+    }
+    
+    private CompletableFuture<String> uploadAttachments(String passphrase, String associatedData) {
+        List<Path> files = new ArrayList<>(attachmentsListView.getItems());
+        if (files.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        // Keep the cipher across retries so already-uploaded chunks keep their ids and are skipped.
+        // It lives only as long as this screen; after a restart the upload starts from scratch.
+        CompletableFuture<AttachmentCipher> cipher = attachmentCipher != null
+            ? CompletableFuture.completedFuture(attachmentCipher)
+            : CryptoService.getDefault().submit(() -> AttachmentCipher.create(passphrase));
+        
+        return cipher.thenCompose(c -> {
+            attachmentCipher = c;
+            return new AttachmentTransfer(apiClient, c).uploadAllAsync(files, associatedData,
+                (fileName, done, total) -> setStatus("Uploading " + fileName + " (" + formatSize(done)
+                    + " of " + formatSize(total) + ")"));
+        });
+    }
+    
+    private static String formatSize(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return (bytes / 1024) + " KB";
         }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
     }
     
     private void showSuccessDialog(String headline, int recipientCount) {
@@ -0,0 +1,132 @@
+package timecapsule.ui;
+
+import timecapsule.model.User;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prefix trie over every user the screen has seen this session, from friend
+ * lists and earlier search results. Each user is reachable from their email,
+ * their full display name and each word of either, so typing "ali" finds
+ * "Alice Smith", "Smith, Alice" and "alice@example.com" without a round trip.
+ */
+class ContactTrie {
+
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>();
+        final Set<String> userIds = new HashSet<>();
+    }
+
+    private final Node root = new Node();
+    private final Map<String, User> users = new HashMap<>();
+    private final Map<String, List<String>> keysByUser = new HashMap<>();
+    private final Set<String> friendIds = new HashSet<>();
+
+    /** Adds or refreshes one user; a friend stays a friend once marked. */
+    void add(User user, boolean friend) {
+        if (user == null || user.getUserId() == null) {
+            return;
+        }
+        String userId = user.getUserId();
+        if (friend) {
+            friendIds.add(userId);
+        }
+        List<String> keys = keysOf(user);
+        List<String> previous = keysByUser.put(userId, keys);
+        if (previous != null) {
+            for (String key : previous) {
+                Node node = find(key);
+                if (node != null) {
+                    node.userIds.remove(userId);
+                }
+            }
+        }
+        users.put(userId, user);
+        for (String key : keys) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+            }
+            node.userIds.add(userId);
+        }
+    }
+
+    boolean isFriend(String userId) {
+        return friendIds.contains(userId);
+    }
+
+    /**
+     * Users with a key starting with {@code prefix}, friends first, then by
+     * name. Returns at most {@code limit} users.
+     */
+    List<User> lookup(String prefix, int limit) {
+        String normalized = prefix.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        Node start = find(normalized);
+        if (start == null) {
+            return List.of();
+        }
+
+        Set<String> found = new LinkedHashSet<>();
+        List<Node> stack = new ArrayList<>();
+        stack.add(start);
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            found.addAll(node.userIds);
+            stack.addAll(node.children.values());
+        }
+
+        List<User> matches = new ArrayList<>(found.size());
+        for (String userId : found) {
+            matches.add(users.get(userId));
+        }
+        matches.sort((a, b) -> {
+            boolean af = friendIds.contains(a.getUserId());
+            boolean bf = friendIds.contains(b.getUserId());
+            if (af != bf) {
+                return af ? -1 : 1;
+            }
+            return a.toString().compareToIgnoreCase(b.toString());
+        });
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        return node;
+    }
+
+    private static List<String> keysOf(User user) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String field : new String[]{user.getEmail(), user.getDisplayName()}) {
+            if (field == null || field.isBlank()) {
+                continue;
+            }
+            String lower = field.trim().toLowerCase(Locale.ROOT);
+            keys.add(lower);
+            int start = -1;
+            for (int i = 0; i <= lower.length(); i++) {
+                boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+                if (wordChar && start < 0) {
+                    start = i;
+                } else if (!wordChar && start >= 0) {
+                    keys.add(lower.substring(start, i));
+                    start = -1;
+                }
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+}
@@ -0,0 +1,166 @@
+package timecapsule.ui;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.util.Duration;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Drives every live "time remaining" label from one Timeline. Watchers are
+ * kept in a min-heap ordered by the next instant their displayed text
+ * changes, and the timeline is armed for the head of the heap only, so a tick
+ * touches just the cells whose minute (or hour, for capsules more than a day
+ * away) has rolled over, and a capsule flips to ready exactly at unlock.
+ *
+ * Cells register while they are bound to a locked capsule and cancel when
+ * they are recycled, which keeps the work per tick proportional to the
+ * visible rows. Time comes from a pluggable clock so countdowns can follow
+ * the server rather than the local machine. All methods must be called on
+ * the FX thread.
+ */
+class CountdownScheduler {
+
+    interface Countdown {
+        /** Re-renders the countdown; called on the FX thread. */
+        void refresh(long now);
+    }
+
+    static final class Registration {
+        private final Countdown target;
+        private final long unlockAtUtc;
+        private long due;
+        private boolean cancelled;
+
+        private Registration(Countdown target, long unlockAtUtc, long due) {
+            this.target = target;
+            this.unlockAtUtc = unlockAtUtc;
+            this.due = due;
+        }
+    }
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private static final long MAX_SLEEP = MINUTE;
+
+    private static CountdownScheduler instance;
+
+    private final PriorityQueue<Registration> heap =
+        new PriorityQueue<>(Comparator.comparingLong(r -> r.due));
+    private final Timeline timeline = new Timeline();
+    private LongSupplier clock = System::currentTimeMillis;
+    private long armedFor = Long.MAX_VALUE;
+    private int cancelled;
+
+    static CountdownScheduler getDefault() {
+        if (instance == null) {
+            instance = new CountdownScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * Calls {@code target.refresh} whenever the countdown to {@code unlockAtUtc}
+     * changes, up to and including the unlock itself. Returns null when the
+     * capsule has already unlocked.
+     */
+    Registration watch(long unlockAtUtc, Countdown target) {
+        long now = now();
+        if (now >= unlockAtUtc) {
+            return null;
+        }
+        Registration registration = new Registration(target, unlockAtUtc, nextChange(unlockAtUtc, now));
+        heap.add(registration);
+        arm(now);
+        return registration;
+    }
+
+    void cancel(Registration registration) {
+        if (registration == null || registration.cancelled) {
+            return;
+        }
+        registration.cancelled = true;
+        if (++cancelled > 64 && cancelled > heap.size() / 2) {
+            heap.removeIf(r -> r.cancelled);
+            cancelled = 0;
+        }
+    }
+
+    /** Sets the source of "now", e.g. a server-corrected clock. */
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    long now() {
+        return clock.getAsLong();
+    }
+
+    void clear() {
+        heap.forEach(r -> r.cancelled = true);
+        heap.clear();
+        cancelled = 0;
+        timeline.stop();
+        armedFor = Long.MAX_VALUE;
+    }
+
+    int size() {
+        return heap.size() - cancelled;
+    }
+
+    private void tick() {
+        armedFor = Long.MAX_VALUE;
+        long now = now();
+        while (!heap.isEmpty() && heap.peek().due <= now) {
+            Registration registration = heap.poll();
+            if (registration.cancelled) {
+                cancelled--;
+                continue;
+            }
+            registration.target.refresh(now);
+            if (registration.cancelled) {
+                cancelled--;
+            } else if (now < registration.unlockAtUtc) {
+                registration.due = nextChange(registration.unlockAtUtc, now);
+                heap.add(registration);
+            } else {
+                registration.cancelled = true;
+            }
+        }
+        arm(now);
+    }
+
+    private void arm(long now) {
+        if (heap.isEmpty()) {
+            timeline.stop();
+            return;
+        }
+        // Wall-clock time is re-read on every tick, and the timeline never
+        // sleeps longer than a minute, so suspend or clock changes self-correct.
+        long target = Math.min(heap.peek().due, now + MAX_SLEEP);
+        if (target >= armedFor) {
+            return;
+        }
+        armedFor = target;
+        timeline.stop();
+        timeline.getKeyFrames().setAll(new KeyFrame(Duration.millis(Math.max(1, target - now)), e -> tick()));
+        timeline.playFromStart();
+    }
+
+    /**
+     * First instant after {@code now} at which {@link timecapsule.model.CapsuleHeader#getTimeRemaining}
+     * renders differently: the next hour boundary while more than a day remains,
+     * the next minute boundary after that, and the unlock itself at the end.
+     */
+    static long nextChange(long unlockAtUtc, long now) {
+        long diff = unlockAtUtc - now;
+        if (diff <= 0) {
+            return now;
+        }
+        long unit = diff >= DAY ? HOUR : MINUTE;
+        long boundary = diff / unit * unit;
+        return boundary == 0 ? unlockAtUtc : unlockAtUtc - boundary + 1;
+    }
+}
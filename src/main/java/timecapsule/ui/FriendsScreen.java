@@ -1,5 +1,7 @@
 package timecapsule.ui;
 
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -8,14 +10,32 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.util.Duration;
 import timecapsule.api.ApiClient;
 import timecapsule.model.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class FriendsScreen extends VBox {
     
+    private static final Duration SEARCH_DEBOUNCE = Duration.millis(250);
+    private static final int MIN_SERVER_QUERY = 2;
+    private static final int SERVER_RESULT_LIMIT = 20;
+    private static final long COMPLETE_RESULT_TTL_MILLIS = 2 * 60 * 1000L;
+    
     private final ApiClient apiClient;
+    private final ContactTrie contacts = new ContactTrie();
+    private final Map<String, CompleteResult> completeResults = new HashMap<>();
+    private final PauseTransition searchDebounce = new PauseTransition(SEARCH_DEBOUNCE);
+    private final ListView<User> searchResultsView;
+    private CompletableFuture<ApiResponse> pendingSearch;
+    private String activeQuery = "";
     private final TabPane tabPane;
     private final ListView<Friend> friendsListView;
     private final ListView<Friend> requestsListView;
@@ -35,6 +55,12 @@ public class FriendsScreen extends VBox {
         
         HBox searchBox = createSearchSection();
         
+        searchResultsView = new ListView<>();
+        searchResultsView.setStyle("-fx-background-color: #2C2C2E; -fx-control-inner-background: #2C2C2E;");
+        searchResultsView.setCellFactory(lv -> new UserResultCell());
+        searchResultsView.setPrefHeight(180);
+        CellTheme.show(searchResultsView, false);
+        
         tabPane = new TabPane();
         tabPane.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
         tabPane.setStyle("-fx-background-color: #2C2C2E;");
@@ -67,8 +93,11 @@ public class FriendsScreen extends VBox {
         statusLabel = new Label();
         statusLabel.setTextFill(Color.web("#8E8E93"));
         
-        getChildren().addAll(headerLabel, searchBox, tabPane, statusLabel);
+        getChildren().addAll(headerLabel, searchBox, searchResultsView, tabPane, statusLabel);
         
+        friendsListView.getItems().addAll(apiClient.getCachedFriends());
+        rememberFriends(friendsListView.getItems());
+        invitesListView.getItems().addAll(apiClient.getCachedInvites());
         refreshAll();
     }
     
@@ -86,15 +115,21 @@ public class FriendsScreen extends VBox {
             "-fx-background-radius: 8;"
         );
         HBox.setHgrow(searchField, Priority.ALWAYS);
+        searchField.textProperty().addListener((obs, old, text) -> onQueryChanged(text));
+        searchField.setOnAction(e -> searchNow());
         
         Button searchBtn = createStyledButton("🔍 Search", "#5856D6");
-        searchBtn.setOnAction(e -> searchUsers(searchField.getText()));
+        searchBtn.setOnAction(e -> searchNow());
         
         Button inviteBtn = createStyledButton("✉️ Invite by Email", "#667eea");
         inviteBtn.setOnAction(e -> showInviteDialog());
         
         Button refreshBtn = createStyledButton("🔄 Refresh", "#34C759");
-        refreshBtn.setOnAction(e -> refreshAll());
+        refreshBtn.setOnAction(e -> {
+            apiClient.invalidateCache("friendsList", "friendRequests", "invitesList");
+            completeResults.clear();
+            refreshAll();
+        });
         
         box.getChildren().addAll(searchField, searchBtn, inviteBtn, refreshBtn);
         return box;
@@ -119,60 +154,135 @@ public class FriendsScreen extends VBox {
         return hex;
     }
     
-    private void searchUsers(String query) {
-        if (query == null || query.trim().isEmpty()) {
+    /**
+     * Shows matching known contacts as soon as the query changes, then asks
+     * the server once typing pauses. A newer query withdraws the older request
+     * while it is still queued; once sent, its answer is ignored.
+     */
+    private void onQueryChanged(String text) {
+        activeQuery = text == null ? "" : text.trim();
+        cancelPendingSearch();
+        searchDebounce.stop();
+        
+        if (activeQuery.isEmpty()) {
+            searchResultsView.getItems().clear();
+            CellTheme.show(searchResultsView, false);
+            setStatus("");
+            return;
+        }
+        
+        if (activeQuery.length() >= MIN_SERVER_QUERY) {
+            String query = activeQuery;
+            searchDebounce.setOnFinished(e -> searchUsers(query));
+            searchDebounce.playFromStart();
+        }
+        showResults(activeQuery, List.of());
+    }
+    
+    private void searchNow() {
+        searchDebounce.stop();
+        if (activeQuery.isEmpty()) {
             setStatus("Enter a search term");
             return;
         }
+        searchUsers(activeQuery);
+    }
+    
+    private void searchUsers(String query) {
+        cancelPendingSearch();
+        List<User> covered = coveredResults(query);
+        if (covered != null) {
+            showResults(query, covered);
+            return;
+        }
         
         setStatus("Searching...");
         
-        apiClient.searchUsers(query.trim())
-            .thenAccept(response -> Platform.runLater(() -> {
-                if (response.isOk() && response.getUsers() != null) {
-                    showSearchResults(response.getUsers());
-                } else {
-                    setStatus("Search failed: " + response.getError());
+        CompletableFuture<ApiResponse> request = apiClient.searchUsers(query);
+        pendingSearch = request;
+        request.thenAccept(response -> Platform.runLater(() -> {
+            if (pendingSearch != request) {
+                return;
+            }
+            pendingSearch = null;
+            if (response.isOk() && response.getUsers() != null) {
+                List<User> users = response.getUsers();
+                for (User user : users) {
+                    contacts.add(user, false);
                 }
-            }));
+                if (users.size() < SERVER_RESULT_LIMIT) {
+                    completeResults.put(query.toLowerCase(Locale.ROOT),
+                        new CompleteResult(users, System.currentTimeMillis() + COMPLETE_RESULT_TTL_MILLIS));
+                }
+                showResults(query, users);
+            } else {
+                setStatus("Search failed: " + response.getError());
+            }
+        }));
     }
     
-    private void showSearchResults(List<User> users) {
-        if (users.isEmpty()) {
-            setStatus("No users found. Try inviting by email!");
-            return;
+    private void cancelPendingSearch() {
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+            pendingSearch = null;
         }
-        
-        Dialog<User> dialog = new Dialog<>();
-        dialog.setTitle("Search Results");
-        dialog.setHeaderText("Select a user to add as friend:");
-        
-        ListView<User> resultsList = new ListView<>();
-        resultsList.getItems().addAll(users);
-        resultsList.setCellFactory(lv -> new ListCell<>() {
-            @Override
-            protected void updateItem(User user, boolean empty) {
-                super.updateItem(user, empty);
-                if (empty || user == null) {
-                    setText(null);
-                } else {
-                    setText(user.getDisplayName() + " (" + user.getEmail() + ")");
-                }
+    }
+    
+    /**
+     * The backend matches substrings and caps its answer, so an uncapped
+     * answer for "ali" already holds every match for "alic"; those are
+     * filtered here instead of asking again.
+     */
+    private List<User> coveredResults(String query) {
+        String lower = query.toLowerCase(Locale.ROOT);
+        long now = System.currentTimeMillis();
+        completeResults.values().removeIf(result -> result.expiresAt <= now);
+        for (Map.Entry<String, CompleteResult> entry : completeResults.entrySet()) {
+            if (!lower.contains(entry.getKey())) {
+                continue;
             }
-        });
-        resultsList.setPrefHeight(200);
-        
-        dialog.getDialogPane().setContent(resultsList);
-        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
-        
-        dialog.setResultConverter(btn -> {
-            if (btn == ButtonType.OK) {
-                return resultsList.getSelectionModel().getSelectedItem();
+            List<User> matches = new ArrayList<>();
+            for (User user : entry.getValue().users) {
+                if (contains(user.getEmail(), lower) || contains(user.getDisplayName(), lower)) {
+                    matches.add(user);
+                }
             }
-            return null;
-        });
+            return matches;
+        }
+        return null;
+    }
+    
+    private static boolean contains(String field, String lower) {
+        return field != null && field.toLowerCase(Locale.ROOT).contains(lower);
+    }
+    
+    private void showResults(String query, List<User> serverUsers) {
+        if (!query.equals(activeQuery)) {
+            return;
+        }
+        Map<String, User> merged = new LinkedHashMap<>();
+        for (User user : contacts.lookup(query, SERVER_RESULT_LIMIT)) {
+            merged.put(user.getUserId(), user);
+        }
+        for (User user : serverUsers) {
+            merged.putIfAbsent(user.getUserId(), user);
+        }
         
-        dialog.showAndWait().ifPresent(user -> sendFriendRequest(user.getUserId()));
+        searchResultsView.getItems().setAll(merged.values());
+        CellTheme.show(searchResultsView, !merged.isEmpty());
+        if (pendingSearch != null || searchDebounce.getStatus() == Animation.Status.RUNNING) {
+            setStatus(merged.isEmpty() ? "Searching..." : merged.size() + " known contact(s), searching...");
+        } else {
+            setStatus(merged.isEmpty() ? "No users found. Try inviting by email!" : merged.size() + " user(s) found");
+        }
+    }
+    
+    private void rememberFriends(List<Friend> friends) {
+        String currentUserId = apiClient.getCurrentUserId();
+        for (Friend friend : friends) {
+            contacts.add(new User(friend.getFriendUserId(currentUserId), friend.getFriendEmail(),
+                friend.getFriendDisplayName(), 0), true);
+        }
     }
     
     private void sendFriendRequest(String addresseeUserId) {
@@ -251,12 +361,18 @@ public class FriendsScreen extends VBox {
     }
     
     private void refreshFriends() {
-        apiClient.listFriends()
-            .thenAccept(response -> Platform.runLater(() -> {
-                if (response.isOk() && response.getFriends() != null) {
-                    friendsListView.getItems().clear();
-                    friendsListView.getItems().addAll(response.getFriends());
+        apiClient.syncFriends()
+            .thenAccept(changes -> Platform.runLater(() -> {
+                if (!changes.isOk()) {
+                    return;
                 }
+                List<Friend> items = friendsListView.getItems();
+                if (items.isEmpty()) {
+                    items.addAll(changes.getSnapshot());
+                } else {
+                    changes.applyTo(items, Friend::getRelationshipKey);
+                }
+                rememberFriends(items);
             }));
     }
     
@@ -274,11 +390,16 @@ public class FriendsScreen extends VBox {
     }
     
     private void refreshInvites() {
-        apiClient.listSentInvites()
-            .thenAccept(response -> Platform.runLater(() -> {
-                if (response.isOk() && response.getInvites() != null) {
-                    invitesListView.getItems().clear();
-                    invitesListView.getItems().addAll(response.getInvites());
+        apiClient.syncInvites()
+            .thenAccept(changes -> Platform.runLater(() -> {
+                if (!changes.isOk()) {
+                    return;
+                }
+                List<Invite> items = invitesListView.getItems();
+                if (items.isEmpty()) {
+                    items.addAll(changes.getSnapshot());
+                } else {
+                    changes.applyTo(items, Invite::getInviteId);
                 }
             }));
     }
@@ -287,44 +408,157 @@ public class FriendsScreen extends VBox {
         Platform.runLater(() -> statusLabel.setText(message));
     }
     
-    private class FriendCell extends ListCell<Friend> {
+    private static class CompleteResult {
+        final List<User> users;
+        final long expiresAt;
+        
+        CompleteResult(List<User> users, long expiresAt) {
+            this.users = users;
+            this.expiresAt = expiresAt;
+        }
+    }
+    
+    private class UserResultCell extends ListCell<User> {
+        private final HBox row = new HBox(15);
+        private final Label nameLabel = new Label();
+        private final Label emailLabel = new Label();
+        private final Button addBtn = CellTheme.button("➕ Add Friend", "#5856D6");
+        private final Label friendLabel = new Label("✓ Friend");
+        
+        UserResultCell() {
+            row.setAlignment(Pos.CENTER_LEFT);
+            row.setPadding(CellTheme.COMPACT_ROW_PADDING);
+            row.setStyle(CellTheme.COMPACT_ROW_STYLE);
+            
+            nameLabel.setFont(CellTheme.NAME_FONT);
+            nameLabel.setTextFill(CellTheme.TEXT);
+            emailLabel.setTextFill(CellTheme.MUTED);
+            friendLabel.setTextFill(CellTheme.SUCCESS);
+            
+            VBox info = new VBox(3, nameLabel, emailLabel);
+            HBox.setHgrow(info, Priority.ALWAYS);
+            
+            addBtn.setOnAction(e -> {
+                User user = getItem();
+                if (user != null) {
+                    sendFriendRequest(user.getUserId());
+                }
+            });
+            
+            row.getChildren().addAll(info, addBtn, friendLabel);
+            setStyle(CellTheme.CELL_STYLE);
+        }
+        
         @Override
-        protected void updateItem(Friend friend, boolean empty) {
-            super.updateItem(friend, empty);
+        protected void updateItem(User user, boolean empty) {
+            super.updateItem(user, empty);
             
-            if (empty || friend == null) {
+            if (empty || user == null) {
                 setGraphic(null);
                 return;
             }
             
-            HBox row = new HBox(15);
+            boolean friend = contacts.isFriend(user.getUserId());
+            nameLabel.setText(user.toString());
+            emailLabel.setText(user.getEmail());
+            CellTheme.show(addBtn, !friend);
+            CellTheme.show(friendLabel, friend);
+            setGraphic(row);
+        }
+    }
+    
+    private class FriendCell extends ListCell<Friend> {
+        private final HBox row = new HBox(15);
+        private final Label nameLabel = new Label();
+        private final Label emailLabel = new Label();
+        
+        FriendCell() {
             row.setAlignment(Pos.CENTER_LEFT);
-            row.setPadding(new Insets(10));
-            row.setStyle("-fx-background-color: #3A3A3C; -fx-background-radius: 8;");
-            
-            VBox info = new VBox(3);
-            Label nameLabel = new Label(friend.getFriendDisplayName() != null ? 
-                friend.getFriendDisplayName() : friend.getFriendEmail());
-            nameLabel.setFont(Font.font("SF Pro Display", FontWeight.BOLD, 14));
-            nameLabel.setTextFill(Color.WHITE);
+            row.setPadding(CellTheme.COMPACT_ROW_PADDING);
+            row.setStyle(CellTheme.COMPACT_ROW_STYLE);
             
-            Label emailLabel = new Label(friend.getFriendEmail());
-            emailLabel.setTextFill(Color.web("#8E8E93"));
+            nameLabel.setFont(CellTheme.NAME_FONT);
+            nameLabel.setTextFill(CellTheme.TEXT);
+            emailLabel.setTextFill(CellTheme.MUTED);
             
-            info.getChildren().addAll(nameLabel, emailLabel);
+            VBox info = new VBox(3, nameLabel, emailLabel);
             HBox.setHgrow(info, Priority.ALWAYS);
             
-            Button sendCapsuleBtn = createStyledButton("📨 Send Capsule", "#667eea");
+            Button sendCapsuleBtn = CellTheme.button("📨 Send Capsule", "#667eea");
             sendCapsuleBtn.setOnAction(e -> {
             });
             
             row.getChildren().addAll(info, sendCapsuleBtn);
+            setStyle(CellTheme.CELL_STYLE);
+        }
+        
+        @Override
+        protected void updateItem(Friend friend, boolean empty) {
+            super.updateItem(friend, empty);
+            
+            if (empty || friend == null) {
+                setGraphic(null);
+                return;
+            }
+            
+            nameLabel.setText(friend.getFriendDisplayName() != null ? 
+                friend.getFriendDisplayName() : friend.getFriendEmail());
+            emailLabel.setText(friend.getFriendEmail());
             setGraphic(row);
-            setStyle("-fx-background-color: transparent;");
         }
     }
     
     private class RequestCell extends ListCell<Friend> {
+        private final HBox row = new HBox(15);
+        private final Label nameLabel = new Label();
+        private final Label typeLabel = new Label();
+        private final Button acceptBtn = CellTheme.button("✓ Accept", "#34C759");
+        private final Button declineBtn = CellTheme.button("✗ Decline", "#FF3B30");
+        private final Label pendingLabel = new Label("Pending...");
+        
+        RequestCell() {
+            row.setAlignment(Pos.CENTER_LEFT);
+            row.setPadding(CellTheme.COMPACT_ROW_PADDING);
+            row.setStyle(CellTheme.COMPACT_ROW_STYLE);
+            
+            nameLabel.setFont(CellTheme.NAME_FONT);
+            nameLabel.setTextFill(CellTheme.TEXT);
+            pendingLabel.setTextFill(CellTheme.MUTED);
+            
+            VBox info = new VBox(3, nameLabel, typeLabel);
+            HBox.setHgrow(info, Priority.ALWAYS);
+            
+            acceptBtn.setOnAction(e -> {
+                Friend request = getItem();
+                if (request == null) {
+                    return;
+                }
+                apiClient.acceptFriendRequest(request.getRequesterUserId())
+                    .thenAccept(response -> Platform.runLater(() -> {
+                        if (response.isOk()) {
+                            setStatus("Friend added!");
+                            refreshAll();
+                        } else {
+                            setStatus("Failed: " + response.getError());
+                        }
+                    }));
+            });
+            
+            declineBtn.setOnAction(e -> {
+                Friend request = getItem();
+                if (request == null) {
+                    return;
+                }
+                apiClient.declineFriendRequest(request.getRequesterUserId())
+                    .thenAccept(response -> Platform.runLater(() -> refreshRequests()));
+            });
+            
+            HBox buttons = new HBox(8, acceptBtn, declineBtn, pendingLabel);
+            
+            row.getChildren().addAll(info, buttons);
+            setStyle(CellTheme.CELL_STYLE);
+        }
+        
         @Override
         protected void updateItem(Friend request, boolean empty) {
             super.updateItem(request, empty);
@@ -334,61 +568,58 @@ public class FriendsScreen extends VBox {
                 return;
             }
             
-            HBox row = new HBox(15);
-            row.setAlignment(Pos.CENTER_LEFT);
-            row.setPadding(new Insets(10));
-            row.setStyle("-fx-background-color: #3A3A3C; -fx-background-radius: 8;");
-            
             boolean isIncoming = !request.isRequester(apiClient.getCurrentUserId());
             
-            VBox info = new VBox(3);
-            Label nameLabel = new Label(request.getFriendDisplayName() != null ? 
+            nameLabel.setText(request.getFriendDisplayName() != null ? 
                 request.getFriendDisplayName() : request.getFriendEmail());
-            nameLabel.setFont(Font.font("SF Pro Display", FontWeight.BOLD, 14));
-            nameLabel.setTextFill(Color.WHITE);
+            typeLabel.setText(isIncoming ? "Incoming request" : "Outgoing request");
+            typeLabel.setTextFill(isIncoming ? CellTheme.WARNING : CellTheme.MUTED);
             
-            Label typeLabel = new Label(isIncoming ? "Incoming request" : "Outgoing request");
-            typeLabel.setTextFill(Color.web(isIncoming ? "#FF9500" : "#8E8E93"));
+            CellTheme.show(acceptBtn, isIncoming);
+            CellTheme.show(declineBtn, isIncoming);
+            CellTheme.show(pendingLabel, !isIncoming);
+            setGraphic(row);
+        }
+    }
+    
+    private class InviteCell extends ListCell<Invite> {
+        private final HBox row = new HBox(15);
+        private final Label emailLabel = new Label();
+        private final Label inviteStatusLabel = new Label();
+        private final Button resendBtn = CellTheme.button("🔄 Resend", "#5856D6");
+        
+        InviteCell() {
+            row.setAlignment(Pos.CENTER_LEFT);
+            row.setPadding(CellTheme.COMPACT_ROW_PADDING);
+            row.setStyle(CellTheme.COMPACT_ROW_STYLE);
             
-            info.getChildren().addAll(nameLabel, typeLabel);
+            emailLabel.setFont(CellTheme.NAME_FONT);
+            emailLabel.setTextFill(CellTheme.TEXT);
+            
+            VBox info = new VBox(3, emailLabel, inviteStatusLabel);
             HBox.setHgrow(info, Priority.ALWAYS);
             
-            HBox buttons = new HBox(8);
+            resendBtn.setOnAction(e -> {
+                Invite invite = getItem();
+                if (invite == null) {
+                    return;
+                }
+                apiClient.resendInvite(invite.getInviteId())
+                    .thenAccept(response -> Platform.runLater(() -> {
+                        if (response.isOk()) {
+                            setStatus("Invite resent!");
+                        } else {
+                            setStatus("Failed: " + response.getError());
+                        }
+                    }));
+            });
             
-            if (isIncoming) {
-                Button acceptBtn = createStyledButton("✓ Accept", "#34C759");
-                acceptBtn.setOnAction(e -> {
-                    apiClient.acceptFriendRequest(request.getRequesterUserId())
-                        .thenAccept(response -> Platform.runLater(() -> {
-                            if (response.isOk()) {
-                                setStatus("Friend added!");
-                                refreshAll();
-                            } else {
-                                setStatus("Failed: " + response.getError());
-                            }
-                        }));
-                });
-                
-                Button declineBtn = createStyledButton("✗ Decline", "#FF3B30");
-                declineBtn.setOnAction(e -> {
-                    apiClient.declineFriendRequest(request.getRequesterUserId())
-                        .thenAccept(response -> Platform.runLater(() -> refreshRequests()));
-                });
-                
-                buttons.getChildren().addAll(acceptBtn, declineBtn);
-            } else {
-                Label pendingLabel = new Label("Pending...");
-                pendingLabel.setTextFill(Color.web("#8E8E93"));
-                buttons.getChildren().add(pendingLabel);
-            }
+            HBox buttons = new HBox(8, resendBtn);
             
             row.getChildren().addAll(info, buttons);
-            setGraphic(row);
-            setStyle("-fx-background-color: transparent;");
+            setStyle(CellTheme.CELL_STYLE);
         }
-    }
-    
-    private class InviteCell extends ListCell<Invite> {
+        
         @Override
         protected void updateItem(Invite invite, boolean empty) {
             super.updateItem(invite, empty);
@@ -398,59 +629,25 @@ public class FriendsScreen extends VBox {
                 return;
             }
             
-            HBox row = new HBox(15);
-            row.setAlignment(Pos.CENTER_LEFT);
-            row.setPadding(new Insets(10));
-            row.setStyle("-fx-background-color: #3A3A3C; -fx-background-radius: 8;");
+            emailLabel.setText(invite.getInviteeEmail());
             
-            VBox info = new VBox(3);
-            Label emailLabel = new Label(invite.getInviteeEmail());
-            emailLabel.setFont(Font.font("SF Pro Display", FontWeight.BOLD, 14));
-            emailLabel.setTextFill(Color.WHITE);
-            
-            String statusText;
-            Color statusColor;
             switch (invite.getStatus()) {
                 case ACCEPTED:
-                    statusText = "✓ Accepted";
-                    statusColor = Color.web("#34C759");
+                    inviteStatusLabel.setText("✓ Accepted");
+                    inviteStatusLabel.setTextFill(CellTheme.SUCCESS);
                     break;
                 case EXPIRED:
-                    statusText = "✗ Expired";
-                    statusColor = Color.web("#FF3B30");
+                    inviteStatusLabel.setText("✗ Expired");
+                    inviteStatusLabel.setTextFill(CellTheme.DANGER);
                     break;
                 default:
                     long daysLeft = (invite.getExpiresAtUtc() - System.currentTimeMillis()) / (24 * 60 * 60 * 1000);
-                    statusText = "Pending • Expires in " + Math.max(0, daysLeft) + " days";
-                    statusColor = Color.web("#FF9500");
-            }
-            
-            Label statusLabel = new Label(statusText);
-            statusLabel.setTextFill(statusColor);
-            
-            info.getChildren().addAll(emailLabel, statusLabel);
-            HBox.setHgrow(info, Priority.ALWAYS);
-            
-            HBox buttons = new HBox(8);
-            
-            if (invite.getStatus() == InviteStatus.SENT && invite.isValid()) {
-                Button resendBtn = createStyledButton("🔄 Resend", "#5856D6");
-                resendBtn.setOnAction(e -> {
-                    apiClient.resendInvite(invite.getInviteId())
-                        .thenAccept(response -> Platform.runLater(() -> {
-                            if (response.isOk()) {
-                                setStatus("Invite resent!");
-                            } else {
-                                setStatus("Failed: " + response.getError());
-                            }
-                        }));
-                });
-                buttons.getChildren().add(resendBtn);
+                    inviteStatusLabel.setText("Pending • Expires in " + Math.max(0, daysLeft) + " days");
+                    inviteStatusLabel.setTextFill(CellTheme.WARNING);
             }
             
-            row.getChildren().addAll(info, buttons);
+            CellTheme.show(resendBtn, invite.getStatus() == InviteStatus.SENT && invite.isValid());
             setGraphic(row);
-            setStyle("-fx-background-color: transparent;");
         }
     }
 }
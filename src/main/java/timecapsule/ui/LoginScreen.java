@@ -12,12 +12,12 @@ import timecapsule.api.ApiClient;
 import timecapsule.model.User;
 
 import java.security.MessageDigest;
-import java.util.function.Consumer;
+import java.util.function.BiConsumer;
 
 public class LoginScreen extends VBox {
     
     private final ApiClient apiClient;
-    private final Consumer<User> onLoginSuccess;
+    private final BiConsumer<User, String> onLoginSuccess;
     
     private TextField emailField;
     private TextField displayNameField;
@@ -30,7 +30,7 @@ public class LoginScreen extends VBox {
     
     private String inviteToken = null;
     
-    public LoginScreen(ApiClient apiClient, Consumer<User> onLoginSuccess) {
+    public LoginScreen(ApiClient apiClient, BiConsumer<User, String> onLoginSuccess) {
         this.apiClient = apiClient;
         this.onLoginSuccess = onLoginSuccess;
         
@@ -175,7 +175,7 @@ public class LoginScreen extends VBox {
                 if (response.isOk() && response.getUser() != null) {
                     User user = response.getUser();
                     apiClient.setCurrentUser(user.getUserId(), user.getEmail());
-                    onLoginSuccess.accept(user);
+                    onLoginSuccess.accept(user, password);
                 } else {
                     setStatus("Failed: " + (response.getError() != null ? response.getError() : "Unknown error"));
                 }
@@ -0,0 +1,107 @@
+package timecapsule.ui;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import timecapsule.model.CapsuleHeader;
+
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * Row for a capsule in the inbox. Like {@link SentCapsuleCell}, it builds its
+ * nodes once and only rebinds text, colours and button visibility.
+ */
+class ReceivedCapsuleCell extends ListCell<CapsuleHeader> {
+
+    private final HBox row = new HBox(15);
+    private final Label iconLabel = new Label();
+    private final Label headlineLabel = new Label();
+    private final Label senderLabel = new Label();
+    private final Label dateLabel = new Label();
+    private final Label statusLabel = new Label();
+    private final Button openBtn = CellTheme.button("🔓 Open", "#34C759");
+    private final Button readBtn = CellTheme.button("📖 Read Again", "#5856D6");
+    private CountdownScheduler.Registration countdown;
+
+    ReceivedCapsuleCell(Consumer<CapsuleHeader> onOpen) {
+        row.setAlignment(Pos.CENTER_LEFT);
+        row.setPadding(CellTheme.ROW_PADDING);
+        row.setStyle(CellTheme.ROW_STYLE);
+
+        iconLabel.setFont(CellTheme.ICON_FONT);
+        headlineLabel.setFont(CellTheme.TITLE_FONT);
+        headlineLabel.setTextFill(CellTheme.TEXT);
+        senderLabel.setTextFill(CellTheme.MUTED);
+        dateLabel.setTextFill(CellTheme.MUTED);
+        statusLabel.setFont(CellTheme.STATUS_FONT);
+
+        VBox info = new VBox(5, headlineLabel, senderLabel, dateLabel);
+        HBox.setHgrow(info, Priority.ALWAYS);
+
+        VBox actionBox = new VBox(5, statusLabel, openBtn, readBtn);
+        actionBox.setAlignment(Pos.CENTER_RIGHT);
+
+        openBtn.setOnAction(e -> {
+            if (getItem() != null) {
+                onOpen.accept(getItem());
+            }
+        });
+        readBtn.setOnAction(openBtn.getOnAction());
+
+        row.getChildren().addAll(iconLabel, info, actionBox);
+        setStyle(CellTheme.CELL_STYLE);
+    }
+
+    @Override
+    protected void updateItem(CapsuleHeader capsule, boolean empty) {
+        super.updateItem(capsule, empty);
+
+        CountdownScheduler.getDefault().cancel(countdown);
+        countdown = null;
+
+        if (empty || capsule == null) {
+            setGraphic(null);
+            return;
+        }
+
+        headlineLabel.setText(capsule.getHeadline() != null && !capsule.getHeadline().isEmpty()
+            ? capsule.getHeadline() : "(No title)");
+        senderLabel.setText("From: " + capsule.getSenderDisplay());
+        dateLabel.setText("Unlocks: "
+            + CellTheme.DATE_FORMAT.format(Instant.ofEpochMilli(capsule.getUnlockAtUtc())));
+
+        showStatus(capsule, CountdownScheduler.getDefault().now());
+        if (!ReceivedCapsuleIndex.isOpened(capsule)) {
+            countdown = CountdownScheduler.getDefault().watch(capsule.getUnlockAtUtc(),
+                now -> showStatus(getItem(), now));
+        }
+        setGraphic(row);
+    }
+
+    private void showStatus(CapsuleHeader capsule, long now) {
+        boolean isOpenable = now >= capsule.getUnlockAtUtc();
+        boolean isOpened = ReceivedCapsuleIndex.isOpened(capsule);
+
+        if (isOpened) {
+            iconLabel.setText("📖");
+            statusLabel.setText("Opened");
+            statusLabel.setTextFill(CellTheme.MUTED);
+        } else if (isOpenable) {
+            iconLabel.setText("🔓");
+            statusLabel.setText("✓ Ready!");
+            statusLabel.setTextFill(CellTheme.SUCCESS);
+        } else {
+            iconLabel.setText("🔒");
+            statusLabel.setText(capsule.getTimeRemaining(now));
+            statusLabel.setTextFill(CellTheme.WARNING);
+        }
+
+        CellTheme.show(openBtn, isOpenable && !isOpened);
+        CellTheme.show(readBtn, isOpened);
+    }
+}
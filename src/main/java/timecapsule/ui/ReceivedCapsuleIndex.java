@@ -0,0 +1,181 @@
+package timecapsule.ui;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
+import timecapsule.model.CapsuleHeader;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory index over the inbox. Sync results go into {@link #records()};
+ * the list view shows {@link #view()}, a FilteredList/SortedList chain that
+ * JavaFX updates incrementally as records are added, replaced or removed.
+ * Alongside it the index keeps the pending unlock times in sorted order and a
+ * per-sender count, so switching between states or senders only swaps a
+ * predicate, and a capsule moves from "Locked" to "Ready" at its unlock time
+ * without a rescan or a network call.
+ */
+class ReceivedCapsuleIndex {
+
+    enum State {
+        READY("Ready to Open"),
+        LOCKED("Locked"),
+        OPENED("Opened");
+
+        private final String label;
+
+        State(String label) {
+            this.label = label;
+        }
+
+        static State fromLabel(String label) {
+            for (State state : values()) {
+                if (state.label.equals(label)) {
+                    return state;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final Comparator<CapsuleHeader> NEWEST_UNLOCK_FIRST =
+        Comparator.comparingLong(CapsuleHeader::getUnlockAtUtc).reversed()
+            .thenComparing(CapsuleHeader::getCapsuleId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final ObservableList<CapsuleHeader> records = FXCollections.observableArrayList();
+    private final FilteredList<CapsuleHeader> filtered = new FilteredList<>(records);
+    private final SortedList<CapsuleHeader> view = new SortedList<>(filtered, NEWEST_UNLOCK_FIRST);
+
+    private final TreeMap<Long, Integer> pendingUnlocks = new TreeMap<>();
+    private final Map<String, Integer> senderCounts = new HashMap<>();
+    private final ObservableList<String> senders = FXCollections.observableArrayList();
+
+    private State state;
+    private String sender;
+    private CountdownScheduler.Registration unlockWatch;
+    private long watchedUnlock = -1;
+
+    ReceivedCapsuleIndex() {
+        records.addListener((ListChangeListener<CapsuleHeader>) change -> {
+            while (change.next()) {
+                change.getRemoved().forEach(this::unindex);
+                change.getAddedSubList().forEach(this::index);
+            }
+            watchNextUnlock();
+        });
+    }
+
+    /** Every received capsule, in server order; sync writes here. */
+    ObservableList<CapsuleHeader> records() {
+        return records;
+    }
+
+    /** The records matching the current filter, newest unlock first. */
+    ObservableList<CapsuleHeader> view() {
+        return view;
+    }
+
+    /** Distinct senders, sorted, for a sender picker. */
+    ObservableList<String> senders() {
+        return senders;
+    }
+
+    /** Restricts the view; a null state or sender matches everything. */
+    void filter(State state, String sender) {
+        this.state = state;
+        this.sender = sender;
+        applyPredicate();
+    }
+
+    boolean isFiltered() {
+        return state != null || sender != null;
+    }
+
+    static State stateOf(CapsuleHeader capsule, long now) {
+        if (isOpened(capsule)) {
+            return State.OPENED;
+        }
+        return now >= capsule.getUnlockAtUtc() ? State.READY : State.LOCKED;
+    }
+
+    static boolean isOpened(CapsuleHeader capsule) {
+        return capsule.getRecipients() != null && !capsule.getRecipients().isEmpty()
+            && capsule.getRecipients().get(0).isOpened();
+    }
+
+    static String senderOf(CapsuleHeader capsule) {
+        String display = capsule.getSenderDisplay();
+        return display != null ? display : "";
+    }
+
+    private void applyPredicate() {
+        State wantedState = state;
+        String wantedSender = sender;
+        if (wantedState == null && wantedSender == null) {
+            filtered.setPredicate(null);
+            return;
+        }
+        // Time only changes a capsule's state at its unlock, and the next
+        // unlock re-applies the predicate, so one "now" per pass is enough.
+        long now = CountdownScheduler.getDefault().now();
+        filtered.setPredicate(capsule ->
+            (wantedState == null || stateOf(capsule, now) == wantedState)
+                && (wantedSender == null || wantedSender.equals(senderOf(capsule))));
+    }
+
+    private void index(CapsuleHeader capsule) {
+        if (!isOpened(capsule)) {
+            pendingUnlocks.merge(capsule.getUnlockAtUtc(), 1, Integer::sum);
+        }
+        String key = senderOf(capsule);
+        if (senderCounts.merge(key, 1, Integer::sum) == 1) {
+            int at = Collections.binarySearch(senders, key);
+            senders.add(-at - 1, key);
+        }
+    }
+
+    private void unindex(CapsuleHeader capsule) {
+        if (!isOpened(capsule)) {
+            pendingUnlocks.computeIfPresent(capsule.getUnlockAtUtc(), (time, count) -> count > 1 ? count - 1 : null);
+        }
+        String key = senderOf(capsule);
+        if (senderCounts.computeIfPresent(key, (name, count) -> count > 1 ? count - 1 : null) == null) {
+            senders.remove(key);
+        }
+    }
+
+    private void watchNextUnlock() {
+        CountdownScheduler scheduler = CountdownScheduler.getDefault();
+        Long next = pendingUnlocks.higherKey(scheduler.now());
+        long deadline = next != null ? next : -1;
+        if (deadline == watchedUnlock) {
+            return;
+        }
+        scheduler.cancel(unlockWatch);
+        unlockWatch = null;
+        watchedUnlock = deadline;
+        if (next != null) {
+            unlockWatch = scheduler.watch(deadline, now -> {
+                if (now >= deadline) {
+                    Platform.runLater(this::onUnlock);
+                }
+            });
+        }
+    }
+
+    private void onUnlock() {
+        watchedUnlock = -1;
+        if (state == State.READY || state == State.LOCKED) {
+            applyPredicate();
+        }
+        watchNextUnlock();
+    }
+}
@@ -1,6 +1,8 @@
 package timecapsule.ui;
 
 import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
@@ -8,27 +10,35 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.stage.Modality;
 import timecapsule.api.ApiClient;
-import timecapsule.crypto.CryptoUtils;
+import timecapsule.api.ChangeSet;
+import timecapsule.crypto.BulkDecryptor;
+import timecapsule.crypto.CryptoService;
 import timecapsule.model.*;
+import timecapsule.store.SearchIndex;
 
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class ReceivedCapsulesScreen extends VBox {
     
     private final ApiClient apiClient;
-    private final ListView<Capsule> capsulesListView;
+    private final SearchIndex searchIndex;
+    private final ListView<CapsuleHeader> capsulesListView;
     private final Label statusLabel;
     private final ComboBox<String> filterCombo;
+    private final ComboBox<String> senderCombo;
+    private final ReceivedCapsuleIndex index = new ReceivedCapsuleIndex();
     
-    private static final DateTimeFormatter DATE_FORMAT = 
-        DateTimeFormatter.ofPattern("MMM dd, yyyy 'at' HH:mm").withZone(ZoneId.systemDefault());
+    private static final String ALL_SENDERS = "All senders";
     
-    public ReceivedCapsulesScreen(ApiClient apiClient) {
+    public ReceivedCapsulesScreen(ApiClient apiClient, SearchIndex searchIndex) {
         this.apiClient = apiClient;
+        this.searchIndex = searchIndex;
         
         setSpacing(20);
         setPadding(new Insets(20));
@@ -48,14 +58,27 @@ public class ReceivedCapsulesScreen extends VBox {
         filterCombo.setStyle("-fx-background-color: #3A3A3C;");
         filterCombo.setOnAction(e -> applyFilter());
         
-        Button refreshBtn = createStyledButton("🔄 Refresh", "#34C759");
-        refreshBtn.setOnAction(e -> refresh());
+        senderCombo = new ComboBox<>();
+        senderCombo.getItems().add(ALL_SENDERS);
+        senderCombo.setValue(ALL_SENDERS);
+        senderCombo.setStyle("-fx-background-color: #3A3A3C;");
+        senderCombo.setOnAction(e -> applyFilter());
+        index.senders().addListener((ListChangeListener<String>) change -> updateSenderChoices());
         
-        headerRow.getChildren().addAll(headerLabel, filterCombo, refreshBtn);
+        Button refreshBtn = CellTheme.button("🔄 Refresh", "#34C759");
+        refreshBtn.setOnAction(e -> {
+            apiClient.invalidateCache("listReceived");
+            refresh();
+        });
+        
+        Button openAllBtn = CellTheme.button("🔓 Open All Ready", "#667eea");
+        openAllBtn.setOnAction(e -> openAllReady());
         
-        capsulesListView = new ListView<>();
+        headerRow.getChildren().addAll(headerLabel, filterCombo, senderCombo, openAllBtn, refreshBtn);
+        
+        capsulesListView = new ListView<>(index.view());
         capsulesListView.setStyle("-fx-background-color: #2C2C2E; -fx-control-inner-background: #2C2C2E;");
-        capsulesListView.setCellFactory(lv -> new ReceivedCapsuleCell());
+        capsulesListView.setCellFactory(lv -> new ReceivedCapsuleCell(this::openCapsule));
         capsulesListView.setPlaceholder(new Label("No capsules received yet.\nAsk your friends to send you one!"));
         VBox.setVgrow(capsulesListView, Priority.ALWAYS);
         
@@ -64,44 +87,61 @@ public class ReceivedCapsulesScreen extends VBox {
         
         getChildren().addAll(headerRow, capsulesListView, statusLabel);
         
+        index.records().addAll(apiClient.getCachedReceivedCapsules());
         refresh();
     }
     
-    private Button createStyledButton(String text, String color) {
-        Button btn = new Button(text);
-        btn.setStyle(
-            "-fx-background-color: " + color + "; " +
-            "-fx-text-fill: white; " +
-            "-fx-font-weight: bold; " +
-            "-fx-background-radius: 8; " +
-            "-fx-padding: 8 16; " +
-            "-fx-cursor: hand;"
-        );
-        return btn;
-    }
-    
     public void refresh() {
         setStatus("Loading...");
         
-        apiClient.listReceivedCapsules()
-            .thenAccept(response -> Platform.runLater(() -> {
-                if (response.isOk() && response.getCapsules() != null) {
-                    capsulesListView.getItems().clear();
-                    capsulesListView.getItems().addAll(response.getCapsules());
-                    setStatus("Loaded " + response.getCapsules().size() + " capsule(s)");
-                    applyFilter();
+        ObservableList<CapsuleHeader> items = index.records();
+        boolean initialLoad = items.isEmpty();
+        
+        apiClient.syncReceivedCapsules(initialLoad ? capsule -> Platform.runLater(() -> items.add(capsule)) : null)
+            .thenAccept(changes -> Platform.runLater(() -> {
+                if (changes.isOk()) {
+                    applyChanges(changes, initialLoad);
+                    setStatus("Loaded " + changes.getSnapshot().size() + " capsule(s)");
                 } else {
-                    setStatus("Failed to load: " + (response.getError() != null ? response.getError() : "Unknown error"));
+                    setStatus("Failed to load: " + changes.getError());
                 }
             }));
     }
     
+    private void applyChanges(ChangeSet<CapsuleHeader> changes, boolean initialLoad) {
+        ObservableList<CapsuleHeader> items = index.records();
+        if (initialLoad) {
+            items.setAll(changes.getSnapshot());
+        } else {
+            changes.applyTo(items, CapsuleHeader::getCapsuleId);
+        }
+    }
+    
     private void applyFilter() {
-        String filter = filterCombo.getValue();
+        String sender = senderCombo.getValue();
+        index.filter(ReceivedCapsuleIndex.State.fromLabel(filterCombo.getValue()),
+            sender == null || ALL_SENDERS.equals(sender) ? null : sender);
+        capsulesListView.setPlaceholder(new Label(index.isFiltered()
+            ? "No capsules match this filter."
+            : "No capsules received yet.\nAsk your friends to send you one!"));
+    }
+    
+    private void updateSenderChoices() {
+        String selected = senderCombo.getValue();
+        List<String> choices = new ArrayList<>();
+        choices.add(ALL_SENDERS);
+        choices.addAll(index.senders());
+        senderCombo.getItems().setAll(choices);
+        if (choices.contains(selected)) {
+            senderCombo.setValue(selected);
+        } else {
+            senderCombo.setValue(ALL_SENDERS);
+            applyFilter();
+        }
     }
     
-    private void openCapsule(Capsule capsule) {
-        long now = System.currentTimeMillis();
+    private void openCapsule(CapsuleHeader capsule) {
+        long now = apiClient.getServerClock().millis();
         if (now < capsule.getUnlockAtUtc()) {
             showNotYetDialog(capsule);
             return;
@@ -132,36 +172,94 @@ public class ReceivedCapsulesScreen extends VBox {
                     }
                     
                     Capsule openedCapsule = response.getCapsule();
+                    String associatedData = openedCapsule.getOwnerEmail() + "|" + openedCapsule.getUnlockAtUtc();
                     
-                    try {
-                        String associatedData = openedCapsule.getOwnerEmail() + "|" + openedCapsule.getUnlockAtUtc();
-                        
-                        String plaintext = CryptoUtils.decrypt(
-                            openedCapsule.getCiphertextBase64(),
-                            openedCapsule.getIvBase64(),
-                            openedCapsule.getSaltBase64(),
-                            passphrase,
-                            associatedData
-                        );
+                    CryptoService.getDefault().decryptAsync(
+                        openedCapsule.getCiphertextBase64(),
+                        openedCapsule.getIvBase64(),
+                        openedCapsule.getSaltBase64(),
+                        passphrase,
+                        associatedData,
+                        stage -> setStatus(stage.getLabel())
+                    ).whenComplete((plaintext, error) -> Platform.runLater(() -> {
+                        if (error != null) {
+                            setStatus("");
+                            showDecryptionError();
+                            return;
+                        }
                         
                         apiClient.markRecipientOpened(capsule.getCapsuleId());
-                        showMessageDialog(openedCapsule, plaintext);
+                        indexOpened(openedCapsule, plaintext);
+                        showMessageDialog(openedCapsule, plaintext, passphrase);
                         refresh();
-                        
-                    } catch (Exception e) {
-                        showDecryptionError();
-                    }
+                    }));
                 }));
         });
     }
     
-    private void showNotYetDialog(Capsule capsule) {
+    private void openAllReady() {
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Open All Ready Capsules");
+        dialog.setHeaderText("🔓 Enter Passphrase");
+        dialog.setContentText("It will be tried on every capsule that is ready to open:");
+        
+        dialog.showAndWait().ifPresent(passphrase -> {
+            if (passphrase == null || passphrase.isEmpty()) {
+                return;
+            }
+            
+            BulkDecryptor decryptor = new BulkDecryptor();
+            BulkOpenDialog results = new BulkOpenDialog();
+            results.setOnHidden(e -> decryptor.close());
+            results.show();
+            
+            List<CompletableFuture<?>> pending = Collections.synchronizedList(new ArrayList<>());
+            List<String> opened = Collections.synchronizedList(new ArrayList<>());
+            
+            setStatus("Opening ready capsules...");
+            
+            apiClient.openReadyCapsules(capsule -> pending.add(
+                decryptor.decrypt(capsule, passphrase).handle((plaintext, error) -> {
+                    if (error == null) {
+                        opened.add(capsule.getCapsuleId());
+                        indexOpened(capsule, plaintext);
+                    }
+                    Platform.runLater(() -> results.addResult(capsule, plaintext));
+                    return null;
+                })
+            )).thenCompose(response -> {
+                if (!response.isOk()) {
+                    Platform.runLater(() -> results.fail(response.getError()));
+                }
+                return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]));
+            }).whenComplete((done, error) -> {
+                decryptor.close();
+                if (!opened.isEmpty()) {
+                    apiClient.markRecipientsOpened(new ArrayList<>(opened));
+                }
+                Platform.runLater(() -> {
+                    results.finish();
+                    setStatus("");
+                    refresh();
+                });
+            });
+        });
+    }
+    
+    private void indexOpened(Capsule capsule, String plaintext) {
+        if (searchIndex != null) {
+            searchIndex.add(capsule.getCapsuleId(), capsule.getHeadline(), capsule.getSenderDisplay(),
+                capsule.getUnlockAtUtc(), plaintext);
+        }
+    }
+    
+    private void showNotYetDialog(CapsuleHeader capsule) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Not Yet!");
         alert.setHeaderText("⏰ This capsule is still time-locked");
         
-        String timeRemaining = capsule.getTimeRemaining();
-        String unlockDate = DATE_FORMAT.format(Instant.ofEpochMilli(capsule.getUnlockAtUtc()));
+        String timeRemaining = capsule.getTimeRemaining(apiClient.getServerClock().millis());
+        String unlockDate = CellTheme.DATE_FORMAT.format(Instant.ofEpochMilli(capsule.getUnlockAtUtc()));
         
         alert.setContentText(
             "This capsule will unlock on:\n" + unlockDate + "\n\n" +
@@ -173,7 +271,7 @@ public class ReceivedCapsulesScreen extends VBox {
         alert.showAndWait();
     }
     
-    private void showMessageDialog(Capsule capsule, String message) {
+    private void showMessageDialog(Capsule capsule, String message, String passphrase) {
         Dialog<Void> dialog = new Dialog<>();
         dialog.setTitle("Time Capsule Opened!");
         dialog.setHeaderText(null);
@@ -191,7 +289,7 @@ public class ReceivedCapsulesScreen extends VBox {
         Label senderLabel = new Label("From: " + capsule.getSenderDisplay());
         senderLabel.setTextFill(Color.web("#8E8E93"));
         
-        String sentDate = DATE_FORMAT.format(Instant.ofEpochMilli(capsule.getCreatedAtUtc()));
+        String sentDate = CellTheme.DATE_FORMAT.format(Instant.ofEpochMilli(capsule.getCreatedAtUtc()));
         Label dateLabel = new Label("Sent: " + sentDate);
         dateLabel.setTextFill(Color.web("#8E8E93"));
         
@@ -207,6 +305,9 @@ public class ReceivedCapsulesScreen extends VBox {
         );
         
         content.getChildren().addAll(headerLabel, senderLabel, dateLabel, messageArea);
+        if (capsule.hasAttachments()) {
+            content.getChildren().add(new AttachmentsPane(apiClient, capsule, passphrase));
+        }
         
         dialog.getDialogPane().setContent(content);
         dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
@@ -230,101 +331,80 @@ public class ReceivedCapsulesScreen extends VBox {
         Platform.runLater(() -> statusLabel.setText(message));
     }
     
-    private class ReceivedCapsuleCell extends ListCell<Capsule> {
-        @Override
-        protected void updateItem(Capsule capsule, boolean empty) {
-            super.updateItem(capsule, empty);
+    private class BulkOpenDialog extends Dialog<Void> {
+        private final Label progressLabel = new Label("Fetching ready capsules...");
+        private final VBox resultsBox = new VBox(10);
+        private int openedCount;
+        private int failedCount;
+        
+        BulkOpenDialog() {
+            setTitle("Opening Capsules");
+            setHeaderText(null);
+            initModality(Modality.NONE);
             
-            if (empty || capsule == null) {
-                setGraphic(null);
-                return;
-            }
+            progressLabel.setTextFill(Color.web("#8E8E93"));
             
-            HBox row = new HBox(15);
-            row.setAlignment(Pos.CENTER_LEFT);
-            row.setPadding(new Insets(15));
-            row.setStyle("-fx-background-color: #3A3A3C; -fx-background-radius: 10;");
+            ScrollPane scroll = new ScrollPane(resultsBox);
+            scroll.setFitToWidth(true);
+            scroll.setPrefSize(520, 420);
+            scroll.setStyle("-fx-background: #2C2C2E; -fx-background-color: #2C2C2E;");
             
-            long now = System.currentTimeMillis();
-            boolean isOpenable = now >= capsule.getUnlockAtUtc();
-            boolean isOpened = capsule.getRecipients() != null && !capsule.getRecipients().isEmpty() 
-                && capsule.getRecipients().get(0).isOpened();
+            VBox content = new VBox(15, progressLabel, scroll);
+            content.setPadding(new Insets(20));
+            content.setStyle("-fx-background-color: #2C2C2E;");
             
-            String icon;
-            Color iconColor;
-            if (isOpened) {
-                icon = "📖";
-                iconColor = Color.web("#8E8E93");
-            } else if (isOpenable) {
-                icon = "🔓";
-                iconColor = Color.web("#34C759");
-            } else {
-                icon = "🔒";
-                iconColor = Color.web("#FF9500");
+            getDialogPane().setContent(content);
+            getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+            getDialogPane().setStyle("-fx-background-color: #2C2C2E;");
+        }
+        
+        void addResult(Capsule capsule, String message) {
+            if (message == null) {
+                failedCount++;
+                updateProgress("Opening");
+                return;
             }
+            openedCount++;
+            updateProgress("Opening");
             
-            Label iconLabel = new Label(icon);
-            iconLabel.setFont(Font.font(24));
-            
-            VBox info = new VBox(5);
-            
-            HBox titleRow = new HBox(10);
-            titleRow.setAlignment(Pos.CENTER_LEFT);
-            
-            Label headlineLabel = new Label(
-                capsule.getHeadline() != null && !capsule.getHeadline().isEmpty() 
-                    ? capsule.getHeadline() : "(No title)"
-            );
-            headlineLabel.setFont(Font.font("SF Pro Display", FontWeight.BOLD, 16));
-            headlineLabel.setTextFill(Color.WHITE);
+            Label headline = new Label("🎉 " + (capsule.getHeadline() != null && !capsule.getHeadline().isEmpty()
+                ? capsule.getHeadline() : "Time Capsule"));
+            headline.setFont(Font.font("SF Pro Display", FontWeight.BOLD, 16));
+            headline.setTextFill(Color.WHITE);
             
-            titleRow.getChildren().add(headlineLabel);
+            Label sender = new Label("From: " + capsule.getSenderDisplay());
+            sender.setTextFill(Color.web("#8E8E93"));
             
-            Label senderLabel = new Label("From: " + capsule.getSenderDisplay());
-            senderLabel.setTextFill(Color.web("#8E8E93"));
+            Label body = new Label(message);
+            body.setWrapText(true);
+            body.setTextFill(Color.WHITE);
             
-            String unlockDate = DATE_FORMAT.format(Instant.ofEpochMilli(capsule.getUnlockAtUtc()));
-            Label dateLabel = new Label("Unlocks: " + unlockDate);
-            dateLabel.setTextFill(Color.web("#8E8E93"));
-            
-            info.getChildren().addAll(titleRow, senderLabel, dateLabel);
-            HBox.setHgrow(info, Priority.ALWAYS);
-            
-            VBox actionBox = new VBox(5);
-            actionBox.setAlignment(Pos.CENTER_RIGHT);
-            
-            String statusText;
-            Color statusColor;
-            if (isOpened) {
-                statusText = "Opened";
-                statusColor = Color.web("#8E8E93");
-            } else if (isOpenable) {
-                statusText = "✓ Ready!";
-                statusColor = Color.web("#34C759");
-            } else {
-                statusText = capsule.getTimeRemaining();
-                statusColor = Color.web("#FF9500");
+            VBox card = new VBox(5, headline, sender, body);
+            card.setPadding(new Insets(10));
+            card.setStyle("-fx-background-color: #3A3A3C; -fx-background-radius: 8;");
+            resultsBox.getChildren().add(card);
+        }
+        
+        void fail(String error) {
+            progressLabel.setText("Failed to fetch ready capsules: " + error);
+        }
+        
+        void finish() {
+            if (openedCount == 0 && failedCount == 0) {
+                if (!progressLabel.getText().startsWith("Failed")) {
+                    progressLabel.setText("No capsules are ready to open.");
+                }
+                return;
             }
-            
-            Label statusLabel = new Label(statusText);
-            statusLabel.setTextFill(statusColor);
-            statusLabel.setFont(Font.font("SF Pro Display", FontWeight.BOLD, 12));
-            
-            actionBox.getChildren().add(statusLabel);
-            
-            if (isOpenable && !isOpened) {
-                Button openBtn = createStyledButton("🔓 Open", "#34C759");
-                openBtn.setOnAction(e -> openCapsule(capsule));
-                actionBox.getChildren().add(openBtn);
-            } else if (isOpened) {
-                Button readBtn = createStyledButton("📖 Read Again", "#5856D6");
-                readBtn.setOnAction(e -> openCapsule(capsule));
-                actionBox.getChildren().add(readBtn);
+            updateProgress("Done");
+        }
+        
+        private void updateProgress(String prefix) {
+            String text = prefix + ": " + openedCount + " opened";
+            if (failedCount > 0) {
+                text += ", " + failedCount + " need a different passphrase";
             }
-            
-            row.getChildren().addAll(iconLabel, info, actionBox);
-            setGraphic(row);
-            setStyle("-fx-background-color: transparent;");
+            progressLabel.setText(text);
         }
     }
 }
@@ -0,0 +1,157 @@
+package timecapsule.ui;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextArea;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import timecapsule.store.SearchIndex;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Searches the messages of capsules already opened on this machine. Queries
+ * run against the local index as the user types; the last word is treated as
+ * a prefix.
+ */
+public class SearchScreen extends VBox {
+
+    private static final int MAX_RESULTS = 200;
+
+    private final SearchIndex searchIndex;
+    private final TextField queryField;
+    private final ListView<SearchIndex.Hit> resultsList;
+    private final Label statusLabel;
+
+    public SearchScreen(SearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+
+        setSpacing(20);
+        setPadding(new Insets(20));
+        setStyle("-fx-background-color: #1C1C1E;");
+
+        Label headerLabel = new Label("🔍 Search Messages");
+        headerLabel.setFont(Font.font("SF Pro Display", FontWeight.BOLD, 28));
+        headerLabel.setTextFill(Color.WHITE);
+
+        queryField = new TextField();
+        queryField.setPromptText("Search opened capsules...");
+        queryField.setStyle(
+            "-fx-background-color: #3A3A3C; " +
+            "-fx-text-fill: white; " +
+            "-fx-prompt-text-fill: #8E8E93; " +
+            "-fx-background-radius: 8; " +
+            "-fx-padding: 10;"
+        );
+        queryField.textProperty().addListener((obs, old, text) -> runQuery(text));
+
+        resultsList = new ListView<>();
+        resultsList.setStyle("-fx-background-color: #2C2C2E; -fx-control-inner-background: #2C2C2E;");
+        resultsList.setCellFactory(lv -> new HitCell());
+        resultsList.setPlaceholder(new Label("Only capsules you have opened on this computer are searchable."));
+        resultsList.setOnMouseClicked(e -> {
+            SearchIndex.Hit hit = resultsList.getSelectionModel().getSelectedItem();
+            if (hit != null && e.getClickCount() == 2) {
+                showMessage(hit.getDocument());
+            }
+        });
+        VBox.setVgrow(resultsList, Priority.ALWAYS);
+
+        statusLabel = new Label();
+        statusLabel.setTextFill(CellTheme.MUTED);
+
+        getChildren().addAll(headerLabel, queryField, resultsList, statusLabel);
+    }
+
+    public void refresh() {
+        runQuery(queryField.getText());
+    }
+
+    private void runQuery(String text) {
+        if (searchIndex == null) {
+            statusLabel.setText("Search is unavailable");
+            return;
+        }
+        if (!searchIndex.isUnlocked()) {
+            statusLabel.setText("Unlocking search index...");
+        }
+        if (text == null || text.isBlank()) {
+            resultsList.getItems().clear();
+            if (searchIndex.isUnlocked()) {
+                statusLabel.setText(searchIndex.size() + " message(s) indexed");
+            }
+            return;
+        }
+
+        String query = Character.isWhitespace(text.charAt(text.length() - 1)) ? text : text + "*";
+        long start = System.nanoTime();
+        List<SearchIndex.Hit> hits = searchIndex.search(query, MAX_RESULTS);
+        long micros = (System.nanoTime() - start) / 1000;
+        resultsList.getItems().setAll(hits);
+        statusLabel.setText(hits.size() + (hits.size() == MAX_RESULTS ? "+" : "") + " result(s) in "
+            + String.format("%.1f", micros / 1000.0) + " ms");
+    }
+
+    private void showMessage(SearchIndex.Document document) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Capsule Message");
+        alert.setHeaderText(document.getHeadline() != null && !document.getHeadline().isEmpty()
+            ? document.getHeadline() : "(No title)");
+
+        TextArea messageArea = new TextArea(document.getText());
+        messageArea.setEditable(false);
+        messageArea.setWrapText(true);
+        messageArea.setPrefRowCount(12);
+        alert.getDialogPane().setContent(messageArea);
+        alert.showAndWait();
+    }
+
+    private static class HitCell extends ListCell<SearchIndex.Hit> {
+        private final VBox row = new VBox(4);
+        private final Label headlineLabel = new Label();
+        private final Label detailLabel = new Label();
+        private final Label snippetLabel = new Label();
+
+        HitCell() {
+            row.setAlignment(Pos.CENTER_LEFT);
+            row.setPadding(CellTheme.COMPACT_ROW_PADDING);
+            row.setStyle(CellTheme.COMPACT_ROW_STYLE);
+
+            headlineLabel.setFont(CellTheme.NAME_FONT);
+            headlineLabel.setTextFill(CellTheme.TEXT);
+            detailLabel.setFont(CellTheme.DETAIL_FONT);
+            detailLabel.setTextFill(CellTheme.MUTED);
+            snippetLabel.setTextFill(CellTheme.TEXT);
+
+            row.getChildren().addAll(headlineLabel, detailLabel, snippetLabel);
+            setStyle(CellTheme.CELL_STYLE);
+        }
+
+        @Override
+        protected void updateItem(SearchIndex.Hit hit, boolean empty) {
+            super.updateItem(hit, empty);
+
+            if (empty || hit == null) {
+                setGraphic(null);
+                return;
+            }
+
+            SearchIndex.Document document = hit.getDocument();
+            headlineLabel.setText(document.getHeadline() != null && !document.getHeadline().isEmpty()
+                ? document.getHeadline() : "(No title)");
+            detailLabel.setText((document.getSender() != null ? document.getSender() + " • " : "")
+                + CellTheme.DATE_FORMAT.format(Instant.ofEpochMilli(document.getUnlockAtUtc())));
+            snippetLabel.setText(hit.getSnippet());
+            setGraphic(row);
+        }
+    }
+}
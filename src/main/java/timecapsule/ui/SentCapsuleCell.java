@@ -0,0 +1,109 @@
+package timecapsule.ui;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import timecapsule.model.CapsuleHeader;
+import timecapsule.model.CapsuleState;
+
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * Row for a capsule the user sent. The node graph is built once per cell and
+ * rebound to whichever capsule the list view recycles it for.
+ */
+class SentCapsuleCell extends ListCell<CapsuleHeader> {
+
+    private final HBox row = new HBox(15);
+    private final Label iconLabel = new Label();
+    private final Label headlineLabel = new Label();
+    private final Label dateLabel = new Label();
+    private final Label recipientsLabel = new Label();
+    private final Label statusLabel = new Label();
+    private final Button openBtn = CellTheme.button("🔓 Open", "#34C759");
+    private CountdownScheduler.Registration countdown;
+
+    SentCapsuleCell(Consumer<CapsuleHeader> onOpen) {
+        row.setAlignment(Pos.CENTER_LEFT);
+        row.setPadding(CellTheme.ROW_PADDING);
+        row.setStyle(CellTheme.ROW_STYLE);
+
+        iconLabel.setFont(CellTheme.ICON_FONT);
+        headlineLabel.setFont(CellTheme.TITLE_FONT);
+        headlineLabel.setTextFill(CellTheme.TEXT);
+        dateLabel.setTextFill(CellTheme.MUTED);
+        recipientsLabel.setFont(CellTheme.DETAIL_FONT);
+        recipientsLabel.setTextFill(CellTheme.ACCENT);
+        statusLabel.setFont(CellTheme.STATUS_FONT);
+
+        VBox info = new VBox(5, headlineLabel, dateLabel, recipientsLabel);
+        HBox.setHgrow(info, Priority.ALWAYS);
+
+        VBox actionBox = new VBox(5, statusLabel, openBtn);
+        actionBox.setAlignment(Pos.CENTER_RIGHT);
+
+        openBtn.setOnAction(e -> {
+            if (getItem() != null) {
+                onOpen.accept(getItem());
+            }
+        });
+
+        row.getChildren().addAll(iconLabel, info, actionBox);
+        setStyle(CellTheme.CELL_STYLE);
+    }
+
+    @Override
+    protected void updateItem(CapsuleHeader capsule, boolean empty) {
+        super.updateItem(capsule, empty);
+
+        CountdownScheduler.getDefault().cancel(countdown);
+        countdown = null;
+
+        if (empty || capsule == null) {
+            setGraphic(null);
+            return;
+        }
+
+        headlineLabel.setText(capsule.getHeadline() != null && !capsule.getHeadline().isEmpty()
+            ? capsule.getHeadline() : "(No title)");
+        dateLabel.setText("Unlocks: " + CellTheme.DATE_FORMAT.format(Instant.ofEpochMilli(capsule.getUnlockAtUtc())));
+
+        int recipientCount = capsule.getRecipients() != null ? capsule.getRecipients().size() : 0;
+        recipientsLabel.setText(recipientCount > 0
+            ? "Sent to " + recipientCount + " recipient(s)"
+            : "Personal capsule");
+
+        showStatus(capsule, CountdownScheduler.getDefault().now());
+        if (capsule.getState() != CapsuleState.OPENED) {
+            countdown = CountdownScheduler.getDefault().watch(capsule.getUnlockAtUtc(),
+                now -> showStatus(getItem(), now));
+        }
+        setGraphic(row);
+    }
+
+    private void showStatus(CapsuleHeader capsule, long now) {
+        boolean isOpenable = now >= capsule.getUnlockAtUtc();
+        boolean isOpened = capsule.getState() == CapsuleState.OPENED;
+
+        if (isOpened) {
+            iconLabel.setText("📖");
+            statusLabel.setText("Opened");
+            statusLabel.setTextFill(CellTheme.SUCCESS);
+        } else if (isOpenable) {
+            iconLabel.setText("🔓");
+            statusLabel.setText("✓ Ready!");
+            statusLabel.setTextFill(CellTheme.SUCCESS);
+        } else {
+            iconLabel.setText("🔒");
+            statusLabel.setText(capsule.getTimeRemaining(now));
+            statusLabel.setTextFill(CellTheme.WARNING);
+        }
+
+        CellTheme.show(openBtn, isOpenable);
+    }
+}
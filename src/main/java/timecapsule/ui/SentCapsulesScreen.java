@@ -1,6 +1,7 @@
 package timecapsule.ui;
 
 import javafx.application.Platform;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
@@ -9,27 +10,26 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import timecapsule.api.ApiClient;
-import timecapsule.crypto.CryptoUtils;
+import timecapsule.api.ChangeSet;
+import timecapsule.crypto.CryptoService;
 import timecapsule.model.*;
+import timecapsule.store.SearchIndex;
 
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.function.Consumer;
 
 public class SentCapsulesScreen extends VBox {
     
     private final ApiClient apiClient;
+    private final SearchIndex searchIndex;
     private final Consumer<Void> onNewCapsule;
-    private final ListView<Capsule> capsulesListView;
+    private final ListView<CapsuleHeader> capsulesListView;
     private final Label statusLabel;
     
-    private static final DateTimeFormatter DATE_FORMAT = 
-        DateTimeFormatter.ofPattern("MMM dd, yyyy 'at' HH:mm").withZone(ZoneId.systemDefault());
-    
-    public SentCapsulesScreen(ApiClient apiClient, Consumer<Void> onNewCapsule) {
+    public SentCapsulesScreen(ApiClient apiClient, SearchIndex searchIndex, Consumer<Void> onNewCapsule) {
         this.apiClient = apiClient;
+        this.searchIndex = searchIndex;
         this.onNewCapsule = onNewCapsule;
         
         setSpacing(20);
@@ -44,17 +44,20 @@ public class SentCapsulesScreen extends VBox {
         headerLabel.setTextFill(Color.WHITE);
         HBox.setHgrow(headerLabel, Priority.ALWAYS);
         
-        Button newBtn = createStyledButton("+ New Capsule", "#667eea");
+        Button newBtn = CellTheme.button("+ New Capsule", "#667eea");
         newBtn.setOnAction(e -> onNewCapsule.accept(null));
         
-        Button refreshBtn = createStyledButton("🔄 Refresh", "#34C759");
-        refreshBtn.setOnAction(e -> refresh());
+        Button refreshBtn = CellTheme.button("🔄 Refresh", "#34C759");
+        refreshBtn.setOnAction(e -> {
+            apiClient.invalidateCache("listSent");
+            refresh();
+        });
         
         headerRow.getChildren().addAll(headerLabel, newBtn, refreshBtn);
         
         capsulesListView = new ListView<>();
         capsulesListView.setStyle("-fx-background-color: #2C2C2E; -fx-control-inner-background: #2C2C2E;");
-        capsulesListView.setCellFactory(lv -> new SentCapsuleCell());
+        capsulesListView.setCellFactory(lv -> new SentCapsuleCell(this::openCapsule));
         capsulesListView.setPlaceholder(new Label("No capsules created yet.\nClick '+ New Capsule' to create one!"));
         VBox.setVgrow(capsulesListView, Priority.ALWAYS);
         
@@ -63,39 +66,38 @@ public class SentCapsulesScreen extends VBox {
         
         getChildren().addAll(headerRow, capsulesListView, statusLabel);
         
+        capsulesListView.getItems().addAll(apiClient.getCachedSentCapsules());
         refresh();
     }
     
-    private Button createStyledButton(String text, String color) {
-        Button btn = new Button(text);
-        btn.setStyle(
-            "-fx-background-color: " + color + "; " +
-            "-fx-text-fill: white; " +
-            "-fx-font-weight: bold; " +
-            "-fx-background-radius: 8; " +
-            "-fx-padding: 8 16; " +
-            "-fx-cursor: hand;"
-        );
-        return btn;
-    }
-    
     public void refresh() {
         setStatus("Loading...");
         
-        apiClient.listSentCapsules()
-            .thenAccept(response -> Platform.runLater(() -> {
-                if (response.isOk() && response.getCapsules() != null) {
-                    capsulesListView.getItems().clear();
-                    capsulesListView.getItems().addAll(response.getCapsules());
-                    setStatus("Loaded " + response.getCapsules().size() + " capsule(s)");
+        ObservableList<CapsuleHeader> items = capsulesListView.getItems();
+        boolean initialLoad = items.isEmpty();
+        
+        apiClient.syncSentCapsules(initialLoad ? capsule -> Platform.runLater(() -> items.add(capsule)) : null)
+            .thenAccept(changes -> Platform.runLater(() -> {
+                if (changes.isOk()) {
+                    applyChanges(changes, initialLoad);
+                    setStatus("Loaded " + changes.getSnapshot().size() + " capsule(s)");
                 } else {
-                    setStatus("Failed to load: " + (response.getError() != null ? response.getError() : "Unknown error"));
+                    setStatus("Failed to load: " + changes.getError());
                 }
             }));
     }
     
-    private void openCapsule(Capsule capsule) {
-        long now = System.currentTimeMillis();
+    private void applyChanges(ChangeSet<CapsuleHeader> changes, boolean initialLoad) {
+        ObservableList<CapsuleHeader> items = capsulesListView.getItems();
+        if (initialLoad) {
+            items.setAll(changes.getSnapshot());
+        } else {
+            changes.applyTo(items, CapsuleHeader::getCapsuleId);
+        }
+    }
+    
+    private void openCapsule(CapsuleHeader capsule) {
+        long now = apiClient.getServerClock().millis();
         if (now < capsule.getUnlockAtUtc()) {
             showNotYetDialog(capsule);
             return;
@@ -126,35 +128,44 @@ public class SentCapsulesScreen extends VBox {
                     }
                     
                     Capsule openedCapsule = response.getCapsule();
+                    String associatedData = openedCapsule.getOwnerEmail() + "|" + openedCapsule.getUnlockAtUtc();
                     
-                    try {
-                        String associatedData = openedCapsule.getOwnerEmail() + "|" + openedCapsule.getUnlockAtUtc();
-                        
-                        String plaintext = CryptoUtils.decrypt(
-                            openedCapsule.getCiphertextBase64(),
-                            openedCapsule.getIvBase64(),
-                            openedCapsule.getSaltBase64(),
-                            passphrase,
-                            associatedData
-                        );
+                    CryptoService.getDefault().decryptAsync(
+                        openedCapsule.getCiphertextBase64(),
+                        openedCapsule.getIvBase64(),
+                        openedCapsule.getSaltBase64(),
+                        passphrase,
+                        associatedData,
+                        stage -> setStatus(stage.getLabel())
+                    ).whenComplete((plaintext, error) -> Platform.runLater(() -> {
+                        if (error != null) {
+                            setStatus("");
+                            showDecryptionError();
+                            return;
+                        }
                         
-                        showMessageDialog(openedCapsule, plaintext);
+                        indexOpened(openedCapsule, plaintext);
+                        showMessageDialog(openedCapsule, plaintext, passphrase);
                         refresh();
-                        
-                    } catch (Exception e) {
-                        showDecryptionError();
-                    }
+                    }));
                 }));
         });
     }
     
-    private void showNotYetDialog(Capsule capsule) {
+    private void indexOpened(Capsule capsule, String plaintext) {
+        if (searchIndex != null) {
+            searchIndex.add(capsule.getCapsuleId(), capsule.getHeadline(), capsule.getSenderDisplay(),
+                capsule.getUnlockAtUtc(), plaintext);
+        }
+    }
+    
+    private void showNotYetDialog(CapsuleHeader capsule) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Not Yet!");
         alert.setHeaderText("⏰ This capsule is still time-locked");
         
-        String timeRemaining = capsule.getTimeRemaining();
-        String unlockDate = DATE_FORMAT.format(Instant.ofEpochMilli(capsule.getUnlockAtUtc()));
+        String timeRemaining = capsule.getTimeRemaining(apiClient.getServerClock().millis());
+        String unlockDate = CellTheme.DATE_FORMAT.format(Instant.ofEpochMilli(capsule.getUnlockAtUtc()));
         
         alert.setContentText(
             "This capsule will unlock on:\n" + unlockDate + "\n\n" +
@@ -166,7 +177,7 @@ public class SentCapsulesScreen extends VBox {
         alert.showAndWait();
     }
     
-    private void showMessageDialog(Capsule capsule, String message) {
+    private void showMessageDialog(Capsule capsule, String message, String passphrase) {
         Dialog<Void> dialog = new Dialog<>();
         dialog.setTitle("Your Time Capsule");
         dialog.setHeaderText(null);
@@ -181,7 +192,7 @@ public class SentCapsulesScreen extends VBox {
         headerLabel.setFont(Font.font("SF Pro Display", FontWeight.BOLD, 24));
         headerLabel.setTextFill(Color.WHITE);
         
-        String sentDate = DATE_FORMAT.format(Instant.ofEpochMilli(capsule.getCreatedAtUtc()));
+        String sentDate = CellTheme.DATE_FORMAT.format(Instant.ofEpochMilli(capsule.getCreatedAtUtc()));
         Label dateLabel = new Label("Created: " + sentDate);
         dateLabel.setTextFill(Color.web("#8E8E93"));
         
@@ -203,6 +214,9 @@ public class SentCapsulesScreen extends VBox {
         );
         
         content.getChildren().addAll(headerLabel, dateLabel, messageArea);
+        if (capsule.hasAttachments()) {
+            content.getChildren().add(new AttachmentsPane(apiClient, capsule, passphrase));
+        }
         
         dialog.getDialogPane().setContent(content);
         dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
@@ -226,93 +240,4 @@ public class SentCapsulesScreen extends VBox {
     private void setStatus(String message) {
         Platform.runLater(() -> statusLabel.setText(message));
     }
-    
-    private class SentCapsuleCell extends ListCell<Capsule> {
-        @Override
-        protected void updateItem(Capsule capsule, boolean empty) {
-            super.updateItem(capsule, empty);
-            
-            if (empty || capsule == null) {
-                setGraphic(null);
-                return;
-            }
-            
-            HBox row = new HBox(15);
-            row.setAlignment(Pos.CENTER_LEFT);
-            row.setPadding(new Insets(15));
-            row.setStyle("-fx-background-color: #3A3A3C; -fx-background-radius: 10;");
-            
-            long now = System.currentTimeMillis();
-            boolean isOpenable = now >= capsule.getUnlockAtUtc();
-            boolean isOpened = capsule.getState() == CapsuleState.OPENED;
-            
-            String icon;
-            if (isOpened) {
-                icon = "📖";
-            } else if (isOpenable) {
-                icon = "🔓";
-            } else {
-                icon = "🔒";
-            }
-            
-            Label iconLabel = new Label(icon);
-            iconLabel.setFont(Font.font(24));
-            
-            VBox info = new VBox(5);
-            
-            Label headlineLabel = new Label(
-                capsule.getHeadline() != null && !capsule.getHeadline().isEmpty() 
-                    ? capsule.getHeadline() : "(No title)"
-            );
-            headlineLabel.setFont(Font.font("SF Pro Display", FontWeight.BOLD, 16));
-            headlineLabel.setTextFill(Color.WHITE);
-            
-            String unlockDate = DATE_FORMAT.format(Instant.ofEpochMilli(capsule.getUnlockAtUtc()));
-            Label dateLabel = new Label("Unlocks: " + unlockDate);
-            dateLabel.setTextFill(Color.web("#8E8E93"));
-            
-            int recipientCount = capsule.getRecipients() != null ? capsule.getRecipients().size() : 0;
-            String recipientText = recipientCount > 0 
-                ? "Sent to " + recipientCount + " recipient(s)" 
-                : "Personal capsule";
-            Label recipientsLabel = new Label(recipientText);
-            recipientsLabel.setTextFill(Color.web("#667eea"));
-            recipientsLabel.setFont(Font.font("SF Pro Display", 11));
-            
-            info.getChildren().addAll(headlineLabel, dateLabel, recipientsLabel);
-            HBox.setHgrow(info, Priority.ALWAYS);
-            
-            VBox actionBox = new VBox(5);
-            actionBox.setAlignment(Pos.CENTER_RIGHT);
-            
-            String statusText;
-            Color statusColor;
-            if (isOpened) {
-                statusText = "Opened";
-                statusColor = Color.web("#34C759");
-            } else if (isOpenable) {
-                statusText = "✓ Ready!";
-                statusColor = Color.web("#34C759");
-            } else {
-                statusText = capsule.getTimeRemaining();
-                statusColor = Color.web("#FF9500");
-            }
-            
-            Label statusLabel = new Label(statusText);
-            statusLabel.setTextFill(statusColor);
-            statusLabel.setFont(Font.font("SF Pro Display", FontWeight.BOLD, 12));
-            
-            actionBox.getChildren().add(statusLabel);
-            
-            if (isOpenable) {
-                Button openBtn = createStyledButton("🔓 Open", "#34C759");
-                openBtn.setOnAction(e -> openCapsule(capsule));
-                actionBox.getChildren().add(openBtn);
-            }
-            
-            row.getChildren().addAll(iconLabel, info, actionBox);
-            setGraphic(row);
-            setStyle("-fx-background-color: transparent;");
-        }
-    }
 }
@@ -12,7 +12,14 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
 import timecapsule.api.ApiClient;
+import timecapsule.crypto.CryptoService;
+import timecapsule.crypto.CryptoUtils;
 import timecapsule.model.User;
+import timecapsule.store.LocalStore;
+import timecapsule.store.SearchIndex;
+
+import java.io.IOException;
+import java.nio.file.Path;
 
 public class TimeCapsuleApp extends Application {
     
@@ -20,21 +27,29 @@ public class TimeCapsuleApp extends Application {
     private BorderPane rootPane;
     private ApiClient apiClient;
     private User currentUser;
+    private LocalStore localStore;
+    private SearchIndex searchIndex;
     
     private VBox navBar;
     private Button navFriends;
     private Button navSent;
     private Button navReceived;
+    private Button navSearch;
     private Button navCompose;
     
     private FriendsScreen friendsScreen;
     private SentCapsulesScreen sentCapsulesScreen;
     private ReceivedCapsulesScreen receivedCapsulesScreen;
+    private SearchScreen searchScreen;
     
     @Override
     public void start(Stage stage) {
         this.primaryStage = stage;
         this.apiClient = new ApiClient();
+        CountdownScheduler.getDefault().setClock(apiClient.getServerClock()::millis);
+        apiClient.warmUp();
+        CryptoService.getDefault().submit(CryptoUtils::calibrate)
+            .thenAccept(kdf -> apiClient.getLogger().info("Key derivation calibrated to " + kdf));
         
         showLoginScreen();
         
@@ -53,11 +68,58 @@ public class TimeCapsuleApp extends Application {
         primaryStage.setScene(scene);
     }
     
-    private void onLoginSuccess(User user) {
+    private void onLoginSuccess(User user, String password) {
         this.currentUser = user;
+        openLocalStore(user);
+        openSearchIndex(password);
         showMainApp();
     }
     
+    private void openLocalStore(User user) {
+        closeLocalStore();
+        try {
+            Path dir = Path.of(System.getProperty("user.home"), ".timecapsule", "store", user.getUserId());
+            localStore = LocalStore.open(dir);
+            apiClient.attachStore(localStore);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[TimeCapsuleApp] Local store unavailable: " + e.getMessage());
+            localStore = null;
+        }
+    }
+    
+    private void openSearchIndex(String password) {
+        closeSearchIndex();
+        searchIndex = new SearchIndex(localStore);
+        SearchIndex opening = searchIndex;
+        opening.unlock(password).whenComplete((v, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                System.err.println("[TimeCapsuleApp] Search index unavailable: " + error.getMessage());
+            } else if (searchScreen != null && opening == searchIndex) {
+                searchScreen.refresh();
+            }
+        }));
+    }
+    
+    private void closeSearchIndex() {
+        if (searchIndex != null) {
+            searchIndex.close();
+            searchIndex = null;
+        }
+    }
+    
+    private void closeLocalStore() {
+        if (localStore == null) {
+            return;
+        }
+        apiClient.attachStore(null);
+        try {
+            localStore.close();
+        } catch (IOException e) {
+            System.err.println("[TimeCapsuleApp] Failed to close local store: " + e.getMessage());
+        }
+        localStore = null;
+    }
+    
     private void showMainApp() {
         rootPane = new BorderPane();
         rootPane.setStyle("-fx-background-color: #1C1C1E;");
@@ -66,8 +128,9 @@ public class TimeCapsuleApp extends Application {
         rootPane.setLeft(navBar);
         
         friendsScreen = new FriendsScreen(apiClient);
-        sentCapsulesScreen = new SentCapsulesScreen(apiClient, v -> showComposeScreen());
-        receivedCapsulesScreen = new ReceivedCapsulesScreen(apiClient);
+        sentCapsulesScreen = new SentCapsulesScreen(apiClient, searchIndex, v -> showComposeScreen());
+        receivedCapsulesScreen = new ReceivedCapsulesScreen(apiClient, searchIndex);
+        searchScreen = new SearchScreen(searchIndex);
         
         showScreen("received");
         
@@ -111,6 +174,7 @@ public class TimeCapsuleApp extends Application {
         navReceived = createNavButton("📬 Inbox", "received");
         navSent = createNavButton("📤 My Capsules", "sent");
         navFriends = createNavButton("👥 Friends", "friends");
+        navSearch = createNavButton("🔍 Search", "search");
         navCompose = createNavButton("✉️ New Capsule", "compose");
         navCompose.setStyle(
             "-fx-background-color: linear-gradient(to right, #667eea, #764ba2); " +
@@ -137,7 +201,7 @@ public class TimeCapsuleApp extends Application {
         
         nav.getChildren().addAll(
             logo, appName, userBox, sep1,
-            navReceived, navSent, navFriends,
+            navReceived, navSent, navFriends, navSearch,
             new Separator(),
             navCompose,
             spacer, logoutBtn
@@ -197,6 +261,12 @@ public class TimeCapsuleApp extends Application {
                 setNavSelected(navReceived);
                 break;
                 
+            case "search":
+                rootPane.setCenter(searchScreen);
+                searchScreen.refresh();
+                setNavSelected(navSearch);
+                break;
+                
             case "compose":
                 showComposeScreen();
                 break;
@@ -216,7 +286,7 @@ public class TimeCapsuleApp extends Application {
     }
     
     private void resetNavButtons() {
-        for (Button btn : new Button[]{navReceived, navSent, navFriends}) {
+        for (Button btn : new Button[]{navReceived, navSent, navFriends, navSearch}) {
             btn.getStyleClass().remove("selected");
             btn.setStyle(
                 "-fx-background-color: transparent; " +
@@ -253,12 +323,23 @@ public class TimeCapsuleApp extends Application {
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
                 currentUser = null;
+                closeSearchIndex();
+                closeLocalStore();
+                CryptoUtils.clearKeyCache();
+                CountdownScheduler.getDefault().clear();
                 apiClient.setCurrentUser(null, null);
                 showLoginScreen();
             }
         });
     }
     
+    @Override
+    public void stop() {
+        closeSearchIndex();
+        closeLocalStore();
+        CryptoUtils.clearKeyCache();
+    }
+    
     public static void main(String[] args) {
         launch(args);
     }
@@ -13,9 +13,12 @@
  * 1. Users: userId, email, displayName, passwordHash, createdAtUtc
  * 2. Friends: requesterUserId, addresseeUserId, status, createdAtUtc, updatedAtUtc
  * 3. Invites: inviteId, inviterUserId, inviteeEmail, tokenHash, status, createdAtUtc, expiresAtUtc, acceptedAtUtc
- * 4. Capsules: id, owner, ownerUserId, unlockTimeEpoch, state, ciphertextBase64, ivBase64, saltBase64, headline, createdAtEpoch, updatedAtEpoch
+ * 4. Capsules: id, owner, ownerUserId, unlockTimeEpoch, state, ciphertextBase64, ivBase64, saltBase64, headline, createdAtEpoch, updatedAtEpoch, attachmentManifest
  * 5. CapsuleRecipients: capsuleId, recipientEmail, recipientUserId, notifyOnCreate, notifyOnUnlock, deliveryStatus, openedAtUtc, createdAtUtc
  * 6. AuditLog: timestampEpoch, action, entityId, oldState, newState, requestId
+ * 
+ * Attachment chunks are kept out of the sheets: each sealed chunk is a file in
+ * the TimeCapsuleChunks Drive folder, named by the SHA-256 of its bytes.
  */
 
 // ========================
@@ -29,15 +32,21 @@ var INVITES_SHEET = "Invites";
 var CAPSULES_SHEET = "Capsules";
 var RECIPIENTS_SHEET = "CapsuleRecipients";
 var AUDIT_SHEET = "AuditLog";
+var CHUNKS_FOLDER = "TimeCapsuleChunks";
+var MAX_CHUNK_BYTES = 512 * 1024 + 64;
 
 var INVITE_EXPIRY_DAYS = 7;
 var APP_URL = "https://your-app-url.com";  // For invite links
 
+// Set per POST so responses can report when the server received the request
+var requestReceivedAt = 0;
+
 // ========================
 // HTTP Entry Point
 // ========================
 
 function doPost(e) {
+  requestReceivedAt = Date.now();
   try {
     var request;
     if (e.postData && e.postData.contents) {
@@ -46,64 +55,104 @@ function doPost(e) {
       return jsonResponse({ status: "error", error: "No request body" });
     }
     
-    var action = request.action;
-    
-    switch (action) {
-      // User actions
-      case "registerOrLogin":
-        return handleRegisterOrLogin(request);
-      case "searchUsers":
-        return handleSearchUsers(request);
-      case "getUserByEmail":
-        return handleGetUserByEmail(request);
-        
-      // Friend actions
-      case "friendRequest":
-        return handleFriendRequest(request);
-      case "friendAccept":
-        return handleFriendAccept(request);
-      case "friendDecline":
-        return handleFriendDecline(request);
-      case "friendBlock":
-        return handleFriendBlock(request);
-      case "friendsList":
-        return handleFriendsList(request);
-      case "friendRequests":
-        return handleFriendRequests(request);
-        
-      // Invite actions
-      case "inviteSend":
-        return handleInviteSend(request);
-      case "inviteAccept":
-        return handleInviteAccept(request);
-      case "inviteResend":
-        return handleInviteResend(request);
-      case "invitesList":
-        return handleInvitesList(request);
-        
-      // Capsule actions
-      case "create":
-        return handleCreate(request);
-      case "list":
-        return handleList(request);
-      case "listSent":
-        return handleListSent(request);
-      case "listReceived":
-        return handleListReceived(request);
-      case "open":
-        return handleOpen(request);
-      case "markRecipientOpened":
-        return handleMarkRecipientOpened(request);
-        
-      default:
-        return jsonResponse({ status: "error", error: "Unknown action: " + action });
-    }
+    return dispatch(request);
     
   } catch (error) {
     return jsonResponse({ status: "error", error: error.toString() });
   }
 }
 
+function dispatch(request) {
+  var action = request.action;
+  
+  switch (action) {
+    // Batched actions
+    case "batch":
+      return handleBatch(request);
+      
+    // User actions
+    case "registerOrLogin":
+      return handleRegisterOrLogin(request);
+    case "searchUsers":
+      return handleSearchUsers(request);
+    case "getUserByEmail":
+      return handleGetUserByEmail(request);
+      
+    // Friend actions
+    case "friendRequest":
+      return handleFriendRequest(request);
+    case "friendAccept":
+      return handleFriendAccept(request);
+    case "friendDecline":
+      return handleFriendDecline(request);
+    case "friendBlock":
+      return handleFriendBlock(request);
+    case "friendsList":
+      return handleFriendsList(request);
+    case "friendRequests":
+      return handleFriendRequests(request);
+      
+    // Invite actions
+    case "inviteSend":
+      return handleInviteSend(request);
+    case "inviteAccept":
+      return handleInviteAccept(request);
+    case "inviteResend":
+      return handleInviteResend(request);
+    case "invitesList":
+      return handleInvitesList(request);
+      
+    // Capsule actions
+    case "create":
+      return handleCreate(request);
+    case "list":
+      return handleList(request);
+    case "listSent":
+      return handleListSent(request);
+    case "listReceived":
+      return handleListReceived(request);
+    case "open":
+      return handleOpen(request);
+    case "openReady":
+      return handleOpenReady(request);
+    case "markRecipientOpened":
+      return handleMarkRecipientOpened(request);
+      
+    // Attachment chunk actions
+    case "chunkHas":
+      return handleChunkHas(request);
+    case "chunkPut":
+      return handleChunkPut(request);
+    case "chunkGet":
+      return handleChunkGet(request);
+      
+    default:
+      return jsonResponse({ status: "error", error: "Unknown action: " + action });
+  }
+}
+
+function handleBatch(request) {
+  if (!request.requests || !request.requests.length) {
+    return jsonResponse({ status: "error", error: "Missing requests" });
+  }
+  
+  var responses = [];
+  for (var i = 0; i < request.requests.length; i++) {
+    var sub = request.requests[i];
+    if (!sub || sub.action === "batch") {
+      responses.push({ status: "error", error: "Invalid batched request" });
+      continue;
+    }
+    try {
+      responses.push(JSON.parse(dispatch(sub).getContent()));
+    } catch (error) {
+      responses.push({ status: "error", error: error.toString() });
+    }
+  }
+  
+  return jsonResponse({ status: "ok", responses: responses });
+}
+
 function doGet(e) {
   // Handle invite accept via GET with token parameter
   if (e.parameter && e.parameter.token) {
@@ -389,12 +438,15 @@ function handleFriendsList(request) {
     return jsonResponse({ status: "error", error: "Missing userId" });
   }
   
+  var now = Date.now();
+  var since = Number(request.since) || 0;
   var sheet = getFriendsSheet();
   var data = sheet.getDataRange().getValues();
   var friends = [];
+  var deletedIds = [];
   
   for (var i = 1; i < data.length; i++) {
-    if (data[i][2] !== "ACCEPTED") continue;
+    if (since && Number(data[i][4]) <= since) continue;
     
     var friendUserId = null;
     if (data[i][0] === request.userId) {
@@ -403,6 +455,11 @@ function handleFriendsList(request) {
       friendUserId = data[i][0];
     }
     
+    if (friendUserId && data[i][2] !== "ACCEPTED") {
+      if (since) deletedIds.push(data[i][0] + "|" + data[i][1]);
+      continue;
+    }
+    
     if (friendUserId) {
       var friendInfo = getUserById(friendUserId);
       friends.push({
@@ -417,7 +474,7 @@ function handleFriendsList(request) {
     }
   }
   
-  return jsonResponse({ status: "ok", friends: friends });
+  return jsonResponse({ status: "ok", friends: friends, deletedIds: deletedIds, delta: !!since, serverTimeEpoch: now });
 }
 
 function handleFriendRequests(request) {
@@ -699,7 +756,7 @@ function handleCreate(request) {
   var id = "C" + now + "_" + Math.random().toString(36).substring(2, 8);
   var sheet = getCapsuleSheet();
   
-  // Columns: id, owner, ownerUserId, unlockTimeEpoch, state, ciphertextBase64, ivBase64, saltBase64, headline, createdAtEpoch, updatedAtEpoch
+  // Columns: id, owner, ownerUserId, unlockTimeEpoch, state, ciphertextBase64, ivBase64, saltBase64, headline, createdAtEpoch, updatedAtEpoch, attachmentManifest
   sheet.appendRow([
     id,
     request.owner,
@@ -711,7 +768,8 @@ function handleCreate(request) {
     request.saltBase64,
     request.headline || "",
     now,
-    now
+    now,
+    request.attachmentManifest || ""
   ]);
   
   // Handle recipients
@@ -775,29 +833,22 @@ function handleList(request) {
     return jsonResponse({ status: "error", error: "Missing owner" });
   }
   
-  var sheet = getCapsuleSheet();
-  var data = sheet.getDataRange().getValues();
+  var now = Date.now();
+  var since = Number(request.since) || 0;
+  var headers = readCapsuleHeaders(getCapsuleSheet());
   var capsules = [];
   
-  for (var i = 1; i < data.length; i++) {
-    var row = data[i];
-    var owner = row[1];
+  for (var i = 0; i < headers.length; i++) {
+    var header = headers[i];
     
-    if (owner === request.owner) {
-      capsules.push({
-        capsuleId: row[0],
-        ownerEmail: row[1],
-        ownerUserId: row[2],
-        unlockAtUtc: row[3],
-        state: row[4],
-        headline: row[8],
-        createdAtUtc: row[9],
-        updatedAtUtc: row[10]
-      });
+    if (since && Number(header.updatedAtUtc) <= since) continue;
+    
+    if (header.ownerEmail === request.owner) {
+      capsules.push(header);
     }
   }
   
-  return jsonResponse({ status: "ok", capsules: capsules });
+  return jsonResponse({ status: "ok", capsules: capsules, deletedIds: [], delta: !!since, serverTimeEpoch: now });
 }
 
 function handleListSent(request) {
@@ -809,27 +860,16 @@ function handleListReceived(request) {
     return jsonResponse({ status: "error", error: "Missing userId or email" });
   }
   
+  var now = Date.now();
+  var since = Number(request.since) || 0;
   var recipientsSheet = getRecipientsSheet();
   var recipientsData = recipientsSheet.getDataRange().getValues();
-  var capsulesSheet = getCapsuleSheet();
-  var capsulesData = capsulesSheet.getDataRange().getValues();
+  var headers = readCapsuleHeaders(getCapsuleSheet());
   
   // Build capsule lookup map
   var capsuleMap = {};
-  for (var i = 1; i < capsulesData.length; i++) {
-    var row = capsulesData[i];
-    capsuleMap[row[0]] = {
-      capsuleId: row[0],
-      ownerEmail: row[1],
-      ownerUserId: row[2],
-      unlockAtUtc: row[3],
-      state: row[4],
-      ciphertextBase64: row[5],
-      ivBase64: row[6],
-      saltBase64: row[7],
-      headline: row[8],
-      createdAtUtc: row[9]
-    };
+  for (var i = 0; i < headers.length; i++) {
+    capsuleMap[headers[i].capsuleId] = headers[i];
   }
   
   var receivedCapsules = [];
@@ -841,6 +881,9 @@ function handleListReceived(request) {
     if (matches) {
       var capsule = capsuleMap[r[0]];
       if (capsule) {
+        var updatedAt = Math.max(Number(capsule.updatedAtUtc) || 0, Number(r[6]) || 0, Number(r[7]) || 0);
+        if (since && updatedAt <= since) continue;
+        
         // Get sender info
         var ownerInfo = getUserById(capsule.ownerUserId);
         
@@ -852,6 +895,7 @@ function handleListReceived(request) {
           state: capsule.state,
           headline: capsule.headline,
           createdAtUtc: capsule.createdAtUtc,
+          updatedAtUtc: updatedAt,
           recipientOpenedAt: r[6] || null,
           isSurprise: r[3] !== "TRUE"  // notifyOnCreate false = surprise
         });
@@ -859,7 +903,34 @@ function handleListReceived(request) {
     }
   }
   
-  return jsonResponse({ status: "ok", capsules: receivedCapsules });
+  return jsonResponse({ status: "ok", capsules: receivedCapsules, deletedIds: [], delta: !!since, serverTimeEpoch: now });
+}
+
+// Reads only the listing columns so list requests never pull ciphertext cells out of the sheet.
+function readCapsuleHeaders(sheet) {
+  var lastRow = sheet.getLastRow();
+  if (lastRow < 2) {
+    return [];
+  }
+  
+  var keys = sheet.getRange(2, 1, lastRow - 1, 5).getValues();
+  var meta = sheet.getRange(2, 9, lastRow - 1, 3).getValues();
+  var headers = [];
+  
+  for (var i = 0; i < keys.length; i++) {
+    headers.push({
+      capsuleId: keys[i][0],
+      ownerEmail: keys[i][1],
+      ownerUserId: keys[i][2],
+      unlockAtUtc: keys[i][3],
+      state: keys[i][4],
+      headline: meta[i][0],
+      createdAtUtc: meta[i][1],
+      updatedAtUtc: meta[i][2]
+    });
+  }
+  
+  return headers;
 }
 
 function handleOpen(request) {
@@ -929,7 +1000,8 @@ function handleOpen(request) {
         ivBase64: capsuleRow[6],
         saltBase64: capsuleRow[7],
         headline: capsuleRow[8],
-        createdAtUtc: capsuleRow[9]
+        createdAtUtc: capsuleRow[9],
+        attachmentManifest: capsuleRow[11] || null
       }
     });
     
@@ -938,7 +1010,77 @@ function handleOpen(request) {
   }
 }
 
+function handleOpenReady(request) {
+  if (!request.userId && !request.email) {
+    return jsonResponse({ status: "error", error: "Missing userId or email" });
+  }
+  
+  var lock = LockService.getScriptLock();
+  
+  try {
+    lock.waitLock(10000);
+    
+    var now = Date.now();
+    var recipientsData = getRecipientsSheet().getDataRange().getValues();
+    var sheet = getCapsuleSheet();
+    var capsulesData = sheet.getDataRange().getValues();
+    
+    var rowById = {};
+    for (var i = 1; i < capsulesData.length; i++) {
+      rowById[capsulesData[i][0]] = i;
+    }
+    
+    var ready = [];
+    var seen = {};
+    
+    for (var i = 1; i < recipientsData.length; i++) {
+      var r = recipientsData[i];
+      var matches = (r[2] === request.userId) || (r[1] === request.email);
+      if (!matches || r[6] || seen[r[0]]) continue;
+      
+      var index = rowById[r[0]];
+      if (index === undefined) continue;
+      
+      var row = capsulesData[index];
+      if (now < row[3]) continue;
+      seen[r[0]] = true;
+      
+      if (row[4] === "sealed") {
+        sheet.getRange(index + 1, 5).setValue("opened");
+        sheet.getRange(index + 1, 11).setValue(now);
+        logAudit("OPEN", row[0], "sealed", "opened", request.requestId || "");
+      }
+      
+      var ownerInfo = getUserById(row[2]);
+      
+      ready.push({
+        capsuleId: row[0],
+        ownerEmail: row[1],
+        ownerUserId: row[2],
+        ownerDisplayName: ownerInfo ? ownerInfo.displayName : null,
+        unlockAtUtc: row[3],
+        state: "opened",
+        ciphertextBase64: row[5],
+        ivBase64: row[6],
+        saltBase64: row[7],
+        headline: row[8],
+        createdAtUtc: row[9],
+        attachmentManifest: row[11] || null
+      });
+    }
+    
+    return jsonResponse({ status: "ok", capsules: ready, serverTimeEpoch: now });
+    
+  } finally {
+    lock.releaseLock();
+  }
+}
+
 function handleMarkRecipientOpened(request) {
+  if (request.capsuleIds) {
+    return handleMarkRecipientsOpened(request);
+  }
+  
   if (!request.capsuleId) {
     return jsonResponse({ status: "error", error: "Missing capsuleId" });
   }
@@ -961,6 +1103,105 @@ function handleMarkRecipientOpened(request) {
   return jsonResponse({ status: "error", error: "Recipient not found" });
 }
 
+function handleMarkRecipientsOpened(request) {
+  var wanted = {};
+  for (var i = 0; i < request.capsuleIds.length; i++) {
+    wanted[request.capsuleIds[i]] = true;
+  }
+  
+  var sheet = getRecipientsSheet();
+  var data = sheet.getDataRange().getValues();
+  var now = Date.now();
+  
+  for (var i = 1; i < data.length; i++) {
+    if (wanted[data[i][0]] && 
+        (data[i][2] === request.userId || data[i][1] === request.email)) {
+      if (!data[i][6]) {
+        sheet.getRange(i + 1, 7).setValue(now);
+      }
+    }
+  }
+  
+  return jsonResponse({ status: "ok" });
+}
+
+// ========================
+// Attachment Chunks
+// ========================
+
+function handleChunkHas(request) {
+  if (!request.ids) {
+    return jsonResponse({ status: "error", error: "Missing ids" });
+  }
+  
+  var folder = getChunksFolder();
+  var missing = [];
+  var checked = {};
+  
+  for (var i = 0; i < request.ids.length; i++) {
+    var id = request.ids[i];
+    if (checked[id]) continue;
+    checked[id] = true;
+    if (!folder.getFilesByName(id).hasNext()) {
+      missing.push(id);
+    }
+  }
+  
+  return jsonResponse({ status: "ok", missing: missing });
+}
+
+function handleChunkPut(request) {
+  if (!request.userId) {
+    return jsonResponse({ status: "error", error: "Missing userId" });
+  }
+  if (!request.id || !request.dataBase64) {
+    return jsonResponse({ status: "error", error: "Missing chunk id or data" });
+  }
+  
+  var bytes = Utilities.base64Decode(request.dataBase64);
+  if (bytes.length > MAX_CHUNK_BYTES) {
+    return jsonResponse({ status: "error", error: "Chunk too large" });
+  }
+  if (sha256Hex(bytes) !== request.id) {
+    return jsonResponse({ status: "error", error: "Chunk hash mismatch" });
+  }
+  
+  var folder = getChunksFolder();
+  if (!folder.getFilesByName(request.id).hasNext()) {
+    folder.createFile(Utilities.newBlob(bytes, "application/octet-stream", request.id));
+  }
+  
+  return jsonResponse({ status: "ok" });
+}
+
+function handleChunkGet(request) {
+  if (!request.id) {
+    return jsonResponse({ status: "error", error: "Missing chunk id" });
+  }
+  
+  var files = getChunksFolder().getFilesByName(request.id);
+  if (!files.hasNext()) {
+    return jsonResponse({ status: "error", error: "Chunk not found" });
+  }
+  
+  return jsonResponse({ status: "ok", dataBase64: Utilities.base64Encode(files.next().getBlob().getBytes()) });
+}
+
+function getChunksFolder() {
+  var folders = DriveApp.getFoldersByName(CHUNKS_FOLDER);
+  return folders.hasNext() ? folders.next() : DriveApp.createFolder(CHUNKS_FOLDER);
+}
+
+function sha256Hex(bytes) {
+  var digest = Utilities.computeDigest(Utilities.DigestAlgorithm.SHA_256, bytes);
+  var hex = "";
+  for (var i = 0; i < digest.length; i++) {
+    var b = (digest[i] + 256) % 256;
+    hex += (b < 16 ? "0" : "") + b.toString(16);
+  }
+  return hex;
+}
+
 // ========================
 // Background Processing
 // ========================
@@ -1095,7 +1336,7 @@ function getCapsuleSheet() {
     sheet.appendRow([
       "id", "owner", "ownerUserId", "unlockTimeEpoch", "state", 
       "ciphertextBase64", "ivBase64", "saltBase64", 
-      "headline", "createdAtEpoch", "updatedAtEpoch"
+      "headline", "createdAtEpoch", "updatedAtEpoch", "attachmentManifest"
     ]);
   }
   
@@ -1237,6 +1478,14 @@ function hashToken(token) {
 }
 
 function jsonResponse(data) {
+  // Receive and send times let clients estimate their clock offset NTP-style
+  data.serverSentEpoch = Date.now();
+  if (requestReceivedAt) {
+    data.serverReceivedEpoch = requestReceivedAt;
+  }
+  if (data.serverTimeEpoch === undefined) {
+    data.serverTimeEpoch = data.serverSentEpoch;
+  }
   return ContentService
     .createTextOutput(JSON.stringify(data))
     .setMimeType(ContentService.MimeType.JSON);
@@ -0,0 +1,93 @@
+package timecapsule.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KdfParamsTest {
+
+    private static final byte[] SALT = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+    private static final String SALT_BASE64 = Base64.getEncoder().encodeToString(SALT);
+
+    @Test
+    void plainSaltIsLegacyPbkdf2() throws Exception {
+        KdfParams params = KdfParams.parse(SALT_BASE64);
+        assertTrue(params.isLegacy());
+        assertEquals(KdfParams.Algorithm.PBKDF2_SHA256, params.getAlgorithm());
+        assertEquals(KdfParams.LEGACY_ITERATIONS, params.getIterations());
+        assertEquals(SALT_BASE64, params.encode());
+    }
+
+    @Test
+    void pbkdf2RoundTrips() throws Exception {
+        String encoded = KdfParams.pbkdf2(310_000, SALT).encode();
+        assertEquals("$pbkdf2-sha256$i=310000$" + SALT_BASE64, encoded);
+
+        KdfParams parsed = KdfParams.parse(encoded);
+        assertFalse(parsed.isLegacy());
+        assertEquals(310_000, parsed.getIterations());
+        assertArrayEquals(SALT, parsed.getSalt());
+        assertEquals(encoded, parsed.encode());
+    }
+
+    @Test
+    void scryptRoundTrips() throws Exception {
+        String encoded = KdfParams.scrypt(15, 8, 1, SALT).encode();
+        assertEquals("$scrypt$ln=15,r=8,p=1$" + SALT_BASE64, encoded);
+
+        KdfParams parsed = KdfParams.parse(encoded);
+        assertEquals(KdfParams.Algorithm.SCRYPT, parsed.getAlgorithm());
+        assertEquals(15, parsed.getLogN());
+        assertEquals(8, parsed.getR());
+        assertEquals(1, parsed.getP());
+        assertEquals(encoded, parsed.encode());
+    }
+
+    @Test
+    void explicitLegacyCostDerivesTheLegacyKey() throws Exception {
+        byte[] legacy = KdfParams.parse(SALT_BASE64).derive("passphrase", 256);
+        byte[] explicit = KdfParams.parse("$pbkdf2-sha256$i=100000$" + SALT_BASE64).derive("passphrase", 256);
+        assertArrayEquals(legacy, explicit);
+    }
+
+    @Test
+    void withSaltKeepsTheCost() {
+        KdfParams params = KdfParams.scrypt(14, 8, 2, SALT).withSalt(new byte[16]);
+        assertEquals("scrypt$ln=14,r=8,p=2", params.costId());
+        assertArrayEquals(new byte[16], params.getSalt());
+    }
+
+    @Test
+    void rejectsOutOfRangeCosts() {
+        for (String encoded : new String[]{
+            "$pbkdf2-sha256$i=9999$" + SALT_BASE64,
+            "$pbkdf2-sha256$i=2000000000$" + SALT_BASE64,
+            "$scrypt$ln=9,r=8,p=1$" + SALT_BASE64,
+            "$scrypt$ln=21,r=8,p=1$" + SALT_BASE64,
+            "$scrypt$ln=20,r=32,p=1$" + SALT_BASE64,
+            "$scrypt$ln=14,r=33,p=1$" + SALT_BASE64,
+            "$scrypt$ln=14,r=8,p=17$" + SALT_BASE64,
+            "$scrypt$ln=14,r=0,p=1$" + SALT_BASE64,
+        }) {
+            assertThrows(GeneralSecurityException.class, () -> KdfParams.parse(encoded), encoded);
+        }
+    }
+
+    @Test
+    void rejectsMalformedEncodings() {
+        for (String encoded : new String[]{
+            null, "", "$argon2$m=1$" + SALT_BASE64, "$pbkdf2-sha256$" + SALT_BASE64,
+            "$pbkdf2-sha256$n=100000$" + SALT_BASE64, "$pbkdf2-sha256$i=abc$" + SALT_BASE64,
+            "$scrypt$ln=14,r=8$" + SALT_BASE64, "$pbkdf2-sha256$i=100000$not base64!", "not base64!",
+        }) {
+            assertThrows(GeneralSecurityException.class, () -> KdfParams.parse(encoded), String.valueOf(encoded));
+        }
+    }
+}
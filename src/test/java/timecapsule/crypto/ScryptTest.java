@@ -0,0 +1,42 @@
+package timecapsule.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Test vectors from RFC 7914, section 12. */
+class ScryptTest {
+
+    @Test
+    void emptyPasswordAndSalt() throws Exception {
+        assertEquals("77d6576238657b203b19ca42c18a0497f16b4844e3074ae8dfdffa3fede21442"
+                + "fcd0069ded0948f8326a753a0fc81f17e8d3e0fb2e0d3628cf35e20c38d18906",
+            derive("", "", 16, 1, 1));
+    }
+
+    @Test
+    void passwordNaCl() throws Exception {
+        assertEquals("fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b373162"
+                + "2eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640",
+            derive("password", "NaCl", 1024, 8, 16));
+    }
+
+    @Test
+    void pleaseLetMeIn() throws Exception {
+        assertEquals("7023bdcb3afd7348461c06cd81fd38ebfda8fbba904f8e3ea9b543f6545da1f2"
+                + "d5432955613f0fcf62d49705242a9af9e61e85dc0d651e40dfcf017b45575887",
+            derive("pleaseletmein", "SodiumChloride", 16384, 8, 1));
+    }
+
+    private static String derive(String password, String salt, int n, int r, int p) throws Exception {
+        byte[] key = Scrypt.derive(password.getBytes(StandardCharsets.UTF_8),
+            salt.getBytes(StandardCharsets.UTF_8), n, r, p, 64);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : key) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
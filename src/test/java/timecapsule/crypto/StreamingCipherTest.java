@@ -0,0 +1,187 @@
+package timecapsule.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingCipherTest {
+
+    private static final int CHUNK = 16;
+    private static final int HEADER = 5;
+    private static final int TAG = 16;
+    private static final byte[] AAD = "capsule|owner".getBytes(StandardCharsets.UTF_8);
+
+    private final Random random = new Random(7);
+    private final SecretKey key = new SecretKeySpec(bytes(32), "AES");
+    private final SecretKey nonceKey = new SecretKeySpec(bytes(32), "HmacSHA256");
+    private final byte[] iv = bytes(12);
+
+    @Test
+    void roundTripsAcrossChunkBoundaries() throws IOException {
+        for (int size : new int[]{0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 3 * CHUNK, 3 * CHUNK + 5}) {
+            byte[] plain = bytes(size);
+            assertArrayEquals(plain, decrypt(encrypt(plain)), "size " + size);
+        }
+    }
+
+    @Test
+    void roundTripsWithDefaultChunkSize() throws IOException {
+        byte[] plain = bytes(3 * StreamingCipher.DEFAULT_CHUNK_SIZE + 11);
+        ByteArrayOutputStream sealed = new ByteArrayOutputStream();
+        try (OutputStream out = StreamingCipher.encrypting(sealed, key, iv, AAD)) {
+            out.write(plain);
+        }
+        assertArrayEquals(plain, decrypt(sealed.toByteArray()));
+    }
+
+    @Test
+    void syntheticChunksRoundTripAndAreDeterministic() throws IOException {
+        byte[] plain = bytes(3 * CHUNK + 5);
+        List<byte[]> first = encryptChunks(plain);
+        List<byte[]> second = encryptChunks(plain);
+
+        assertEquals(4, first.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertArrayEquals(first.get(i), second.get(i), "chunk " + i);
+        }
+        assertArrayEquals(plain, decrypt(concat(first)));
+    }
+
+    @Test
+    void syntheticChunksDependOnPosition() throws IOException {
+        List<byte[]> chunks = encryptChunks(new byte[3 * CHUNK]);
+        assertNotEquals(Arrays.toString(chunks.get(1)), Arrays.toString(chunks.get(2)));
+    }
+
+    @Test
+    void rejectsDroppedFinalChunk() throws IOException {
+        List<byte[]> chunks = encryptChunks(bytes(3 * CHUNK + 5));
+        byte[] truncated = concat(chunks.subList(0, chunks.size() - 1));
+        assertThrows(IOException.class, () -> decrypt(truncated));
+    }
+
+    @Test
+    void rejectsStreamCutAtChunkBoundary() throws IOException {
+        byte[] sealed = encrypt(bytes(3 * CHUNK + 5));
+        byte[] cut = Arrays.copyOf(sealed, HEADER + 2 * (CHUNK + TAG));
+        assertThrows(IOException.class, () -> decrypt(cut));
+    }
+
+    @Test
+    void rejectsStreamCutMidChunk() throws IOException {
+        byte[] sealed = encrypt(bytes(3 * CHUNK + 5));
+        byte[] cut = Arrays.copyOf(sealed, sealed.length - 3);
+        assertThrows(IOException.class, () -> decrypt(cut));
+    }
+
+    @Test
+    void rejectsReorderedChunks() throws IOException {
+        byte[] sealed = encrypt(bytes(3 * CHUNK + 5));
+        int size = CHUNK + TAG;
+        byte[] swapped = sealed.clone();
+        System.arraycopy(sealed, HEADER, swapped, HEADER + size, size);
+        System.arraycopy(sealed, HEADER + size, swapped, HEADER, size);
+        assertThrows(IOException.class, () -> decrypt(swapped));
+
+        List<byte[]> chunks = new ArrayList<>(encryptChunks(bytes(3 * CHUNK + 5)));
+        Collections.swap(chunks, 1, 2);
+        assertThrows(IOException.class, () -> decrypt(concat(chunks)));
+    }
+
+    @Test
+    void rejectsTamperedFinalChunk() throws IOException {
+        byte[] sealed = encrypt(bytes(3 * CHUNK + 5));
+        sealed[sealed.length - TAG - 1] ^= 1;
+        assertThrows(IOException.class, () -> decrypt(sealed));
+    }
+
+    @Test
+    void rejectsTamperedHeader() throws IOException {
+        byte[] sealed = encrypt(bytes(2 * CHUNK));
+        sealed[4] ^= 1;
+        assertThrows(IOException.class, () -> decrypt(sealed));
+    }
+
+    @Test
+    void rejectsWrongAssociatedData() throws IOException {
+        byte[] sealed = encrypt(bytes(CHUNK + 1));
+        assertThrows(IOException.class, () -> readAll(StreamingCipher.decrypting(
+            new ByteArrayInputStream(sealed), key, iv, "other".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void abortedStreamHasNoFinalChunk() throws IOException {
+        ByteArrayOutputStream sealed = new ByteArrayOutputStream();
+        StreamingCipher.EncryptingStream out = StreamingCipher.encrypting(sealed, key, iv, AAD, CHUNK);
+        out.write(bytes(2 * CHUNK + 3));
+        out.abort();
+        out.close();
+        assertThrows(IOException.class, () -> decrypt(sealed.toByteArray()));
+    }
+
+    @Test
+    void skipIgnoresNonPositiveCounts() throws IOException {
+        byte[] plain = bytes(2 * CHUNK);
+        try (InputStream in = StreamingCipher.decrypting(new ByteArrayInputStream(encrypt(plain)), key, iv, AAD)) {
+            assertEquals(0, in.skip(-1));
+            assertEquals(0, in.skip(0));
+            assertEquals(CHUNK + 1, in.skip(CHUNK + 1));
+            assertEquals(plain[CHUNK + 1] & 0xFF, in.read());
+        }
+    }
+
+    private byte[] encrypt(byte[] plain) throws IOException {
+        ByteArrayOutputStream sealed = new ByteArrayOutputStream();
+        try (OutputStream out = StreamingCipher.encrypting(sealed, key, iv, AAD, CHUNK)) {
+            out.write(plain);
+        }
+        return sealed.toByteArray();
+    }
+
+    private List<byte[]> encryptChunks(byte[] plain) throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        try (OutputStream out = StreamingCipher.encryptingChunks(chunks::add, key, nonceKey, AAD, CHUNK)) {
+            out.write(plain);
+        }
+        return chunks;
+    }
+
+    private byte[] decrypt(byte[] sealed) throws IOException {
+        return readAll(StreamingCipher.decrypting(new ByteArrayInputStream(sealed), key, iv, AAD));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] concat(List<byte[]> chunks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        chunks.forEach(out::writeBytes);
+        return out.toByteArray();
+    }
+
+    private byte[] bytes(int length) {
+        byte[] b = new byte[length];
+        random.nextBytes(b);
+        return b;
+    }
+}
@@ -0,0 +1,110 @@
+package timecapsule.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RecordLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysAppendedRecords() throws IOException {
+        Path path = dir.resolve("log");
+        try (RecordLog log = RecordLog.open(path, (offset, type, payload) -> { })) {
+            log.append((byte) 1, utf8("first"));
+            long second = log.append((byte) 2, utf8("second"));
+            assertEquals("second", new String(log.read(second), StandardCharsets.UTF_8));
+        }
+
+        List<String> replayed = replay(path);
+        assertEquals(List.of("1:first", "2:second"), replayed);
+    }
+
+    @Test
+    void dropsTornFinalRecordAndAppendsAfterTheLastGoodOne() throws IOException {
+        Path path = dir.resolve("log");
+        long third;
+        try (RecordLog log = RecordLog.open(path, (offset, type, payload) -> { })) {
+            log.append((byte) 1, utf8("first"));
+            log.append((byte) 1, utf8("second"));
+            third = log.append((byte) 1, utf8("third record, cut short"));
+        }
+        // A crash mid-append leaves the length written but only part of the payload.
+        overwrite(path, third + RecordLog.RECORD_HEADER_SIZE + 5, new byte[10]);
+
+        try (RecordLog log = RecordLog.open(path, (offset, type, payload) -> { })) {
+            assertEquals(third, log.size());
+            log.append((byte) 1, utf8("after"));
+        }
+        assertEquals(List.of("1:first", "1:second", "1:after"), replay(path));
+    }
+
+    @Test
+    void dropsRecordWhoseLengthRunsPastTheFile() throws IOException {
+        Path path = dir.resolve("log");
+        long second;
+        try (RecordLog log = RecordLog.open(path, (offset, type, payload) -> { })) {
+            log.append((byte) 1, utf8("first"));
+            second = log.append((byte) 1, utf8("second"));
+        }
+        overwrite(path, second, ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).array());
+
+        assertEquals(List.of("1:first"), replay(path));
+        try (RecordLog log = RecordLog.open(path, (offset, type, payload) -> { })) {
+            assertEquals(second, log.size());
+        }
+    }
+
+    @Test
+    void dropsRecordWithFlippedTypeByte() throws IOException {
+        Path path = dir.resolve("log");
+        long second;
+        try (RecordLog log = RecordLog.open(path, (offset, type, payload) -> { })) {
+            log.append((byte) 1, utf8("first"));
+            second = log.append((byte) 1, utf8("second"));
+            log.append((byte) 1, utf8("third"));
+        }
+        overwrite(path, second + 8, new byte[]{2});
+
+        assertEquals(List.of("1:first"), replay(path));
+    }
+
+    @Test
+    void rejectsForeignFile() throws IOException {
+        Path path = dir.resolve("log");
+        Files.write(path, utf8("definitely not a record log"));
+        assertThrows(IOException.class, () -> RecordLog.open(path, (offset, type, payload) -> { }));
+    }
+
+    private static List<String> replay(Path path) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (RecordLog log = RecordLog.open(path,
+                (offset, type, payload) -> records.add(type + ":" + new String(payload, StandardCharsets.UTF_8)))) {
+            return records;
+        }
+    }
+
+    private static void overwrite(Path path, long position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}